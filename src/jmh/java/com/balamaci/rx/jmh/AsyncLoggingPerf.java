@@ -0,0 +1,95 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.logging.AsyncLogAppender;
+import com.balamaci.rx.logging.AsyncLogSubscriber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A subscriber logging each of 10k values like BaseTestObservables.getLogSubscriber(), slf4j-simple writing to
+ * /dev/null so the cost is that of the formatting and of the lock of the PrintStream, not of the terminal.
+ *
+ * slf4j formats and prints on the emitting thread, async hands the events to an {@link AsyncLogAppender} of
+ * 8192 slots - dropping those for which the writer thread can't keep up, printed at the end of the trial -
+ * and asyncSampled logs 1 in 100 of the values.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.logFile=/dev/null")
+@State(Scope.Thread)
+public class AsyncLoggingPerf {
+
+    static final int VALUES = 10_000;
+
+    @Param({"slf4j", "async", "asyncSampled"})
+    public String variant;
+
+    private Logger log;
+    private AsyncLogAppender appender;
+    private Observable<Integer> values;
+
+    @Setup
+    public void setup() {
+        log = LoggerFactory.getLogger(AsyncLoggingPerf.class);
+        appender = AsyncLogAppender.create(8192);
+        values = Observable.range(0, VALUES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        appender.shutdown();
+        System.out.println("\nLog events dropped " + appender.dropped());
+    }
+
+    @Benchmark
+    public void logEveryValue() {
+        values.subscribe(subscriber());
+    }
+
+    private Subscriber<Integer> subscriber() {
+        switch (variant) {
+            case "async":
+                return AsyncLogSubscriber.create(appender, log, 1);
+            case "asyncSampled":
+                return AsyncLogSubscriber.create(appender, log, 100);
+            default:
+                return new Subscriber<Integer>() {
+                    @Override
+                    public void onNext(Integer val) {
+                        log.info("Subscriber received {} on {}", val, Thread.currentThread().getName());
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        log.error("Subscriber received error", e);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        log.info("Subscriber got Completed event");
+                    }
+                };
+        }
+    }
+}
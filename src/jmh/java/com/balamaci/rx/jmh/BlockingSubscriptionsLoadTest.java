@@ -0,0 +1,87 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.schedulers.MoreSchedulers;
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for blocking subscriptions: 'count' subscriptions are made at once, each blocking its
+ * subscribeOn thread for 'blockMillis' like a slow network call, and the peak number of platform threads
+ * and of used heap are reported.
+ *
+ * Not a JMH benchmark, the interesting numbers being the resources and not the throughput, and each
+ * Scheduler needs its own JVM so the peaks don't mix:
+ * <pre>
+ * mvn -Pjmh package
+ * java -cp target/benchmarks.jar com.balamaci.rx.jmh.BlockingSubscriptionsLoadTest io 100000 1000
+ * java -cp target/benchmarks.jar com.balamaci.rx.jmh.BlockingSubscriptionsLoadTest virtual 100000 1000
+ * </pre>
+ * Schedulers.io() creates a platform thread for every concurrent subscription and may fail to create that
+ * many threads, virtual() needs Java 21 or newer. The virtual-threads profile of the build runs it for virtual().
+ * It exits with 1 when a subscription failed or didn't complete.
+ *
+ * @author sbalamaci
+ */
+public class BlockingSubscriptionsLoadTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        String schedulerName = args.length > 0 ? args[0] : "virtual";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        long blockMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        Scheduler scheduler = "io".equals(schedulerName) ? Schedulers.io() : MoreSchedulers.virtual();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong();
+        Thread sampler = new Thread(() -> {
+            while(!Thread.currentThread().isInterrupted()) {
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "heap-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        CountDownLatch latch = new CountDownLatch(count);
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        for(int i=0; i < count; i++) {
+            int id = i;
+            Observable.fromCallable(() -> {
+                        Thread.sleep(blockMillis); //slow network call
+                        return id;
+                    })
+                    .subscribeOn(scheduler)
+                    .subscribe(val -> { },
+                            err -> {
+                                errors.incrementAndGet();
+                                latch.countDown();
+                            },
+                            latch::countDown);
+        }
+        boolean completed = latch.await(10, TimeUnit.MINUTES);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        sampler.interrupt();
+
+        System.out.printf("scheduler=%s subscriptions=%d blockMillis=%d%n", schedulerName, count, blockMillis);
+        System.out.printf("  %s in %d ms, %d errors%n", completed ? "completed" : "timed out with "
+                + latch.getCount() + " pending", elapsedMillis, errors.get());
+        System.out.printf("  peak platform threads: %d%n", threads.getPeakThreadCount());
+        System.out.printf("  peak used heap: %d MB%n", peakHeap.get() / (1024 * 1024));
+        System.exit(completed && errors.get() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.schedulers.HashedWheelScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling timers with 1M of them already pending, on Schedulers.computation() whose ScheduledThreadPoolExecutor
+ * keeps them in a heap, and on a HashedWheelScheduler.
+ *
+ * scheduleAndCancel schedules a timer and cancels it, like timeout() does for every value, and
+ * mostlyCancelled schedules 'timers' more, canceling all of them but 1 in 100.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class HashedWheelSchedulerPerf {
+
+    static final int OUTSTANDING = 1_000_000;
+    static final Action0 NOOP = () -> { };
+
+    @Param({"computation", "hashedWheel"})
+    public String scheduler;
+
+    @Param({"100000"})
+    public int timers;
+
+    private HashedWheelScheduler hashedWheel;
+    private Scheduler.Worker outstanding;
+    private Scheduler.Worker worker;
+    private Subscription[] scheduled;
+
+    @Setup
+    public void setup() {
+        Scheduler timerScheduler = Schedulers.computation();
+        if("hashedWheel".equals(scheduler)) {
+            hashedWheel = new HashedWheelScheduler(10, TimeUnit.MILLISECONDS);
+            timerScheduler = hashedWheel;
+        }
+        outstanding = timerScheduler.createWorker();
+        for(int i=0; i < OUTSTANDING; i++) {
+            outstanding.schedule(NOOP, 1, TimeUnit.HOURS);
+        }
+        worker = timerScheduler.createWorker();
+        scheduled = new Subscription[timers];
+    }
+
+    @TearDown
+    public void tearDown() {
+        worker.unsubscribe();
+        outstanding.unsubscribe();
+        if(hashedWheel != null) {
+            hashedWheel.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void scheduleAndCancel() {
+        worker.schedule(NOOP, 1, TimeUnit.MINUTES).unsubscribe();
+    }
+
+    @Benchmark
+    public void mostlyCancelled() {
+        for(int i=0; i < timers; i++) {
+            scheduled[i] = worker.schedule(NOOP, 1 + i % 1000, TimeUnit.SECONDS);
+        }
+        for(int i=0; i < timers; i++) {
+            if(i % 100 != 0) {
+                scheduled[i].unsubscribe();
+            }
+        }
+    }
+}
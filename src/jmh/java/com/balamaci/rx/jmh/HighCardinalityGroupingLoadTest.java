@@ -0,0 +1,75 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.grouping.GroupingTransformers;
+import rx.Observable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for counting the values of 'keys' distinct keys, 'valuesPerKey' values each, either with the
+ * groupBy().flatMap(count()) of Part05AdvancedOperators.groupBy or with GroupingTransformers.countByKey().
+ * Once the source emitted all the values, so every key is still being counted, the heap is garbage collected and
+ * the heap still used is reported, along with the time it took.
+ *
+ * Not a JMH benchmark, the interesting number being the heap footprint, and each variant needs its own JVM:
+ * <pre>
+ * mvn -Pjmh package
+ * java -Xmx4g -cp target/benchmarks.jar com.balamaci.rx.jmh.HighCardinalityGroupingLoadTest groupBy 10000000 2
+ * java -Xmx4g -cp target/benchmarks.jar com.balamaci.rx.jmh.HighCardinalityGroupingLoadTest countByKey 10000000 2
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public class HighCardinalityGroupingLoadTest {
+
+    public static void main(String[] args) {
+        String variant = args.length > 0 ? args[0] : "countByKey";
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int valuesPerKey = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong retained = new AtomicLong();
+
+        Observable<Integer> values = Observable.range(0, keys * valuesPerKey)
+                .map(val -> val % keys)
+                .concatWith(Observable.defer(() -> {
+                    // all the values were emitted, but the groups aren't completed yet
+                    System.gc();
+                    retained.set(memory.getHeapMemoryUsage().getUsed() - baseline);
+                    return Observable.empty();
+                }));
+
+        Observable<Map.Entry<Integer, Long>> counts;
+        if("groupBy".equals(variant)) {
+            counts = values.groupBy(val -> val)
+                    .flatMap(group -> group.countLong()
+                            .map(count -> new AbstractMap.SimpleImmutableEntry<>(group.getKey(), count)));
+        } else {
+            counts = values.compose(GroupingTransformers.countByKey(val -> val));
+        }
+
+        AtomicLong emitted = new AtomicLong();
+        long start = System.nanoTime();
+        try {
+            counts.toBlocking().forEach(entry -> emitted.incrementAndGet());
+        } catch (OutOfMemoryError e) {
+            System.out.printf("variant=%s keys=%d ran out of memory after %d s%n", variant, keys,
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+            System.exit(1);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.printf("variant=%s keys=%d valuesPerKey=%d%n", variant, keys, valuesPerKey);
+        System.out.printf("  counted %d keys in %d ms%n", emitted.get(), elapsedMillis);
+        System.out.printf("  heap retained by the groups: %d MB, %d bytes per key%n",
+                retained.get() / (1024 * 1024), retained.get() / keys);
+        System.exit(0);
+    }
+}
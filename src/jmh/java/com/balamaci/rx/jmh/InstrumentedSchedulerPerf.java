@@ -0,0 +1,70 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.metrics.InstrumentedScheduler;
+import com.balamaci.rx.metrics.SimpleMetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the InstrumentedScheduler for a task: scheduling on a Worker of Schedulers.immediate(), which
+ * runs the task right away on the calling thread, with and without the instrumentation around it.
+ * The difference between the two average times is the cost of the metrics for a task.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InstrumentedSchedulerPerf {
+
+    private Scheduler.Worker worker;
+    private Scheduler.Worker instrumentedWorker;
+
+    private SimpleMetricsRegistry registry;
+    private Action0 task;
+    private long counter;
+
+    @Setup
+    public void setup() {
+        worker = Schedulers.immediate().createWorker();
+
+        registry = new SimpleMetricsRegistry();
+        instrumentedWorker = new InstrumentedScheduler("immediate", Schedulers.immediate(), registry)
+                .createWorker();
+
+        task = () -> counter++;
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println(registry.report());
+    }
+
+    @Benchmark
+    public void schedule(Blackhole bh) {
+        bh.consume(worker.schedule(task));
+    }
+
+    @Benchmark
+    public void instrumentedSchedule(Blackhole bh) {
+        bh.consume(instrumentedWorker.schedule(task));
+    }
+}
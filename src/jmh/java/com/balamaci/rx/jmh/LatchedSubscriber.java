@@ -0,0 +1,46 @@
+package com.balamaci.rx.jmh;
+
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Subscriber;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Subscriber that feeds every event into the JMH {@link Blackhole} so the JIT can't eliminate the chain,
+ * and lets the benchmark thread wait for the terminal event when the chain is asynchronous.
+ *
+ * @author sbalamaci
+ */
+public class LatchedSubscriber<T> extends Subscriber<T> {
+
+    private final Blackhole bh;
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    public LatchedSubscriber(Blackhole bh) {
+        this.bh = bh;
+    }
+
+    @Override
+    public void onNext(T t) {
+        bh.consume(t);
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        bh.consume(e);
+        latch.countDown();
+    }
+
+    @Override
+    public void onCompleted() {
+        latch.countDown();
+    }
+
+    public void await() {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted thread");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.balamaci.rx.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the creation scenarios in Part01CreateObservable.
+ *
+ * Every benchmark emits 'count' elements, so dividing the 'gc.alloc.rate.norm' value
+ * reported by '-prof gc' by 'count' gives the allocation per element.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Part01CreateObservablePerf {
+
+    @Param({"1", "1000", "1000000"})
+    public int count;
+
+    private Observable<Integer> range;
+    private Observable<Integer> fromArray;
+    private Observable<Integer> create;
+
+    @Setup
+    public void setup() {
+        range = Observable.range(1, count);
+
+        Integer[] values = new Integer[count];
+        for(int i=0; i < count; i++) {
+            values[i] = i;
+        }
+        fromArray = Observable.from(values);
+
+        create = Observable.create(subscriber -> {
+            for(int i=0; i < count; i++) {
+                subscriber.onNext(i);
+            }
+            subscriber.onCompleted();
+        });
+    }
+
+    @Benchmark
+    public void range(Blackhole bh) {
+        range.subscribe(new LatchedSubscriber<>(bh));
+    }
+
+    @Benchmark
+    public void fromArray(Blackhole bh) {
+        fromArray.subscribe(new LatchedSubscriber<>(bh));
+    }
+
+    @Benchmark
+    public void create(Blackhole bh) {
+        create.subscribe(new LatchedSubscriber<>(bh));
+    }
+}
@@ -0,0 +1,62 @@
+package com.balamaci.rx.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the zip / merge / concat scenarios in Part03MergingStreams.
+ * The 'count' elements are split evenly between the two combined streams.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Part03MergingStreamsPerf {
+
+    @Param({"1000", "1000000"})
+    public int count;
+
+    private Observable<Integer> first;
+    private Observable<Integer> second;
+
+    @Setup
+    public void setup() {
+        first = Observable.range(0, count / 2);
+        second = Observable.range(count / 2, count / 2);
+    }
+
+    @Benchmark
+    public void zip(Blackhole bh) {
+        Observable.zip(first, second, (val1, val2) -> val1 + val2)
+                .subscribe(new LatchedSubscriber<>(bh));
+    }
+
+    @Benchmark
+    public void merge(Blackhole bh) {
+        Observable.merge(first, second)
+                .subscribe(new LatchedSubscriber<>(bh));
+    }
+
+    @Benchmark
+    public void concat(Blackhole bh) {
+        Observable.concat(first, second)
+                .subscribe(new LatchedSubscriber<>(bh));
+    }
+}
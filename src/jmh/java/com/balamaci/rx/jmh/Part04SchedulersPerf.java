@@ -0,0 +1,109 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.fusion.Fusion;
+import com.balamaci.rx.schedulers.SchedulerTransformers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the subscribeOn / observeOn scenarios in Part04Schedulers,
+ * measuring the cost of moving 'count' elements across threads.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Part04SchedulersPerf {
+
+    @Param({"1", "1000", "1000000"})
+    public int count;
+
+    private Observable<Integer> range;
+    private Observable<Integer> fusableRange;
+
+    @Setup
+    public void setup() {
+        range = Observable.range(1, count);
+        fusableRange = Fusion.range(1, count);
+    }
+
+    @Benchmark
+    public void subscribeOn(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        range.subscribeOn(Schedulers.io())
+                .map(val -> val * 2)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void observeOn(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        range.observeOn(Schedulers.computation())
+                .map(val -> val * 2)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    /**
+     * observeOn reading the values directly from the range instead of through its queue
+     */
+    @Benchmark
+    public void fusedObserveOn(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        fusableRange.compose(Fusion.observeOn(Schedulers.computation()))
+                .map(val -> val * 2)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    /**
+     * observeOn handing the values over in arrays of 256, the worker woken up when one fills or after 1ms
+     */
+    @Benchmark
+    public void observeOnBatched(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        range.compose(SchedulerTransformers.observeOnBatched(Schedulers.computation(), 256, 1, TimeUnit.MILLISECONDS))
+                .map(val -> val * 2)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void observeOnBatchedLists(Blackhole bh) {
+        LatchedSubscriber<List<Integer>> subscriber = new LatchedSubscriber<>(bh);
+        range.compose(SchedulerTransformers.observeOnBatchedLists(Schedulers.computation(), 256,
+                                                                  1, TimeUnit.MILLISECONDS))
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void subscribeOnObserveOn(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        range.subscribeOn(Schedulers.io())
+                .observeOn(Schedulers.computation())
+                .map(val -> val * 2)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+}
@@ -0,0 +1,96 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.aggregation.WindowAggregates;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+
+import java.util.AbstractMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the buffer / window / groupBy scenarios in Part05AdvancedOperators.
+ * Instead of the slow Observable.interval source the operators are fed from a range.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Part05AdvancedOperatorsPerf {
+
+    @Param({"1000", "1000000"})
+    public int count;
+
+    @Param({"16", "1024"})
+    public int keys;
+
+    private Observable<Integer> numbers;
+
+    @Setup
+    public void setup() {
+        numbers = Observable.range(0, count);
+    }
+
+    @Benchmark
+    public void buffer(Blackhole bh) {
+        numbers.buffer(5)
+                .subscribe(new LatchedSubscriber<>(bh));
+    }
+
+    @Benchmark
+    public void window(Blackhole bh) {
+        numbers.window(5)
+                .flatMap(window -> window)
+                .subscribe(new LatchedSubscriber<>(bh));
+    }
+
+    /**
+     * The statistics of the values in a 1 second window computed from the List buffered for it
+     */
+    @Benchmark
+    public void bufferThenAggregate(Blackhole bh) {
+        numbers.buffer(1, TimeUnit.SECONDS)
+                .map(values -> {
+                    long sum = 0;
+                    long max = Long.MIN_VALUE;
+                    for(int val : values) {
+                        sum += val;
+                        max = Math.max(max, val);
+                    }
+                    return values.isEmpty() ? 0 : (double) sum / values.size() + max;
+                })
+                .subscribe(new LatchedSubscriber<>(bh));
+    }
+
+    /**
+     * The same statistics, plus the percentiles, updated as the values come
+     */
+    @Benchmark
+    public void windowAggregates(Blackhole bh) {
+        numbers.compose(WindowAggregates.tumbling(val -> val, 1, TimeUnit.SECONDS))
+                .subscribe(new LatchedSubscriber<>(bh));
+    }
+
+    @Benchmark
+    public void groupByCount(Blackhole bh) {
+        numbers.groupBy(val -> val % keys)
+                .flatMap(group -> group
+                        .count()
+                        .map(count -> new AbstractMap.SimpleImmutableEntry<>(group.getKey(), count)))
+                .subscribe(new LatchedSubscriber<>(bh));
+    }
+}
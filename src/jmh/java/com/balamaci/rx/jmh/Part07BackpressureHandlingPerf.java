@@ -0,0 +1,108 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.backpressure.AdaptiveZip;
+import com.balamaci.rx.backpressure.ZipPrefetch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the backpressure scenarios in Part07BackpressureHandling,
+ * a backpressure aware range vs. a non-backpressured source guarded by onBackpressureDrop.
+ *
+ * The zip benchmarks pair a fast range with a slow stream that burns CPU for every event on another thread,
+ * comparing the fixed 128 prefetch of the regular zip with the fixed / adaptive prefetch of AdaptiveZip.
+ * Use '-prof gc' for the allocations caused by the buffered events.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Part07BackpressureHandlingPerf {
+
+    @Param({"1000", "1000000"})
+    public int count;
+
+    /** CPU work for each event of the slow stream of the zip benchmarks */
+    @Param({"100"})
+    public int slowTokens;
+
+    private Observable<Integer> range;
+    private Observable<Integer> withoutBackpressure;
+    private Observable<Integer> slow;
+
+    @Setup
+    public void setup() {
+        range = Observable.range(0, count);
+
+        withoutBackpressure = Observable.create(subscriber -> {
+            for(int i=0; i < count; i++) {
+                subscriber.onNext(i);
+            }
+            subscriber.onCompleted();
+        });
+
+        slow = Observable.range(0, count)
+                .subscribeOn(Schedulers.computation())
+                .doOnNext(val -> Blackhole.consumeCPU(slowTokens));
+    }
+
+    @Benchmark
+    public void backpressureAwareObserveOn(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        range.observeOn(Schedulers.computation())
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void dropOverflowingEvents(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        withoutBackpressure.onBackpressureDrop()
+                .observeOn(Schedulers.computation())
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void zipMismatchedRates(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        Observable.zip(range, slow, (val1, val2) -> val1 + val2)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void adaptiveZipFixedPrefetchMismatchedRates(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        AdaptiveZip.zip(range, slow, (val1, val2) -> val1 + val2, ZipPrefetch.fixed(16))
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void adaptiveZipMismatchedRates(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        AdaptiveZip.zip(range, slow, (val1, val2) -> val1 + val2,
+                ZipPrefetch.adaptive(1, 128, 1, TimeUnit.MILLISECONDS))
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+}
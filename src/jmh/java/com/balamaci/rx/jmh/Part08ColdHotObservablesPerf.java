@@ -0,0 +1,62 @@
+package com.balamaci.rx.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+import rx.observables.ConnectableObservable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the publish() / connect() scenarios in Part08ColdHotObservables,
+ * the cost of multicasting 'count' elements to several subscribers.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Part08ColdHotObservablesPerf {
+
+    @Param({"1000", "1000000"})
+    public int count;
+
+    @Param({"1", "8"})
+    public int subscribers;
+
+    private Observable<Integer> range;
+
+    @Setup
+    public void setup() {
+        range = Observable.range(0, count);
+    }
+
+    @Benchmark
+    public void publishConnect(Blackhole bh) {
+        ConnectableObservable<Integer> hot = range.publish();
+        for(int i=0; i < subscribers; i++) {
+            hot.subscribe(new LatchedSubscriber<>(bh));
+        }
+        hot.connect();
+    }
+
+    @Benchmark
+    public void coldResubscribe(Blackhole bh) {
+        for(int i=0; i < subscribers; i++) {
+            range.subscribe(new LatchedSubscriber<>(bh));
+        }
+    }
+}
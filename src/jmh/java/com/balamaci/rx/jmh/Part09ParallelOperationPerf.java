@@ -0,0 +1,143 @@
+package com.balamaci.rx.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.balamaci.rx.parallel.ParallelObservable;
+import com.balamaci.rx.parallel.ParallelTransformers;
+import org.openjdk.jmh.annotations.TearDown;
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the scenarios in Part09ParallelOperation with a cheap calculation
+ * instead of the sleeping intenseCalculation, so what gets measured is the overhead
+ * of the flatMap + subscribeOn fan-out itself, compared with splitting the stream
+ * in a fixed number of rails with ParallelObservable.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Part09ParallelOperationPerf {
+
+    @Param({"1000", "1000000"})
+    public int count;
+
+    @Param({"4"})
+    public int rails;
+
+    private Observable<Integer> vals;
+    private ExecutorService executor;
+    private Scheduler customScheduler;
+
+    @Setup
+    public void setup() {
+        vals = Observable.range(1, count);
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 1);
+        customScheduler = Schedulers.from(executor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void serialOperations(Blackhole bh) {
+        LatchedSubscriber<String> subscriber = new LatchedSubscriber<>(bh);
+        vals.subscribeOn(Schedulers.computation())
+                .map(Part09ParallelOperationPerf::calculation)
+                .map(Object::toString)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void parallelOperation(Blackhole bh) {
+        LatchedSubscriber<String> subscriber = new LatchedSubscriber<>(bh);
+        vals.flatMap(val -> Observable.just(val)
+                        .subscribeOn(Schedulers.computation())
+                        .map(Part09ParallelOperationPerf::calculation))
+                .map(Object::toString)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void parallelOperationUsingCustomExecutor(Blackhole bh) {
+        LatchedSubscriber<String> subscriber = new LatchedSubscriber<>(bh);
+        vals.flatMap(val -> Observable.just(val)
+                        .subscribeOn(customScheduler)
+                        .map(Part09ParallelOperationPerf::calculation))
+                .map(Object::toString)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void parallelRails(Blackhole bh) {
+        LatchedSubscriber<String> subscriber = new LatchedSubscriber<>(bh);
+        ParallelObservable.parallel(vals, rails, Schedulers.computation())
+                .map(Part09ParallelOperationPerf::calculation)
+                .map(Object::toString)
+                .sequential()
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void parallelRailsPreservingOrder(Blackhole bh) {
+        LatchedSubscriber<String> subscriber = new LatchedSubscriber<>(bh);
+        ParallelObservable.parallel(vals, rails, Schedulers.computation())
+                .map(Part09ParallelOperationPerf::calculation)
+                .map(Object::toString)
+                .sequential(true)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void concatMapEager(Blackhole bh) {
+        LatchedSubscriber<String> subscriber = new LatchedSubscriber<>(bh);
+        vals.concatMapEager(val -> Observable.just(val)
+                        .subscribeOn(Schedulers.computation())
+                        .map(Part09ParallelOperationPerf::calculation))
+                .map(Object::toString)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    @Benchmark
+    public void parallelMapOrdered(Blackhole bh) {
+        LatchedSubscriber<String> subscriber = new LatchedSubscriber<>(bh);
+        vals.compose(ParallelTransformers.parallelMapOrdered(Part09ParallelOperationPerf::calculation,
+                        Schedulers.computation(), rails))
+                .map(Object::toString)
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    static int calculation(int i) {
+        return i * 31 + 7;
+    }
+}
@@ -0,0 +1,66 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.primitive.IntObservable;
+import com.balamaci.rx.primitive.LongObservable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same range().map().filter().sum() chain over Observable&lt;Integer&gt; and over IntObservable.
+ *
+ * Run with '-prof gc' to compare the 'gc.alloc.rate.norm' values: the boxed chain allocates an Integer
+ * for most of the mapped values plus a Long for every partial sum, while the primitive chain allocates
+ * only the few operator objects created at subscription.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimitiveStreamsPerf {
+
+    @Param({"100000000"})
+    public int count;
+
+    private Observable<Long> boxed;
+    private LongObservable primitive;
+
+    @Setup
+    public void setup() {
+        boxed = Observable.range(0, count)
+                .map(val -> val * 3)
+                .filter(val -> val % 2 == 0)
+                .reduce(0L, (sum, val) -> sum + val);
+
+        primitive = IntObservable.range(0, count)
+                .map(val -> val * 3)
+                .filter(val -> val % 2 == 0)
+                .sum();
+    }
+
+    @Benchmark
+    public void boxedRangeMapFilterSum(Blackhole bh) {
+        boxed.subscribe(new LatchedSubscriber<>(bh));
+    }
+
+    @Benchmark
+    public void primitiveRangeMapFilterSum(Blackhole bh) {
+        primitive.subscribe(bh::consume);
+    }
+}
@@ -0,0 +1,88 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.multicast.RingBufferReplay;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+import rx.observables.ConnectableObservable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One writer replaying 'count' values to 64 subscribers, with replay() and with RingBufferReplay, keeping the
+ * last 'capacity' values or the last 'capacity' values not older than a minute.
+ *
+ * fanOut has the 64 subscribers receiving the values as they are written, lateSubscribers has them subscribing
+ * once the source completed, replaying what was kept. Run with -prof gc for the memory allocated per value:
+ * <pre>
+ * java -jar target/benchmarks.jar ReplayFanOutPerf -prof gc
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplayFanOutPerf {
+
+    static final int SUBSCRIBERS = 64;
+
+    @Param({"replay", "ringBuffer"})
+    public String variant;
+
+    @Param({"size", "sizeAndAge"})
+    public String eviction;
+
+    @Param({"100000"})
+    public int count;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private Observable<Integer> range;
+
+    @Setup
+    public void setup() {
+        range = Observable.range(0, count);
+    }
+
+    @Benchmark
+    public void fanOut(Blackhole bh) {
+        ConnectableObservable<Integer> replay = replay();
+        for(int i=0; i < SUBSCRIBERS; i++) {
+            replay.subscribe(new LatchedSubscriber<>(bh));
+        }
+        replay.connect();
+    }
+
+    @Benchmark
+    public void lateSubscribers(Blackhole bh) {
+        ConnectableObservable<Integer> replay = replay();
+        replay.connect();
+        for(int i=0; i < SUBSCRIBERS; i++) {
+            replay.subscribe(new LatchedSubscriber<>(bh));
+        }
+    }
+
+    private ConnectableObservable<Integer> replay() {
+        boolean byAge = "sizeAndAge".equals(eviction);
+        if("ringBuffer".equals(variant)) {
+            return byAge ? RingBufferReplay.create(range, capacity, 1, TimeUnit.MINUTES)
+                    : RingBufferReplay.create(range, capacity);
+        }
+        return byAge ? range.replay(capacity, 1, TimeUnit.MINUTES) : range.replay(capacity);
+    }
+}
@@ -0,0 +1,86 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.cache.SingleFlightCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1000 subscribers, on the computation Schedulers, for 100 hot keys whose value takes 'tokens' of CPU to compute,
+ * like in Part01CreateObservable.fromCallableThroughSingleFlightCache.
+ *
+ * fromCallable computes the value for every subscriber, singleFlightCold starts each operation with an empty
+ * SingleFlightCache so the subscribers for the same key share the computation, and singleFlightWarm reuses the same
+ * cache so the values are computed once per trial.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SingleFlightCachePerf {
+
+    static final int SUBSCRIBERS = 1000;
+    static final int KEYS = 100;
+
+    @Param({"fromCallable", "singleFlightCold", "singleFlightWarm"})
+    public String variant;
+
+    @Param({"10000"})
+    public int tokens;
+
+    private Func1<Integer, Observable<Integer>> loader;
+    private SingleFlightCache<Integer, Integer> warmCache;
+    private SingleFlightCache<Integer, Integer> cache;
+
+    @Setup
+    public void setup() {
+        loader = key -> Observable.fromCallable(() -> {
+            Blackhole.consumeCPU(tokens);
+            return key;
+        });
+        warmCache = SingleFlightCache.create(loader, KEYS, 1, TimeUnit.HOURS);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupCache() {
+        cache = "singleFlightWarm".equals(variant) ? warmCache
+                : SingleFlightCache.create(loader, KEYS, 1, TimeUnit.HOURS);
+    }
+
+    @Benchmark
+    public void concurrentSubscribers(Blackhole bh) {
+        List<LatchedSubscriber<Integer>> subscribers = new ArrayList<>(SUBSCRIBERS);
+        for(int i=0; i < SUBSCRIBERS; i++) {
+            Integer key = i % KEYS;
+            Observable<Integer> value = "fromCallable".equals(variant) ? loader.call(key) : cache.get(key);
+
+            LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+            value.subscribeOn(Schedulers.computation()).subscribe(subscriber);
+            subscribers.add(subscriber);
+        }
+        for(LatchedSubscriber<Integer> subscriber : subscribers) {
+            subscriber.await();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.balamaci.rx.jmh;
+
+import com.balamaci.rx.schedulers.MoreSchedulers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tasks with skewed durations - most short, one in ten a hundred times longer - each on its own Worker
+ * like in Part09ParallelOperation.parallelOperation, on Schedulers.computation() and on the work-stealing
+ * Scheduler.
+ *
+ * Sampling the time to complete all the tasks gives the percentiles (p0.99, p0.999) for the tail latency.
+ * The core utilization - the time spent running the tasks divided by the available core time - is printed
+ * at the end of every iteration.
+ *
+ * @author sbalamaci
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkStealingSchedulerPerf {
+
+    @Param({"computation", "workStealing"})
+    public String scheduler;
+
+    @Param({"256"})
+    public int tasks;
+
+    private Scheduler taskScheduler;
+    private long[] tokens;
+
+    private final LongAdder busyNanos = new LongAdder();
+    private long iterationStart;
+
+    @Setup
+    public void setup() {
+        taskScheduler = "computation".equals(scheduler) ? Schedulers.computation() : MoreSchedulers.workStealing();
+
+        Random random = new Random(42);
+        tokens = new long[tasks];
+        for(int i=0; i < tasks; i++) {
+            tokens[i] = random.nextInt(10) == 0 ? 100_000 : 1_000;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        busyNanos.reset();
+        iterationStart = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportUtilization() {
+        long available = (System.nanoTime() - iterationStart) * Runtime.getRuntime().availableProcessors();
+        System.out.printf("  core utilization: %.1f%%%n", 100.0 * busyNanos.sum() / available);
+    }
+
+    @Benchmark
+    public void skewedTasks(Blackhole bh) {
+        LatchedSubscriber<Integer> subscriber = new LatchedSubscriber<>(bh);
+        Observable.range(0, tasks)
+                .flatMap(val -> Observable.just(val)
+                        .subscribeOn(taskScheduler)
+                        .map(this::calculation))
+                .subscribe(subscriber);
+        subscriber.await();
+    }
+
+    private int calculation(int i) {
+        long start = System.nanoTime();
+        Blackhole.consumeCPU(tokens[i]);
+        busyNanos.add(System.nanoTime() - start);
+        return i;
+    }
+}
@@ -0,0 +1,89 @@
+package com.balamaci.rx.aggregation;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The count, sum, min, max, mean and percentiles of the values of a window.
+ * The percentiles are approximated by an HdrHistogram with 2 significant digits and leave out negative values.
+ *
+ * @author sbalamaci
+ */
+public final class Aggregate {
+
+    private final long start;
+    private final long end;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+    private final Histogram histogram;
+
+    Aggregate(long start, long end, long count, long sum, long min, long max, Histogram histogram) {
+        this.start = start;
+        this.end = end;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.histogram = histogram;
+    }
+
+    /**
+     * @return the time in milliseconds when the window opened
+     */
+    public long start() {
+        return start;
+    }
+
+    /**
+     * @return the time in milliseconds when the window closed
+     */
+    public long end() {
+        return end;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * @return Long.MAX_VALUE for an empty window
+     */
+    public long min() {
+        return min;
+    }
+
+    /**
+     * @return Long.MIN_VALUE for an empty window
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * @return NaN for an empty window
+     */
+    public double mean() {
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     */
+    public long percentile(double percentile) {
+        return histogram.getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public String toString() {
+        if(count == 0) {
+            return "Aggregate{count=0}";
+        }
+        return "Aggregate{count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max +
+                ", mean=" + String.format("%.2f", mean()) + ", p50=" + percentile(50) + ", p99=" + percentile(99) + "}";
+    }
+}
@@ -0,0 +1,127 @@
+package com.balamaci.rx.aggregation;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Aggregates windows of event time - the timestamp carried by the values - instead of the time at which they
+ * arrive, so values coming out of order from several producers still land in the window they belong to.
+ *
+ * <pre>
+ * clicks.compose(EventTimeWindows.&lt;Click&gt;of(Click::getTimestamp, Click::getDurationMillis)
+ *                     .window(10, 5, TimeUnit.SECONDS)
+ *                     .maxOutOfOrderness(2, TimeUnit.SECONDS)
+ *                     .allowedLateness(30, TimeUnit.SECONDS)
+ *                     .lateItems(late -> log.warn("Dropped late click {}", late)))
+ * </pre>
+ *
+ * The watermark tells how far the event time went: it's the highest timestamp seen minus 'maxOutOfOrderness',
+ * the values being expected to be at most that much behind the most recent one. It's advanced periodically, and
+ * a window is emitted once the watermark passed its end, windows without values being skipped.
+ *
+ * A value for a window already emitted, but whose end is less than 'allowedLateness' behind the watermark, updates
+ * the window which is emitted again. Older than that, the window was discarded and the value is passed to 'lateItems'.
+ * Only the panes of the windows not yet discarded are kept, so the memory is bounded by the out of orderness and
+ * the allowed lateness. When the source completes, the windows not yet emitted are.
+ *
+ * @author sbalamaci
+ */
+public final class EventTimeWindows<T> implements Observable.Transformer<T, Aggregate> {
+
+    private final ToLongFunction<? super T> timestampFunction;
+    private final ToLongFunction<? super T> valueFunction;
+
+    private long sizeMillis = 1000;
+    private long slideMillis = 1000;
+    private long maxOutOfOrdernessMillis;
+    private long allowedLatenessMillis;
+    private Action1<? super T> lateItems = late -> { };
+
+    private long watermarkIntervalMillis = 200;
+    private Scheduler scheduler = Schedulers.computation();
+
+    private EventTimeWindows(ToLongFunction<? super T> timestampFunction, ToLongFunction<? super T> valueFunction) {
+        this.timestampFunction = timestampFunction;
+        this.valueFunction = valueFunction;
+    }
+
+    /**
+     * @param timestampFunction the event time of a value, in milliseconds
+     * @param valueFunction what is aggregated
+     */
+    public static <T> EventTimeWindows<T> of(ToLongFunction<? super T> timestampFunction,
+                                             ToLongFunction<? super T> valueFunction) {
+        return new EventTimeWindows<>(timestampFunction, valueFunction);
+    }
+
+    /**
+     * Tumbling windows of 'size', one second by default
+     */
+    public EventTimeWindows<T> window(long size, TimeUnit unit) {
+        return window(size, size, unit);
+    }
+
+    /**
+     * Sliding windows of 'size' starting every 'slide', aligned on the epoch
+     */
+    public EventTimeWindows<T> window(long size, long slide, TimeUnit unit) {
+        if(unit.toMillis(size) <= 0) {
+            throw new IllegalArgumentException("size > 0ms required but it was " + unit.toMillis(size));
+        }
+        if(unit.toMillis(slide) <= 0) {
+            throw new IllegalArgumentException("slide > 0ms required but it was " + unit.toMillis(slide));
+        }
+        this.sizeMillis = unit.toMillis(size);
+        this.slideMillis = unit.toMillis(slide);
+        return this;
+    }
+
+    public EventTimeWindows<T> maxOutOfOrderness(long time, TimeUnit unit) {
+        if(time < 0) {
+            throw new IllegalArgumentException("maxOutOfOrderness >= 0 required but it was " + time);
+        }
+        this.maxOutOfOrdernessMillis = unit.toMillis(time);
+        return this;
+    }
+
+    public EventTimeWindows<T> allowedLateness(long time, TimeUnit unit) {
+        if(time < 0) {
+            throw new IllegalArgumentException("allowedLateness >= 0 required but it was " + time);
+        }
+        this.allowedLatenessMillis = unit.toMillis(time);
+        return this;
+    }
+
+    /**
+     * @param lateItems receives the values which came after their windows were discarded, on the source's thread
+     */
+    public EventTimeWindows<T> lateItems(Action1<? super T> lateItems) {
+        this.lateItems = lateItems;
+        return this;
+    }
+
+    /**
+     * How often the watermark is advanced, every 200ms by default on Schedulers.computation()
+     */
+    public EventTimeWindows<T> watermarkInterval(long interval, TimeUnit unit, Scheduler scheduler) {
+        if(interval <= 0) {
+            throw new IllegalArgumentException("interval > 0 required but it was " + interval);
+        }
+        this.watermarkIntervalMillis = Math.max(1, unit.toMillis(interval));
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    @Override
+    public Observable<Aggregate> call(Observable<T> source) {
+        OperatorEventTimeAggregate<T> operator = new OperatorEventTimeAggregate<>(timestampFunction, valueFunction,
+                sizeMillis, slideMillis, maxOutOfOrdernessMillis, allowedLatenessMillis, lateItems,
+                watermarkIntervalMillis, scheduler);
+        return source.lift(operator);
+    }
+}
@@ -0,0 +1,255 @@
+package com.balamaci.rx.aggregation;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.exceptions.OnErrorThrowable;
+import rx.functions.Action1;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Event time windows, see {@link EventTimeWindows}.
+ *
+ * Like for the processing time windows the time is cut into panes of the greatest common divisor of the window's
+ * size and slide, here keyed by their index since the epoch as the values don't come in order. The watermark is
+ * advanced by a periodic task on the scheduler, so the panes are guarded by the subscriber's lock.
+ *
+ * @author sbalamaci
+ */
+final class OperatorEventTimeAggregate<T> implements Observable.Operator<Aggregate, T> {
+
+    /** purged panes kept for reuse, their histograms being the expensive part */
+    static final int MAX_FREE_PANES = 16;
+
+    private final ToLongFunction<? super T> timestampFunction;
+    private final ToLongFunction<? super T> valueFunction;
+    private final long sizeMillis;
+    private final long slideMillis;
+    private final long maxOutOfOrdernessMillis;
+    private final long allowedLatenessMillis;
+    private final Action1<? super T> lateItems;
+    private final long watermarkIntervalMillis;
+    private final Scheduler scheduler;
+
+    OperatorEventTimeAggregate(ToLongFunction<? super T> timestampFunction, ToLongFunction<? super T> valueFunction,
+                               long sizeMillis, long slideMillis, long maxOutOfOrdernessMillis,
+                               long allowedLatenessMillis, Action1<? super T> lateItems,
+                               long watermarkIntervalMillis, Scheduler scheduler) {
+        this.timestampFunction = timestampFunction;
+        this.valueFunction = valueFunction;
+        this.sizeMillis = sizeMillis;
+        this.slideMillis = slideMillis;
+        this.maxOutOfOrdernessMillis = maxOutOfOrdernessMillis;
+        this.allowedLatenessMillis = allowedLatenessMillis;
+        this.lateItems = lateItems;
+        this.watermarkIntervalMillis = watermarkIntervalMillis;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Subscriber<? super T> call(Subscriber<? super Aggregate> child) {
+        Scheduler.Worker worker = scheduler.createWorker();
+        child.add(worker);
+
+        EventTimeSubscriber<T> parent = new EventTimeSubscriber<>(child, this);
+        child.add(parent);
+        worker.schedulePeriodically(parent::advanceWatermark, watermarkIntervalMillis, watermarkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        return parent;
+    }
+
+    static final class EventTimeSubscriber<T> extends Subscriber<T> {
+
+        final Subscriber<? super Aggregate> child;
+        final OperatorEventTimeAggregate<T> operator;
+
+        final long paneMillis;
+        final long panesPerWindow;
+        final long panesPerSlide;
+
+        /** guarded by this */
+        final NavigableMap<Long, Pane> panes = new TreeMap<>();
+        final ArrayDeque<Pane> freePanes = new ArrayDeque<>();
+        final Pane window = new Pane();
+        long maxTimestamp = Long.MIN_VALUE;
+        long watermark = Long.MIN_VALUE;
+        boolean done;
+
+        EventTimeSubscriber(Subscriber<? super Aggregate> child, OperatorEventTimeAggregate<T> operator) {
+            this.child = child;
+            this.operator = operator;
+            this.paneMillis = OperatorSlidingAggregate.gcd(operator.sizeMillis, operator.slideMillis);
+            this.panesPerWindow = operator.sizeMillis / paneMillis;
+            this.panesPerSlide = operator.slideMillis / paneMillis;
+        }
+
+        @Override
+        public void onNext(T t) {
+            long timestamp;
+            long value;
+            try {
+                timestamp = operator.timestampFunction.applyAsLong(t);
+                value = operator.valueFunction.applyAsLong(t);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                unsubscribe();
+                onError(OnErrorThrowable.addValueAsLastCause(ex, t));
+                return;
+            }
+
+            long pane = Math.floorDiv(timestamp, paneMillis);
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                if(!isLate(pane)) {
+                    maxTimestamp = Math.max(maxTimestamp, timestamp);
+                    pane(pane).add(value);
+                    emitUpdatedWindows(pane);
+                    return;
+                }
+            }
+            operator.lateItems.call(t);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                done = true;
+                child.onError(e);
+            }
+        }
+
+        /**
+         * Emits the windows the watermark didn't reach yet
+         */
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                done = true;
+                for(long w : windowsEndingIn(watermark, Long.MAX_VALUE)) {
+                    child.onNext(aggregate(w));
+                }
+                child.onCompleted();
+            }
+        }
+
+        void advanceWatermark() {
+            synchronized (this) {
+                if(done || maxTimestamp == Long.MIN_VALUE) {
+                    return;
+                }
+                long next = maxTimestamp - operator.maxOutOfOrdernessMillis;
+                if(next <= watermark) {
+                    return;
+                }
+                long previous = watermark;
+                watermark = next;
+
+                for(long w : windowsEndingIn(previous, next)) {
+                    child.onNext(aggregate(w));
+                }
+                purge();
+            }
+        }
+
+        /**
+         * @return whether all the windows of the pane were discarded
+         */
+        private boolean isLate(long pane) {
+            long lastWindow = Math.floorDiv(pane, panesPerSlide);
+            return watermark != Long.MIN_VALUE && end(lastWindow) + operator.allowedLatenessMillis <= watermark;
+        }
+
+        /**
+         * Emits again the windows of the pane which were already emitted, but are still within the allowed lateness
+         */
+        private void emitUpdatedWindows(long pane) {
+            if(watermark == Long.MIN_VALUE) {
+                return;
+            }
+            for(long w = firstWindow(pane); w <= Math.floorDiv(pane, panesPerSlide); w++) {
+                long end = end(w);
+                if(end <= watermark && end + operator.allowedLatenessMillis > watermark) {
+                    child.onNext(aggregate(w));
+                }
+            }
+        }
+
+        /**
+         * The windows having values, ending after 'from' and up to 'to', in order
+         */
+        private TreeSet<Long> windowsEndingIn(long from, long to) {
+            TreeSet<Long> windows = new TreeSet<>();
+            for(long pane : panes.keySet()) {
+                for(long w = firstWindow(pane); w <= Math.floorDiv(pane, panesPerSlide); w++) {
+                    long end = end(w);
+                    if(end > from && end <= to) {
+                        windows.add(w);
+                    }
+                }
+            }
+            return windows;
+        }
+
+        /**
+         * Discards the panes whose windows all got past the allowed lateness
+         */
+        private void purge() {
+            Iterator<Map.Entry<Long, Pane>> oldest = panes.entrySet().iterator();
+            while(oldest.hasNext()) {
+                Map.Entry<Long, Pane> entry = oldest.next();
+                if(!isLate(entry.getKey())) {
+                    break;
+                }
+                oldest.remove();
+                if(freePanes.size() < MAX_FREE_PANES) {
+                    entry.getValue().reset();
+                    freePanes.offer(entry.getValue());
+                }
+            }
+        }
+
+        private Pane pane(long index) {
+            Pane pane = panes.get(index);
+            if(pane == null) {
+                pane = freePanes.isEmpty() ? new Pane() : freePanes.poll();
+                panes.put(index, pane);
+            }
+            return pane;
+        }
+
+        private Aggregate aggregate(long w) {
+            long firstPane = w * panesPerSlide;
+            window.reset();
+            for(Pane pane : panes.subMap(firstPane, true, firstPane + panesPerWindow - 1, true).values()) {
+                window.addAll(pane);
+            }
+            long start = w * operator.slideMillis;
+            return window.toAggregate(start, start + operator.sizeMillis);
+        }
+
+        private long firstWindow(long pane) {
+            return -Math.floorDiv(-(pane - panesPerWindow + 1), panesPerSlide);
+        }
+
+        private long end(long w) {
+            return w * operator.slideMillis + operator.sizeMillis;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.balamaci.rx.aggregation;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.exceptions.OnErrorThrowable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Aggregates the values of sessions: a session starts with a value and ends once no value came for 'gap'.
+ *
+ * A single timer is pending for the open session, set to 'gap' after its first value. When it fires before the
+ * session's last value is 'gap' old, it's rescheduled for the rest of the time instead of being reset for every value.
+ *
+ * @author sbalamaci
+ */
+final class OperatorSessionAggregate<T> implements Observable.Operator<Aggregate, T> {
+
+    private final ToLongFunction<? super T> valueFunction;
+    private final long gapMillis;
+    private final Scheduler scheduler;
+
+    OperatorSessionAggregate(ToLongFunction<? super T> valueFunction, long gap, TimeUnit unit, Scheduler scheduler) {
+        if(gap <= 0) {
+            throw new IllegalArgumentException("gap > 0 required but it was " + gap);
+        }
+        this.valueFunction = valueFunction;
+        this.gapMillis = Math.max(1, unit.toMillis(gap));
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Subscriber<? super T> call(Subscriber<? super Aggregate> child) {
+        Scheduler.Worker worker = scheduler.createWorker();
+        child.add(worker);
+
+        SessionSubscriber<T> parent = new SessionSubscriber<>(child, valueFunction, gapMillis, worker);
+        child.add(parent);
+        return parent;
+    }
+
+    static final class SessionSubscriber<T> extends Subscriber<T> {
+
+        final Subscriber<? super Aggregate> child;
+        final ToLongFunction<? super T> valueFunction;
+        final long gapMillis;
+        final Scheduler.Worker worker;
+
+        final Pane session = new Pane();
+
+        /** guarded by this */
+        boolean open;
+        long firstMillis;
+        long lastMillis;
+        boolean done;
+
+        SessionSubscriber(Subscriber<? super Aggregate> child, ToLongFunction<? super T> valueFunction,
+                          long gapMillis, Scheduler.Worker worker) {
+            this.child = child;
+            this.valueFunction = valueFunction;
+            this.gapMillis = gapMillis;
+            this.worker = worker;
+        }
+
+        @Override
+        public void onNext(T t) {
+            long value;
+            try {
+                value = valueFunction.applyAsLong(t);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                unsubscribe();
+                onError(OnErrorThrowable.addValueAsLastCause(ex, t));
+                return;
+            }
+            long now = worker.now();
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                if(!open) {
+                    open = true;
+                    firstMillis = now;
+                    worker.schedule(this::checkGap, gapMillis, TimeUnit.MILLISECONDS);
+                }
+                lastMillis = now;
+                session.add(value);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                done = true;
+                child.onError(e);
+            }
+        }
+
+        /**
+         * Ends the open session
+         */
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                done = true;
+                if(open) {
+                    child.onNext(session.toAggregate(firstMillis, lastMillis));
+                }
+                child.onCompleted();
+            }
+        }
+
+        void checkGap() {
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                long idle = worker.now() - lastMillis;
+                if(idle < gapMillis) {
+                    worker.schedule(this::checkGap, gapMillis - idle, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                open = false;
+                Aggregate aggregate = session.toAggregate(firstMillis, lastMillis);
+                session.reset();
+                child.onNext(aggregate);
+            }
+        }
+    }
+}
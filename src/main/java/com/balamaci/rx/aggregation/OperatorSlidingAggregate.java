@@ -0,0 +1,195 @@
+package com.balamaci.rx.aggregation;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.exceptions.OnErrorThrowable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Aggregates the values of windows of 'size' opening every 'slide', a tumbling window being the case where they're
+ * equal. The time is cut into panes of the greatest common divisor of the two, and a window is the sum of the
+ * 'size / pane' panes it spans - window(10, 5, SECONDS) has panes of 5 seconds, each shared by two windows.
+ * Only the panes of the windows still open are kept, and reused as they close.
+ *
+ * The panes are switched by a periodic task on the scheduler, the values coming in from the source thread, so both
+ * are guarded by the subscriber's lock, same as buffer(timespan) does. The windows are emitted as they close,
+ * without waiting for requests, like buffer(timespan).
+ *
+ * @author sbalamaci
+ */
+final class OperatorSlidingAggregate<T> implements Observable.Operator<Aggregate, T> {
+
+    private final ToLongFunction<? super T> valueFunction;
+    private final long size;
+    private final long slide;
+    private final long pane;
+    private final TimeUnit unit;
+    private final Scheduler scheduler;
+
+    OperatorSlidingAggregate(ToLongFunction<? super T> valueFunction, long size, long slide, TimeUnit unit,
+                             Scheduler scheduler) {
+        if(size <= 0) {
+            throw new IllegalArgumentException("size > 0 required but it was " + size);
+        }
+        if(slide <= 0) {
+            throw new IllegalArgumentException("slide > 0 required but it was " + slide);
+        }
+        this.valueFunction = valueFunction;
+        this.size = size;
+        this.slide = slide;
+        this.pane = gcd(size, slide);
+        this.unit = unit;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Subscriber<? super T> call(Subscriber<? super Aggregate> child) {
+        Scheduler.Worker worker = scheduler.createWorker();
+        child.add(worker);
+
+        SlidingSubscriber<T> parent = new SlidingSubscriber<>(child, this, worker.now());
+        child.add(parent);
+        worker.schedulePeriodically(parent::closePane, pane, pane, unit);
+        return parent;
+    }
+
+    static long gcd(long a, long b) {
+        while(b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    static final class SlidingSubscriber<T> extends Subscriber<T> {
+
+        final Subscriber<? super Aggregate> child;
+        final ToLongFunction<? super T> valueFunction;
+        final Scheduler scheduler;
+
+        /** panes in a window, and panes between the openings of two windows */
+        final int panesPerWindow;
+        final long panesPerSlide;
+
+        final long startMillis;
+        final long sizeMillis;
+        final long slideMillis;
+
+        /** the panes of the open windows, pane i being at i % panesPerWindow */
+        final Pane[] panes;
+        /** the panes of a window added together */
+        final Pane window = new Pane();
+
+        /** guarded by this */
+        long current;
+        boolean done;
+
+        SlidingSubscriber(Subscriber<? super Aggregate> child, OperatorSlidingAggregate<T> operator, long startMillis) {
+            this.child = child;
+            this.valueFunction = operator.valueFunction;
+            this.scheduler = operator.scheduler;
+
+            long panesPerWindow = operator.size / operator.pane;
+            if(panesPerWindow > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many panes in a window: " + panesPerWindow);
+            }
+            this.panesPerWindow = (int) panesPerWindow;
+            this.panesPerSlide = operator.slide / operator.pane;
+
+            this.startMillis = startMillis;
+            this.sizeMillis = operator.unit.toMillis(operator.size);
+            this.slideMillis = operator.unit.toMillis(operator.slide);
+
+            this.panes = new Pane[this.panesPerWindow];
+            for(int i=0; i < panes.length; i++) {
+                panes[i] = new Pane();
+            }
+        }
+
+        @Override
+        public void onNext(T t) {
+            long value;
+            try {
+                value = valueFunction.applyAsLong(t);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                unsubscribe();
+                onError(OnErrorThrowable.addValueAsLastCause(ex, t));
+                return;
+            }
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                panes[(int) (current % panesPerWindow)].add(value);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                done = true;
+                child.onError(e);
+            }
+        }
+
+        /**
+         * Emits the windows still open, partially filled
+         */
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                done = true;
+
+                long now = scheduler.now();
+                // the windows which started, and didn't end before the current pane
+                long first = Math.max(0, ceilDiv(current - panesPerWindow + 1, panesPerSlide));
+                long last = current / panesPerSlide;
+                for(long w = first; w <= last; w++) {
+                    child.onNext(aggregate(w * panesPerSlide, current, startMillis + w * slideMillis, now));
+                }
+                child.onCompleted();
+            }
+        }
+
+        void closePane() {
+            synchronized (this) {
+                if(done) {
+                    return;
+                }
+                long closed = current;
+                long firstPane = closed - panesPerWindow + 1;
+                if(firstPane >= 0 && firstPane % panesPerSlide == 0) {
+                    long start = startMillis + (firstPane / panesPerSlide) * slideMillis;
+                    child.onNext(aggregate(firstPane, closed, start, start + sizeMillis));
+                }
+                current = closed + 1;
+                // the pane reused was the first of a window which just closed
+                panes[(int) (current % panesPerWindow)].reset();
+            }
+        }
+
+        private Aggregate aggregate(long firstPane, long lastPane, long start, long end) {
+            window.reset();
+            for(long i = firstPane; i <= lastPane; i++) {
+                window.addAll(panes[(int) (i % panesPerWindow)]);
+            }
+            return window.toAggregate(start, end);
+        }
+
+        private static long ceilDiv(long a, long b) {
+            return -Math.floorDiv(-a, b);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.balamaci.rx.aggregation;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The running count, sum, min, max and histogram of the values of a time slice. Windows are made of one or more
+ * panes, sliding windows sharing the panes they overlap on, and the panes are reused once their windows closed.
+ *
+ * @author sbalamaci
+ */
+final class Pane {
+
+    static final int SIGNIFICANT_DIGITS = 2;
+
+    long count;
+    long sum;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+
+    /** only the values >= 0, HdrHistogram can't record negative ones */
+    final Histogram histogram = newHistogram();
+
+    void add(long value) {
+        count++;
+        sum += value;
+        if(value < min) {
+            min = value;
+        }
+        if(value > max) {
+            max = value;
+        }
+        if(value >= 0) {
+            histogram.recordValue(value);
+        }
+    }
+
+    void addAll(Pane pane) {
+        count += pane.count;
+        sum += pane.sum;
+        min = Math.min(min, pane.min);
+        max = Math.max(max, pane.max);
+        if(pane.histogram.getTotalCount() != 0) {
+            histogram.add(pane.histogram);
+        }
+    }
+
+    void reset() {
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        histogram.reset();
+    }
+
+    Aggregate toAggregate(long start, long end) {
+        return new Aggregate(start, end, count, sum, min, max, histogram.copy());
+    }
+
+    static Histogram newHistogram() {
+        Histogram histogram = new Histogram(SIGNIFICANT_DIGITS);
+        histogram.setAutoResize(true);
+        return histogram;
+    }
+}
@@ -0,0 +1,71 @@
+package com.balamaci.rx.aggregation;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Windowed aggregations which plug into a regular Observable chain through compose().
+ *
+ * buffer() and window() hold on to every value of a window - in a List or a sub-Observable - until the window
+ * closes, while these update the count, sum, min, max and an HdrHistogram for the percentiles as the values come,
+ * so the memory depends on the number of windows open and not on the number of values.
+ *
+ * <pre>
+ * latencies.compose(WindowAggregates.sliding(Request::getLatencyMillis, 10, 5, TimeUnit.SECONDS))
+ *          .subscribe(aggregate -> log.info("p99={}ms", aggregate.percentile(99)));
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class WindowAggregates {
+
+    private WindowAggregates() {
+    }
+
+    /**
+     * Consecutive windows of 'size', like window(size, unit)
+     */
+    public static <T> Observable.Transformer<T, Aggregate> tumbling(ToLongFunction<? super T> valueFunction,
+                                                                   long size, TimeUnit unit) {
+        return tumbling(valueFunction, size, unit, Schedulers.computation());
+    }
+
+    public static <T> Observable.Transformer<T, Aggregate> tumbling(ToLongFunction<? super T> valueFunction,
+                                                                   long size, TimeUnit unit, Scheduler scheduler) {
+        return sliding(valueFunction, size, size, unit, scheduler);
+    }
+
+    /**
+     * Windows of 'size' opening every 'slide', like window(size, slide, unit)
+     */
+    public static <T> Observable.Transformer<T, Aggregate> sliding(ToLongFunction<? super T> valueFunction,
+                                                                  long size, long slide, TimeUnit unit) {
+        return sliding(valueFunction, size, slide, unit, Schedulers.computation());
+    }
+
+    public static <T> Observable.Transformer<T, Aggregate> sliding(ToLongFunction<? super T> valueFunction,
+                                                                  long size, long slide, TimeUnit unit,
+                                                                  Scheduler scheduler) {
+        OperatorSlidingAggregate<T> operator = new OperatorSlidingAggregate<>(valueFunction, size, slide, unit,
+                scheduler);
+        return source -> source.lift(operator);
+    }
+
+    /**
+     * Windows of the values less than 'gap' apart, the window ending once no value came for 'gap'
+     */
+    public static <T> Observable.Transformer<T, Aggregate> session(ToLongFunction<? super T> valueFunction,
+                                                                  long gap, TimeUnit unit) {
+        return session(valueFunction, gap, unit, Schedulers.computation());
+    }
+
+    public static <T> Observable.Transformer<T, Aggregate> session(ToLongFunction<? super T> valueFunction,
+                                                                  long gap, TimeUnit unit, Scheduler scheduler) {
+        OperatorSessionAggregate<T> operator = new OperatorSessionAggregate<>(valueFunction, gap, unit, scheduler);
+        return source -> source.lift(operator);
+    }
+}
@@ -0,0 +1,328 @@
+package com.balamaci.rx.backpressure;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Func2;
+import rx.functions.FuncN;
+import rx.internal.operators.BackpressureUtils;
+import rx.plugins.RxJavaHooks;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Zip with a configurable, optionally adaptive, prefetch per source and an optional age limit for the
+ * buffered events, see {@link ZipPrefetch}.
+ *
+ * The regular zip requests 128 events from every source and fails with a MissingBackpressureException when
+ * a source which doesn't support backpressure pushes more than that while waiting for a slow source.
+ * Here the events are buffered without a fixed limit, the number of requested events follows the rate at
+ * which the zip actually emits, and events too old to still be relevant can be dropped instead.
+ * The ages and the adaptive windows are measured with the clock of Schedulers.computation(), so they follow
+ * virtual time when a TestScheduler is swapped in through RxJavaHooks.
+ *
+ * @author sbalamaci
+ */
+public final class AdaptiveZip {
+
+    private AdaptiveZip() {
+    }
+
+    public static <T1, T2, R> Observable<R> zip(Observable<? extends T1> o1, Observable<? extends T2> o2,
+                                                Func2<? super T1, ? super T2, ? extends R> zipper,
+                                                ZipPrefetch prefetch) {
+        return zip(o1, o2, zipper, prefetch, new OverflowCounters());
+    }
+
+    /**
+     * @param counters records the events dropped because they were older than the max age
+     */
+    @SuppressWarnings("unchecked")
+    public static <T1, T2, R> Observable<R> zip(Observable<? extends T1> o1, Observable<? extends T2> o2,
+                                                Func2<? super T1, ? super T2, ? extends R> zipper,
+                                                ZipPrefetch prefetch, OverflowCounters counters) {
+        return zip(Arrays.asList(o1, o2), args -> zipper.call((T1) args[0], (T2) args[1]), prefetch, counters);
+    }
+
+    /**
+     * Like Observable.zip(Iterable), completes right away when there are no sources
+     */
+    public static <R> Observable<R> zip(List<? extends Observable<?>> sources, FuncN<? extends R> zipper,
+                                        ZipPrefetch prefetch, OverflowCounters counters) {
+        if(sources.isEmpty()) {
+            return Observable.empty();
+        }
+        List<Observable<?>> copy = new ArrayList<>(sources);
+        return Observable.create(child -> {
+            ZipCoordinator<R> coordinator = new ZipCoordinator<>(child, copy.size(), zipper, prefetch, counters,
+                    Schedulers.computation());
+            coordinator.subscribe(copy);
+        });
+    }
+
+    static final class ZipCoordinator<R> {
+
+        static final Object NULL = new Object();
+
+        final Subscriber<? super R> child;
+        final FuncN<? extends R> zipper;
+        final ZipPrefetch config;
+        final OverflowCounters counters;
+        final Scheduler clock;
+        final InnerSubscriber[] inners;
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        volatile boolean cancelled;
+
+        /** accessed only inside drain() */
+        int prefetch;
+        long windowStart;
+        long emittedInWindow;
+
+        ZipCoordinator(Subscriber<? super R> child, int n, FuncN<? extends R> zipper, ZipPrefetch config,
+                       OverflowCounters counters, Scheduler clock) {
+            this.child = child;
+            this.zipper = zipper;
+            this.config = config;
+            this.counters = counters;
+            this.clock = clock;
+            this.prefetch = config.initial();
+            this.windowStart = now();
+            this.inners = new InnerSubscriber[n];
+            for(int i=0; i < n; i++) {
+                inners[i] = new InnerSubscriber(this);
+            }
+        }
+
+        void subscribe(List<Observable<?>> sources) {
+            for(InnerSubscriber inner : inners) {
+                child.add(inner);
+            }
+            child.add(Subscriptions.create(() -> cancelled = true));
+            child.setProducer(n -> {
+                if(n > 0) {
+                    BackpressureUtils.getAndAddRequest(requested, n);
+                    drain();
+                }
+            });
+            for(int i=0; i < inners.length && !cancelled; i++) {
+                sources.get(i).unsafeSubscribe(inners[i]);
+            }
+        }
+
+        void onError(Throwable e) {
+            if(error.compareAndSet(null, e)) {
+                drain();
+            } else {
+                RxJavaHooks.onError(e);
+            }
+        }
+
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            int n = inners.length;
+            for(;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for(;;) {
+                    if(cancelled) {
+                        clear();
+                        return;
+                    }
+                    Throwable ex = error.get();
+                    if(ex != null) {
+                        cancel();
+                        child.onError(ex);
+                        return;
+                    }
+                    if(config.hasMaxAge()) {
+                        dropStale(now());
+                    }
+
+                    boolean full = true;
+                    for(InnerSubscriber inner : inners) {
+                        boolean d = inner.done;
+                        boolean empty = inner.queue.isEmpty();
+                        if(d && empty) {
+                            // this source won't provide a counterpart for the events of the other sources
+                            cancel();
+                            child.onCompleted();
+                            return;
+                        }
+                        if(empty) {
+                            full = false;
+                        }
+                    }
+                    if(!full || e == r) {
+                        break;
+                    }
+
+                    Object[] values = new Object[n];
+                    for(int i=0; i < n; i++) {
+                        Object v = inners[i].poll();
+                        values[i] = v == NULL ? null : v;
+                    }
+                    R result;
+                    try {
+                        result = zipper.call(values);
+                    } catch (Throwable zipError) {
+                        Exceptions.throwIfFatal(zipError);
+                        cancel();
+                        child.onError(zipError);
+                        return;
+                    }
+                    child.onNext(result);
+                    e++;
+                }
+
+                if(e != 0L) {
+                    BackpressureUtils.produced(requested, e);
+                    emittedInWindow += e;
+                }
+                if(config.isAdaptive()) {
+                    adapt(now());
+                }
+                for(InnerSubscriber inner : inners) {
+                    inner.replenish(prefetch);
+                }
+
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        long now() {
+            return TimeUnit.MILLISECONDS.toNanos(clock.now());
+        }
+
+        /**
+         * Sets the prefetch to twice the events emitted during the last window, the headroom letting
+         * the prefetch grow when it's the one limiting the rate.
+         */
+        private void adapt(long now) {
+            long elapsed = now - windowStart;
+            if(elapsed < config.windowNanos()) {
+                return;
+            }
+            double perWindow = (double) emittedInWindow * config.windowNanos() / elapsed;
+            long next = (long) Math.ceil(2 * perWindow);
+            prefetch = (int) Math.max(config.min(), Math.min(config.max(), next));
+            emittedInWindow = 0L;
+            windowStart = now;
+        }
+
+        private void dropStale(long now) {
+            long maxAge = config.maxAgeNanos();
+            for(InnerSubscriber inner : inners) {
+                for(;;) {
+                    Entry head = inner.queue.peek();
+                    if(head == null || now - head.arrival <= maxAge) {
+                        break;
+                    }
+                    inner.poll();
+                    counters.onDropped();
+                }
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            for(InnerSubscriber inner : inners) {
+                inner.unsubscribe();
+            }
+            clear();
+        }
+
+        private void clear() {
+            for(InnerSubscriber inner : inners) {
+                inner.queue.clear();
+            }
+        }
+    }
+
+    static final class Entry {
+        final Object value;
+        final long arrival;
+
+        Entry(Object value, long arrival) {
+            this.value = value;
+            this.arrival = arrival;
+        }
+    }
+
+    static final class InnerSubscriber extends Subscriber<Object> {
+
+        final ZipCoordinator<?> coordinator;
+        final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+
+        volatile boolean done;
+
+        /** accessed only inside the coordinator's drain() */
+        long requestedTotal;
+        long consumedTotal;
+
+        InnerSubscriber(ZipCoordinator<?> coordinator) {
+            this.coordinator = coordinator;
+        }
+
+        @Override
+        public void onStart() {
+            // the first request is made by the coordinator's drain through replenish()
+            request(0);
+        }
+
+        @Override
+        public void onNext(Object t) {
+            long arrival = coordinator.config.hasMaxAge() ? coordinator.now() : 0L;
+            queue.offer(new Entry(t == null ? ZipCoordinator.NULL : t, arrival));
+            coordinator.drain();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            coordinator.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            done = true;
+            coordinator.drain();
+        }
+
+        Object poll() {
+            consumedTotal++;
+            return queue.poll().value;
+        }
+
+        /**
+         * Tops up the requested events to 'prefetch', once at least half of them were consumed
+         */
+        void replenish(int prefetch) {
+            long outstanding = requestedTotal - consumedTotal;
+            long missing = prefetch - outstanding;
+            if(missing > 0 && (outstanding == 0 || missing >= (prefetch + 1) / 2)) {
+                requestedTotal += missing;
+                request(missing);
+            }
+        }
+    }
+}
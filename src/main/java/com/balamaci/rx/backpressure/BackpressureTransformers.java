@@ -0,0 +1,40 @@
+package com.balamaci.rx.backpressure;
+
+import rx.Observable;
+
+/**
+ * Backpressure operators which plug into a regular Observable chain through compose()
+ *
+ * <pre>
+ * OverflowCounters counters = new OverflowCounters();
+ * observable.compose(BackpressureTransformers.onBackpressureBufferBounded(16, OverflowStrategy.DROP_OLDEST, counters))
+ *           .observeOn(Schedulers.io())
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class BackpressureTransformers {
+
+    private BackpressureTransformers() {
+    }
+
+    public static <T> Observable.Transformer<T, T> onBackpressureBufferBounded(int capacity,
+                                                                              OverflowStrategy strategy) {
+        return onBackpressureBufferBounded(capacity, strategy, new OverflowCounters());
+    }
+
+    /**
+     * Unlike onBackpressureDrop() which has no buffer at all, or onBackpressureBuffer() which by default
+     * grows without bounds, it keeps up to 'capacity' events for the subscriber and applies the
+     * overflow strategy to the events which don't fit.
+     *
+     * @param counters records the dropped / conflated events
+     */
+    public static <T> Observable.Transformer<T, T> onBackpressureBufferBounded(int capacity,
+                                                                              OverflowStrategy strategy,
+                                                                              OverflowCounters counters) {
+        OperatorOnBackpressureBufferBounded<T> operator = new OperatorOnBackpressureBufferBounded<>(capacity,
+                strategy, counters);
+        return source -> source.lift(operator);
+    }
+}
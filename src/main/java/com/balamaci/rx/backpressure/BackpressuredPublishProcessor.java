@@ -0,0 +1,319 @@
+package com.balamaci.rx.backpressure;
+
+import com.balamaci.rx.util.SpscArrayQueue;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.internal.operators.BackpressureUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hot multicasting source like PublishSubject, but which gives flow control to the producer instead of
+ * overrunning slow subscribers.
+ *
+ * Every subscriber gets its own bounded queue, drained according to what the subscriber requested.
+ * An event is accepted only if all the subscribers have room for it, otherwise onNext() returns false and
+ * the producer decides what to do - drop it, retry later or wait with onNextBlocking() which parks the
+ * producing thread until the slowest subscriber caught up.
+ *
+ * Like for Subjects the onNext / onError / onCompleted calls must not be made concurrently.
+ * Subscribers only receive the events emitted after they subscribed.
+ *
+ * @author sbalamaci
+ */
+public final class BackpressuredPublishProcessor<T> extends Observable<T> {
+
+    private static final Object NULL = new Object();
+
+    /** upper bound for parking the producer, in case an unpark is missed */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final State<T> state;
+
+    private BackpressuredPublishProcessor(State<T> state) {
+        super(state);
+        this.state = state;
+    }
+
+    /**
+     * @param bufferSize the capacity of the queue of every subscriber
+     */
+    public static <T> BackpressuredPublishProcessor<T> create(int bufferSize) {
+        if(bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize > 0 required but it was " + bufferSize);
+        }
+        return new BackpressuredPublishProcessor<>(new State<>(bufferSize));
+    }
+
+    /**
+     * @return false if the event was not accepted because at least one of the subscribers has a full queue,
+     *         in which case none of the subscribers received the event
+     */
+    public boolean onNext(T t) {
+        return state.offer(t);
+    }
+
+    /**
+     * Parks the calling thread until all the subscribers have room for the event.
+     * The subscribers need to be consuming on other threads than the producer.
+     */
+    public void onNextBlocking(T t) throws InterruptedException {
+        if(state.offer(t)) {
+            return;
+        }
+        state.blockedProducer = Thread.currentThread();
+        try {
+            while(!state.offer(t)) {
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+        } finally {
+            state.blockedProducer = null;
+        }
+    }
+
+    /**
+     * The subscribers receive the error after the events already in their queues
+     */
+    public void onError(Throwable e) {
+        state.terminate(e);
+    }
+
+    /**
+     * The subscribers complete after receiving the events already in their queues
+     */
+    public void onCompleted() {
+        state.terminate(null);
+    }
+
+    public boolean hasSubscribers() {
+        return state.subscribers.get().length != 0;
+    }
+
+    public int subscriberCount() {
+        return state.subscribers.get().length;
+    }
+
+    static final class State<T> implements OnSubscribe<T> {
+
+        @SuppressWarnings("rawtypes")
+        static final InnerSubscription[] EMPTY = new InnerSubscription[0];
+        @SuppressWarnings("rawtypes")
+        static final InnerSubscription[] TERMINATED = new InnerSubscription[0];
+
+        final int bufferSize;
+        final AtomicReference<InnerSubscription<T>[]> subscribers;
+
+        volatile boolean done;
+        Throwable error;
+
+        volatile Thread blockedProducer;
+
+        @SuppressWarnings("unchecked")
+        State(int bufferSize) {
+            this.bufferSize = bufferSize;
+            this.subscribers = new AtomicReference<>(EMPTY);
+        }
+
+        @Override
+        public void call(Subscriber<? super T> child) {
+            InnerSubscription<T> inner = new InnerSubscription<>(child, this);
+            child.add(inner);
+            child.setProducer(inner);
+
+            if(add(inner)) {
+                if(inner.isUnsubscribed()) {
+                    remove(inner);
+                }
+            } else {
+                // already terminated, signal it to the late subscriber
+                inner.done = true;
+                inner.drain();
+            }
+        }
+
+        boolean offer(T t) {
+            if(done) {
+                return false;
+            }
+            InnerSubscription<T>[] current = subscribers.get();
+            for(InnerSubscription<T> inner : current) {
+                if(inner.queue.isFull()) {
+                    return false;
+                }
+            }
+            Object v = t == null ? NULL : t;
+            for(InnerSubscription<T> inner : current) {
+                inner.queue.offer(v);
+                inner.drain();
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        void terminate(Throwable e) {
+            if(done) {
+                return;
+            }
+            error = e;
+            done = true;
+            for(InnerSubscription<T> inner : subscribers.getAndSet(TERMINATED)) {
+                inner.done = true;
+                inner.drain();
+            }
+        }
+
+        boolean add(InnerSubscription<T> inner) {
+            for(;;) {
+                InnerSubscription<T>[] current = subscribers.get();
+                if(current == TERMINATED) {
+                    return false;
+                }
+                @SuppressWarnings("unchecked")
+                InnerSubscription<T>[] next = new InnerSubscription[current.length + 1];
+                System.arraycopy(current, 0, next, 0, current.length);
+                next[current.length] = inner;
+                if(subscribers.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void remove(InnerSubscription<T> inner) {
+            for(;;) {
+                InnerSubscription<T>[] current = subscribers.get();
+                if(current == TERMINATED || current == EMPTY) {
+                    return;
+                }
+                int index = -1;
+                for(int i=0; i < current.length; i++) {
+                    if(current[i] == inner) {
+                        index = i;
+                        break;
+                    }
+                }
+                if(index < 0) {
+                    return;
+                }
+                InnerSubscription<T>[] next;
+                if(current.length == 1) {
+                    next = EMPTY;
+                } else {
+                    next = new InnerSubscription[current.length - 1];
+                    System.arraycopy(current, 0, next, 0, index);
+                    System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+                }
+                if(subscribers.compareAndSet(current, next)) {
+                    // the removed subscriber might have been the one the producer was waiting on
+                    unparkProducer();
+                    return;
+                }
+            }
+        }
+
+        void unparkProducer() {
+            Thread producer = blockedProducer;
+            if(producer != null) {
+                LockSupport.unpark(producer);
+            }
+        }
+    }
+
+    static final class InnerSubscription<T> implements Producer, Subscription {
+
+        final Subscriber<? super T> child;
+        final State<T> state;
+        final SpscArrayQueue<Object> queue;
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+        final AtomicInteger unsubscribed = new AtomicInteger();
+
+        volatile boolean done;
+
+        InnerSubscription(Subscriber<? super T> child, State<T> state) {
+            this.child = child;
+            this.state = state;
+            this.queue = new SpscArrayQueue<>(state.bufferSize);
+        }
+
+        @Override
+        public void request(long n) {
+            if(n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if(n > 0) {
+                BackpressureUtils.getAndAddRequest(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            if(unsubscribed.compareAndSet(0, 1)) {
+                state.remove(this);
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return unsubscribed.get() != 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for(;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for(;;) {
+                    if(isUnsubscribed()) {
+                        queue.clear();
+                        return;
+                    }
+                    boolean d = done;
+                    boolean empty = queue.isEmpty();
+                    if(d && empty) {
+                        Throwable ex = state.error;
+                        if(ex != null) {
+                            child.onError(ex);
+                        } else {
+                            child.onCompleted();
+                        }
+                        return;
+                    }
+                    if(empty || e == r) {
+                        break;
+                    }
+
+                    Object v = queue.poll();
+                    child.onNext(v == NULL ? null : (T) v);
+                    e++;
+                }
+
+                if(e != 0L) {
+                    BackpressureUtils.produced(requested, e);
+                    state.unparkProducer();
+                }
+
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.balamaci.rx.backpressure;
+
+import com.balamaci.rx.util.BoundedQueue;
+import com.balamaci.rx.util.MpmcArrayQueue;
+import com.balamaci.rx.util.SpscArrayQueue;
+import rx.Observable;
+import rx.Subscriber;
+import rx.exceptions.MissingBackpressureException;
+import rx.internal.operators.BackpressureUtils;
+import rx.plugins.RxJavaHooks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Requests everything from a source which doesn't support backpressure and buffers up to 'capacity' events
+ * for the subscriber, applying the {@link OverflowStrategy} when the buffer is full.
+ *
+ * The buffer is a lock-free array queue, a single producer / single consumer one for all the strategies
+ * but DROP_OLDEST where the producer itself evicts from the head of the queue while the subscriber
+ * may be draining it, so that one needs a queue which supports concurrent consumers.
+ *
+ * @author sbalamaci
+ */
+final class OperatorOnBackpressureBufferBounded<T> implements Observable.Operator<T, T> {
+
+    private static final Object NULL = new Object();
+
+    /** upper bound for parking the producer, in case an unpark is missed */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int capacity;
+    private final OverflowStrategy strategy;
+    private final OverflowCounters counters;
+
+    OperatorOnBackpressureBufferBounded(int capacity, OverflowStrategy strategy, OverflowCounters counters) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        }
+        this.capacity = capacity;
+        this.strategy = strategy;
+        this.counters = counters;
+    }
+
+    @Override
+    public Subscriber<? super T> call(Subscriber<? super T> child) {
+        BufferSubscriber<T> parent = new BufferSubscriber<>(child, capacity, strategy, counters);
+        child.add(parent);
+        child.setProducer(parent::requestFromChild);
+        return parent;
+    }
+
+    static final class BufferSubscriber<T> extends Subscriber<T> {
+
+        final Subscriber<? super T> child;
+        final OverflowStrategy strategy;
+        final OverflowCounters counters;
+        final BoundedQueue<Object> queue;
+
+        /** the most recent overflowing event for SAMPLE_LATEST */
+        final AtomicReference<Object> latest = new AtomicReference<>();
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+
+        volatile boolean done;
+        Throwable error;
+
+        /** the producer thread parked by BLOCK_PRODUCER */
+        volatile Thread blockedProducer;
+
+        BufferSubscriber(Subscriber<? super T> child, int capacity, OverflowStrategy strategy,
+                         OverflowCounters counters) {
+            this.child = child;
+            this.strategy = strategy;
+            this.counters = counters;
+            this.queue = strategy == OverflowStrategy.DROP_OLDEST ? new MpmcArrayQueue<>(capacity)
+                    : new SpscArrayQueue<>(capacity);
+        }
+
+        @Override
+        public void onStart() {
+            request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T t) {
+            if(done) {
+                return;
+            }
+            Object v = t == null ? NULL : t;
+
+            switch (strategy) {
+                case DROP_OLDEST:
+                    while(!queue.offer(v)) {
+                        if(queue.poll() != null) {
+                            counters.onDropped();
+                        }
+                    }
+                    break;
+
+                case DROP_LATEST:
+                    if(!queue.offer(v)) {
+                        counters.onDropped();
+                    }
+                    break;
+
+                case ERROR:
+                    if(!queue.offer(v)) {
+                        counters.onDropped();
+                        unsubscribe();
+                        onError(new MissingBackpressureException("Buffer of capacity " + queue.capacity()
+                                + " is full"));
+                        return;
+                    }
+                    break;
+
+                case BLOCK_PRODUCER:
+                    if(!queue.offer(v)) {
+                        counters.onBlocked();
+                        if(!blockUntilOffered(v)) {
+                            return;
+                        }
+                    }
+                    break;
+
+                case SAMPLE_LATEST:
+                    // once an event was conflated the following ones must go to the same slot as well,
+                    // otherwise they would overtake it through the queue
+                    if(latest.get() != null || !queue.offer(v)) {
+                        if(latest.getAndSet(v) != null) {
+                            counters.onConflated();
+                        }
+                    }
+                    break;
+            }
+            drain();
+        }
+
+        private boolean blockUntilOffered(Object v) {
+            blockedProducer = Thread.currentThread();
+            try {
+                while(!queue.offer(v)) {
+                    if(isUnsubscribed() || child.isUnsubscribed()) {
+                        return false;
+                    }
+                    drain();
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                return true;
+            } finally {
+                blockedProducer = null;
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            error = e;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            if(done) {
+                return;
+            }
+            done = true;
+            drain();
+        }
+
+        void requestFromChild(long n) {
+            if(n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if(n > 0) {
+                BackpressureUtils.getAndAddRequest(requested, n);
+                drain();
+            }
+        }
+
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for(;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for(;;) {
+                    if(child.isUnsubscribed()) {
+                        queue.clear();
+                        latest.set(null);
+                        return;
+                    }
+
+                    boolean d = done;
+                    boolean empty = queue.isEmpty() && latest.get() == null;
+
+                    if(d && empty) {
+                        Throwable ex = error;
+                        if(ex != null) {
+                            child.onError(ex);
+                        } else {
+                            child.onCompleted();
+                        }
+                        return;
+                    }
+                    if(empty || e == r) {
+                        break;
+                    }
+
+                    Object v = queue.poll();
+                    if(v == null) {
+                        v = latest.getAndSet(null);
+                        if(v == null) {
+                            continue; // evicted by DROP_OLDEST in the meantime
+                        }
+                    }
+
+                    child.onNext(unwrap(v));
+                    e++;
+                }
+
+                if(e != 0L) {
+                    BackpressureUtils.produced(requested, e);
+                    Thread producer = blockedProducer;
+                    if(producer != null) {
+                        LockSupport.unpark(producer);
+                    }
+                }
+
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private T unwrap(Object v) {
+            return v == NULL ? null : (T) v;
+        }
+    }
+}
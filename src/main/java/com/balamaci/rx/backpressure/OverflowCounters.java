@@ -0,0 +1,54 @@
+package com.balamaci.rx.backpressure;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what happened to the events which didn't fit in a bounded backpressure buffer.
+ * The same instance can be shared between several subscriptions to get the totals.
+ *
+ * @author sbalamaci
+ */
+public class OverflowCounters {
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    /**
+     * Events evicted or rejected by DROP_OLDEST, DROP_LATEST and ERROR
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Events overwritten by a more recent one with SAMPLE_LATEST
+     */
+    public long conflated() {
+        return conflated.sum();
+    }
+
+    /**
+     * Number of times the producer was blocked waiting for room with BLOCK_PRODUCER
+     */
+    public long blocked() {
+        return blocked.sum();
+    }
+
+    void onDropped() {
+        dropped.increment();
+    }
+
+    void onConflated() {
+        conflated.increment();
+    }
+
+    void onBlocked() {
+        blocked.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "OverflowCounters{dropped=" + dropped() + ", conflated=" + conflated() + ", blocked=" + blocked() + "}";
+    }
+}
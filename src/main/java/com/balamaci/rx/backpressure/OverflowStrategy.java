@@ -0,0 +1,24 @@
+package com.balamaci.rx.backpressure;
+
+/**
+ * What a bounded backpressure buffer does with a new event when it's already full.
+ *
+ * @author sbalamaci
+ */
+public enum OverflowStrategy {
+
+    /** evict the oldest buffered event to make room for the new one */
+    DROP_OLDEST,
+
+    /** drop the new event, keeping the buffered ones */
+    DROP_LATEST,
+
+    /** stop the upstream and signal a MissingBackpressureException after the buffered events */
+    ERROR,
+
+    /** block the producing thread until the subscriber makes room, the subscriber must be on another thread */
+    BLOCK_PRODUCER,
+
+    /** keep only the most recent of the overflowing events, delivered after the buffered ones (conflation) */
+    SAMPLE_LATEST
+}
@@ -0,0 +1,97 @@
+package com.balamaci.rx.backpressure;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How many events {@link AdaptiveZip} requests ahead from each of the zipped sources, and how long
+ * the events may wait in its buffers for a counterpart from the other sources.
+ *
+ * <pre>
+ * ZipPrefetch.fixed(16)
+ * ZipPrefetch.adaptive(1, 128, 100, TimeUnit.MILLISECONDS)
+ *          .dropOlderThan(1, TimeUnit.SECONDS)
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class ZipPrefetch {
+
+    private final int initial;
+    private final int min;
+    private final int max;
+    private final long windowNanos;
+    private final long maxAgeNanos;
+
+    private ZipPrefetch(int initial, int min, int max, long windowNanos, long maxAgeNanos) {
+        this.initial = initial;
+        this.min = min;
+        this.max = max;
+        this.windowNanos = windowNanos;
+        this.maxAgeNanos = maxAgeNanos;
+    }
+
+    /**
+     * Always keeps 'prefetch' events requested from every source, like the regular zip does with 128
+     */
+    public static ZipPrefetch fixed(int prefetch) {
+        if(prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        return new ZipPrefetch(prefetch, prefetch, prefetch, 0L, 0L);
+    }
+
+    /**
+     * Measures how many zipped events are emitted in every 'window' - which is the rate of the slowest
+     * source - and keeps requested from every source only as many as that, between min and max, starting
+     * from min until the first window is measured. So a fast source is asked for small batches when it's paired
+     * with a slow one.
+     */
+    public static ZipPrefetch adaptive(int min, int max, long window, TimeUnit unit) {
+        if(min <= 0 || max < min) {
+            throw new IllegalArgumentException("0 < min <= max required but it was min=" + min + ", max=" + max);
+        }
+        if(window <= 0) {
+            throw new IllegalArgumentException("window > 0 required but it was " + window);
+        }
+        return new ZipPrefetch(min, min, max, unit.toNanos(window), 0L);
+    }
+
+    /**
+     * Events which waited more than 'maxAge' for a counterpart from the other sources are dropped.
+     * Bounds the memory when a source ignores backpressure and floods the buffer, keeping only the fresh events.
+     */
+    public ZipPrefetch dropOlderThan(long maxAge, TimeUnit unit) {
+        if(maxAge <= 0) {
+            throw new IllegalArgumentException("maxAge > 0 required but it was " + maxAge);
+        }
+        return new ZipPrefetch(initial, min, max, windowNanos, unit.toNanos(maxAge));
+    }
+
+    int initial() {
+        return initial;
+    }
+
+    int min() {
+        return min;
+    }
+
+    int max() {
+        return max;
+    }
+
+    boolean isAdaptive() {
+        return windowNanos > 0;
+    }
+
+    long windowNanos() {
+        return windowNanos;
+    }
+
+    boolean hasMaxAge() {
+        return maxAgeNanos > 0;
+    }
+
+    long maxAgeNanos() {
+        return maxAgeNanos;
+    }
+}
@@ -0,0 +1,66 @@
+package com.balamaci.rx.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how the subscriptions of a SingleFlightCache were served.
+ *
+ * @author sbalamaci
+ */
+public class CacheCounters {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Subscriptions which got the value from the cache
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Subscriptions which subscribed to the source
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Subscriptions which joined the subscription to the source of another one for the same key
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Values removed from the cache to stay within its maximum size
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    void onHit() {
+        hits.increment();
+    }
+
+    void onMiss() {
+        misses.increment();
+    }
+
+    void onCoalesced() {
+        coalesced.increment();
+    }
+
+    void onEviction() {
+        evictions.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheCounters{hits=" + hits() + ", misses=" + misses() + ", coalesced=" + coalesced()
+                + ", evictions=" + evictions() + "}";
+    }
+}
@@ -0,0 +1,299 @@
+package com.balamaci.rx.cache;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+import rx.subjects.AsyncSubject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caches the value of an expensive source per key - typically an Observable.fromCallable() calling a remote
+ * service - and has the concurrent subscribers for the same key share a single subscription to the source
+ * instead of each of them calling it.
+ *
+ * <pre>
+ * SingleFlightCache&lt;String, User&gt; users = SingleFlightCache.create(
+ *          id -&gt; Observable.fromCallable(() -&gt; userService.load(id)), 10_000, 5, TimeUnit.MINUTES);
+ *
+ * users.get("42").subscribe(user -&gt; log.info("Loaded {}", user));
+ * </pre>
+ *
+ * The source must emit a single value, like fromCallable() does. While it's in flight, the subscribers for the
+ * key get the AsyncSubject it's subscribed with, and the value is cached once it arrives for 'ttl' after it was
+ * loaded. Errors are not cached, the next subscriber trying again. The source keeps running even if all its
+ * subscribers unsubscribed, so the value is still cached.
+ *
+ * Past 'maximumSize' values, which ones stay is decided like Caffeine's W-TinyLFU does: new values go through a
+ * small LRU window, and when leaving it they're kept only if they were accessed more often than the value they
+ * would evict from the main segmented LRU, as estimated by a FrequencySketch. So a burst of keys read only once
+ * doesn't flush the popular ones. The values are read lock free, recording the access being skipped if another
+ * thread is updating the policy at the time.
+ *
+ * @author sbalamaci
+ */
+public final class SingleFlightCache<K, T> {
+
+    /** which part of the policy a node is in */
+    static final int WINDOW = 0;
+    static final int PROBATION = 1;
+    static final int PROTECTED = 2;
+
+    private final Func1<? super K, ? extends Observable<? extends T>> loader;
+    private final long ttlMillis;
+    private final Scheduler scheduler;
+    private final CacheCounters counters = new CacheCounters();
+
+    private final ConcurrentHashMap<K, Node<K, T>> data = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, AsyncSubject<T>> inFlight = new ConcurrentHashMap<>();
+
+    /** guards the policy */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Node<K, T>[] queues;
+    private final int[] sizes = new int[3];
+    private final int maxWindow;
+    private final int maxProtected;
+    private final int maximumSize;
+
+    @SuppressWarnings("unchecked")
+    private SingleFlightCache(Func1<? super K, ? extends Observable<? extends T>> loader, int maximumSize,
+                              long ttlMillis, Scheduler scheduler) {
+        this.loader = loader;
+        this.maximumSize = maximumSize;
+        this.ttlMillis = ttlMillis;
+        this.scheduler = scheduler;
+
+        this.sketch = new FrequencySketch(maximumSize);
+        this.maxWindow = Math.max(1, maximumSize / 100);
+        this.maxProtected = (maximumSize - maxWindow) * 8 / 10;
+        this.queues = new Node[] { Node.sentinel(), Node.sentinel(), Node.sentinel() };
+    }
+
+    /**
+     * @param loader the source of the value of a key, subscribed to on a miss
+     * @param maximumSize how many values are cached at most
+     * @param ttl how long a value is cached after it was loaded
+     */
+    public static <K, T> SingleFlightCache<K, T> create(Func1<? super K, ? extends Observable<? extends T>> loader,
+                                                        int maximumSize, long ttl, TimeUnit unit) {
+        return create(loader, maximumSize, ttl, unit, Schedulers.computation());
+    }
+
+    /**
+     * @param scheduler its now() tells the age of the values
+     */
+    public static <K, T> SingleFlightCache<K, T> create(Func1<? super K, ? extends Observable<? extends T>> loader,
+                                                        int maximumSize, long ttl, TimeUnit unit,
+                                                        Scheduler scheduler) {
+        if(maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize > 0 required but it was " + maximumSize);
+        }
+        if(ttl <= 0) {
+            throw new IllegalArgumentException("ttl > 0 required but it was " + ttl);
+        }
+        return new SingleFlightCache<>(loader, maximumSize, unit.toMillis(ttl), scheduler);
+    }
+
+    /**
+     * Emits the cached value, or the one loaded for a subscription already in flight for the key, or else
+     * subscribes to the source. Nothing happens until subscribed.
+     */
+    public Observable<T> get(K key) {
+        return Observable.defer(() -> {
+            Node<K, T> node = data.get(key);
+            if(node != null) {
+                if(scheduler.now() - node.loadedMillis < ttlMillis) {
+                    counters.onHit();
+                    recordAccess(node);
+                    return Observable.just(node.value);
+                }
+                remove(node);
+            }
+            return load(key);
+        });
+    }
+
+    public void invalidate(K key) {
+        Node<K, T> node = data.get(key);
+        if(node != null) {
+            remove(node);
+        }
+    }
+
+    /**
+     * The number of values cached, including the expired ones not removed yet
+     */
+    public int size() {
+        return data.size();
+    }
+
+    public CacheCounters counters() {
+        return counters;
+    }
+
+    private Observable<T> load(K key) {
+        AsyncSubject<T> flight = AsyncSubject.create();
+        AsyncSubject<T> current = inFlight.putIfAbsent(key, flight);
+        if(current != null) {
+            counters.onCoalesced();
+            return current;
+        }
+        // the previous flight might have completed between the cache lookup and now
+        Node<K, T> node = data.get(key);
+        if(node != null && scheduler.now() - node.loadedMillis < ttlMillis) {
+            inFlight.remove(key, flight);
+            counters.onHit();
+            return Observable.just(node.value);
+        }
+
+        counters.onMiss();
+        Observable<? extends T> source = loader.call(key);
+        source.single()
+                .doOnNext(value -> put(key, value))
+                .doOnTerminate(() -> inFlight.remove(key, flight))
+                .subscribe(flight);
+        return flight;
+    }
+
+    private void recordAccess(Node<K, T> node) {
+        if(!lock.tryLock()) {
+            // the policy is busy, better lose an access than wait
+            return;
+        }
+        try {
+            sketch.increment(node.key);
+            if(node.queue < 0) {
+                return;
+            }
+            if(node.queue == PROBATION) {
+                unlink(node);
+                link(node, PROTECTED);
+                while(sizes[PROTECTED] > maxProtected) {
+                    Node<K, T> demoted = queues[PROTECTED].next;
+                    unlink(demoted);
+                    link(demoted, PROBATION);
+                }
+            } else {
+                int queue = node.queue;
+                unlink(node);
+                link(node, queue);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(K key, T value) {
+        Node<K, T> node = new Node<>(key, value, scheduler.now());
+        List<Node<K, T>> evicted = new ArrayList<>(1);
+        lock.lock();
+        try {
+            Node<K, T> previous = data.put(key, node);
+            if(previous != null) {
+                unlink(previous);
+            }
+            sketch.increment(key);
+            link(node, WINDOW);
+            evict(evicted);
+            for(Node<K, T> victim : evicted) {
+                data.remove(victim.key, victim);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for(int i=0; i < evicted.size(); i++) {
+            counters.onEviction();
+        }
+    }
+
+    private void remove(Node<K, T> node) {
+        lock.lock();
+        try {
+            if(data.remove(node.key, node)) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The window's oldest values move to the probation queue, where the least frequently used of the candidate
+     * and the probation's oldest value is evicted while the cache is over its size
+     */
+    private void evict(List<Node<K, T>> evicted) {
+        while(sizes[WINDOW] > maxWindow) {
+            Node<K, T> candidate = queues[WINDOW].next;
+            unlink(candidate);
+            link(candidate, PROBATION);
+
+            if(sizes[WINDOW] + sizes[PROBATION] + sizes[PROTECTED] <= maximumSize) {
+                continue;
+            }
+            Node<K, T> victim = queues[PROBATION].next;
+            Node<K, T> evict = sketch.frequency(candidate.key) > sketch.frequency(victim.key) ? victim : candidate;
+            unlink(evict);
+            evicted.add(evict);
+        }
+    }
+
+    /**
+     * Adds the node as the most recently used of the queue
+     */
+    private void link(Node<K, T> node, int queue) {
+        Node<K, T> head = queues[queue];
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+        node.queue = queue;
+        sizes[queue]++;
+    }
+
+    private void unlink(Node<K, T> node) {
+        if(node.queue < 0) {
+            return;
+        }
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        sizes[node.queue]--;
+        node.queue = -1;
+    }
+
+    /**
+     * A cached value, linked in one of the LRU queues. The queues are circular, their sentinel's next being
+     * the least recently used
+     */
+    static final class Node<K, T> {
+
+        final K key;
+        final T value;
+        final long loadedMillis;
+
+        /** guarded by the cache's lock */
+        int queue = -1;
+        Node<K, T> prev;
+        Node<K, T> next;
+
+        Node(K key, T value, long loadedMillis) {
+            this.key = key;
+            this.value = value;
+            this.loadedMillis = loadedMillis;
+        }
+
+        static <K, T> Node<K, T> sentinel() {
+            Node<K, T> sentinel = new Node<>(null, null, 0);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+    }
+}
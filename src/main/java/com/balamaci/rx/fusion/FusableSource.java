@@ -0,0 +1,29 @@
+package com.balamaci.rx.fusion;
+
+import rx.Observable;
+
+/**
+ * Observable over values which can be read by index, like a range or an array.
+ *
+ * Subscribed directly it behaves like Observable.range / Observable.from, but {@link Fusion#observeOn}
+ * recognizes it and reads the values by index on the target thread, so the source itself takes the place
+ * of the queue observeOn would otherwise fill (micro-fusion).
+ *
+ * @author sbalamaci
+ */
+public final class FusableSource<T> extends Observable<T> {
+
+    final Indexed<T> indexed;
+
+    FusableSource(OnSubscribe<T> onSubscribe, Indexed<T> indexed) {
+        super(onSubscribe);
+        this.indexed = indexed;
+    }
+
+    interface Indexed<T> {
+
+        int size();
+
+        T get(int index);
+    }
+}
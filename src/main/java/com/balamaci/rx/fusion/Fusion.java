@@ -0,0 +1,72 @@
+package com.balamaci.rx.fusion;
+
+import rx.Observable;
+import rx.Scheduler;
+
+/**
+ * Entry point for the fused operators.
+ *
+ * <pre>
+ * Fusion.range(1, 1_000_000)
+ *          .compose(Fusion.observeOn(Schedulers.computation()))  //micro-fusion, no queue between range and observeOn
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class Fusion {
+
+    private Fusion() {
+    }
+
+    public static FusableSource<Integer> range(int start, int count) {
+        if(count < 0) {
+            throw new IllegalArgumentException("count >= 0 required but it was " + count);
+        }
+        if((long) start + count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Integer overflow");
+        }
+        Observable<Integer> range = Observable.range(start, count);
+        FusableSource.Indexed<Integer> indexed = new FusableSource.Indexed<Integer>() {
+            @Override
+            public int size() {
+                return count;
+            }
+
+            @Override
+            public Integer get(int index) {
+                return start + index;
+            }
+        };
+        return new FusableSource<>(child -> range.unsafeSubscribe(child), indexed);
+    }
+
+    @SafeVarargs
+    public static <T> FusableSource<T> fromArray(T... values) {
+        Observable<T> from = Observable.from(values);
+        FusableSource.Indexed<T> indexed = new FusableSource.Indexed<T>() {
+            @Override
+            public int size() {
+                return values.length;
+            }
+
+            @Override
+            public T get(int index) {
+                return values[index];
+            }
+        };
+        return new FusableSource<>(child -> from.unsafeSubscribe(child), indexed);
+    }
+
+    /**
+     * Same as observeOn(scheduler), fused with the source when it's a {@link FusableSource}
+     */
+    public static <T> Observable.Transformer<T, T> observeOn(Scheduler scheduler) {
+        return source -> {
+            if(source instanceof FusableSource) {
+                return Observable.create(new OnSubscribeFusedObserveOn<>(((FusableSource<T>) source).indexed,
+                                                                        scheduler));
+            }
+            return source.observeOn(scheduler);
+        };
+    }
+}
@@ -0,0 +1,112 @@
+package com.balamaci.rx.fusion;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.internal.operators.BackpressureUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * observeOn for a {@link FusableSource}: instead of the source pushing into a queue on the subscribing thread
+ * and the scheduler's worker polling from it, the worker reads the values straight from the source by index.
+ *
+ * @author sbalamaci
+ */
+final class OnSubscribeFusedObserveOn<T> implements Observable.OnSubscribe<T> {
+
+    private final FusableSource.Indexed<T> indexed;
+    private final Scheduler scheduler;
+
+    OnSubscribeFusedObserveOn(FusableSource.Indexed<T> indexed, Scheduler scheduler) {
+        this.indexed = indexed;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void call(Subscriber<? super T> child) {
+        Scheduler.Worker worker = scheduler.createWorker();
+        child.add(worker);
+
+        IndexedEmitter<T> emitter = new IndexedEmitter<>(child, indexed, worker);
+        child.setProducer(emitter);
+        if(indexed.size() == 0) {
+            emitter.schedule(); // completes without waiting for a request
+        }
+    }
+
+    static final class IndexedEmitter<T> implements Producer, Action0 {
+
+        final Subscriber<? super T> child;
+        final FusableSource.Indexed<T> indexed;
+        final Scheduler.Worker worker;
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+
+        /** accessed only on the worker */
+        int index;
+
+        IndexedEmitter(Subscriber<? super T> child, FusableSource.Indexed<T> indexed, Scheduler.Worker worker) {
+            this.child = child;
+            this.indexed = indexed;
+            this.worker = worker;
+        }
+
+        @Override
+        public void request(long n) {
+            if(n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if(n > 0) {
+                BackpressureUtils.getAndAddRequest(requested, n);
+                schedule();
+            }
+        }
+
+        void schedule() {
+            if(wip.getAndIncrement() == 0) {
+                worker.schedule(this);
+            }
+        }
+
+        @Override
+        public void call() {
+            int missed = 1;
+            int i = index;
+            int size = indexed.size();
+            for(;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for(;;) {
+                    if(child.isUnsubscribed()) {
+                        return;
+                    }
+                    if(i == size) {
+                        child.onCompleted();
+                        return;
+                    }
+                    if(e == r) {
+                        break;
+                    }
+                    child.onNext(indexed.get(i));
+                    i++;
+                    e++;
+                }
+
+                index = i;
+                if(e != 0L) {
+                    BackpressureUtils.produced(requested, e);
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.balamaci.rx.grouping;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func1;
+import rx.functions.Func2;
+import rx.internal.util.UtilityFunctions;
+import rx.schedulers.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grouping operators for a large number of distinct keys, which plug into a regular Observable chain through compose().
+ *
+ * groupBy creates a GroupedObservable and the Subscribers of the operators applied to it for every key, kilobytes
+ * of them which stay around until the source completes. These keep a single accumulator per key in an open addressing
+ * hash map, and emit the key / result entries directly.
+ *
+ * <pre>
+ * clicks.compose(GroupingTransformers.countByKey(Click::getUserId, 30, TimeUnit.SECONDS))
+ *       .subscribe(entry -> log.info("User {} clicked {} times", entry.getKey(), entry.getValue()));
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class GroupingTransformers {
+
+    private GroupingTransformers() {
+    }
+
+    /**
+     * Emits the accumulated value of each key when the source completes.
+     *
+     * @param initial creates the accumulator of a key
+     * @param accumulator returns the accumulator updated with a value, the same one when it's mutable
+     */
+    public static <T, K, A> Observable.Transformer<T, Map.Entry<K, A>> reduceByKey(
+            Func1<? super T, ? extends K> keySelector, Func1<? super K, ? extends A> initial,
+            Func2<A, ? super T, A> accumulator) {
+        OperatorReduceByKey<T, K, A, A> operator = new OperatorReduceByKey<>(keySelector, initial, accumulator,
+                UtilityFunctions.<A>identity(), 0, TimeUnit.NANOSECONDS, Schedulers.computation());
+        return source -> source.lift(operator);
+    }
+
+    /**
+     * Emits the accumulated value of a key once no value came for it in 'idleTimeout', like the end of a
+     * user's session, freeing its accumulator. A later value for the key starts a new accumulator.
+     */
+    public static <T, K, A> Observable.Transformer<T, Map.Entry<K, A>> reduceByKey(
+            Func1<? super T, ? extends K> keySelector, Func1<? super K, ? extends A> initial,
+            Func2<A, ? super T, A> accumulator, long idleTimeout, TimeUnit unit) {
+        return reduceByKey(keySelector, initial, accumulator, idleTimeout, unit, Schedulers.computation());
+    }
+
+    /**
+     * @param scheduler runs the eviction of the idle keys
+     */
+    public static <T, K, A> Observable.Transformer<T, Map.Entry<K, A>> reduceByKey(
+            Func1<? super T, ? extends K> keySelector, Func1<? super K, ? extends A> initial,
+            Func2<A, ? super T, A> accumulator, long idleTimeout, TimeUnit unit, Scheduler scheduler) {
+        if(idleTimeout <= 0) {
+            throw new IllegalArgumentException("idleTimeout > 0 required but it was " + idleTimeout);
+        }
+        OperatorReduceByKey<T, K, A, A> operator = new OperatorReduceByKey<>(keySelector, initial, accumulator,
+                UtilityFunctions.<A>identity(), idleTimeout, unit, scheduler);
+        return source -> source.lift(operator);
+    }
+
+    /**
+     * Counts the values of each key, the counters being mutable so no Long is allocated for the values
+     */
+    public static <T, K> Observable.Transformer<T, Map.Entry<K, Long>> countByKey(
+            Func1<? super T, ? extends K> keySelector) {
+        OperatorReduceByKey<T, K, long[], Long> operator = new OperatorReduceByKey<>(keySelector,
+                key -> new long[1], GroupingTransformers::increment, counter -> counter[0],
+                0, TimeUnit.NANOSECONDS, Schedulers.computation());
+        return source -> source.lift(operator);
+    }
+
+    public static <T, K> Observable.Transformer<T, Map.Entry<K, Long>> countByKey(
+            Func1<? super T, ? extends K> keySelector, long idleTimeout, TimeUnit unit) {
+        if(idleTimeout <= 0) {
+            throw new IllegalArgumentException("idleTimeout > 0 required but it was " + idleTimeout);
+        }
+        OperatorReduceByKey<T, K, long[], Long> operator = new OperatorReduceByKey<>(keySelector,
+                key -> new long[1], GroupingTransformers::increment, counter -> counter[0],
+                idleTimeout, unit, Schedulers.computation());
+        return source -> source.lift(operator);
+    }
+
+    private static long[] increment(long[] counter, Object value) {
+        counter[0]++;
+        return counter;
+    }
+}
@@ -0,0 +1,243 @@
+package com.balamaci.rx.grouping;
+
+import com.balamaci.rx.util.ConcurrentOpenHashMap;
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.exceptions.OnErrorThrowable;
+import rx.functions.Func1;
+import rx.functions.Func2;
+import rx.functions.Func3;
+import rx.internal.operators.BackpressureUtils;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reduces the values of each key into an accumulator kept in a {@link ConcurrentOpenHashMap}, emitting a
+ * key / result entry when the source completes, or earlier when no value came for the key in 'idleTimeout'.
+ *
+ * Instead of the time of the last value, a group remembers the tick of the eviction timer when its last value came,
+ * so no clock is read for the values. A group is evicted once 4 ticks, a quarter of the idle timeout each,
+ * passed without values - after between 'idleTimeout' and 1.25 x 'idleTimeout'.
+ *
+ * @author sbalamaci
+ */
+final class OperatorReduceByKey<T, K, A, R> implements Observable.Operator<Map.Entry<K, R>, T> {
+
+    static final int IDLE_TICKS = 4;
+
+    private final Func1<? super T, ? extends K> keySelector;
+    private final Func1<? super K, ? extends A> initial;
+    private final Func2<A, ? super T, A> accumulator;
+    private final Func1<? super A, ? extends R> finisher;
+
+    /** 0 when the groups are never evicted */
+    private final long idleTimeoutNanos;
+    private final Scheduler scheduler;
+
+    OperatorReduceByKey(Func1<? super T, ? extends K> keySelector, Func1<? super K, ? extends A> initial,
+                        Func2<A, ? super T, A> accumulator, Func1<? super A, ? extends R> finisher,
+                        long idleTimeout, TimeUnit unit, Scheduler scheduler) {
+        if(idleTimeout < 0) {
+            throw new IllegalArgumentException("idleTimeout >= 0 required but it was " + idleTimeout);
+        }
+        this.keySelector = keySelector;
+        this.initial = initial;
+        this.accumulator = accumulator;
+        this.finisher = finisher;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Subscriber<? super T> call(Subscriber<? super Map.Entry<K, R>> child) {
+        ReduceByKeySubscriber<T, K, A, R> parent = new ReduceByKeySubscriber<>(child, this);
+        parent.init();
+        return parent;
+    }
+
+    static final class Group<A> {
+        A value;
+
+        /** the eviction tick when the last value came */
+        long tick;
+    }
+
+    static final class ReduceByKeySubscriber<T, K, A, R> extends Subscriber<T> {
+
+        final Subscriber<? super Map.Entry<K, R>> child;
+        final OperatorReduceByKey<T, K, A, R> operator;
+
+        final ConcurrentOpenHashMap<K, Group<A>> groups = new ConcurrentOpenHashMap<>();
+        final Func3<K, Group<A>, T, Group<A>> update;
+
+        /** the groups which got evicted or completed, waiting to be requested */
+        final Queue<Map.Entry<K, R>> results = new ConcurrentLinkedQueue<>();
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+
+        volatile long tick;
+        volatile boolean done;
+        Throwable error;
+
+        Scheduler.Worker worker;
+
+        ReduceByKeySubscriber(Subscriber<? super Map.Entry<K, R>> child, OperatorReduceByKey<T, K, A, R> operator) {
+            this.child = child;
+            this.operator = operator;
+            this.update = (key, group, value) -> {
+                if(group == null) {
+                    group = new Group<>();
+                    group.value = operator.initial.call(key);
+                }
+                group.value = operator.accumulator.call(group.value, value);
+                group.tick = tick;
+                return group;
+            };
+        }
+
+        void init() {
+            child.add(this);
+            child.setProducer(new Producer() {
+                @Override
+                public void request(long n) {
+                    if(n < 0) {
+                        throw new IllegalArgumentException("n >= 0 required but it was " + n);
+                    }
+                    if(n > 0) {
+                        BackpressureUtils.getAndAddRequest(requested, n);
+                        drain();
+                    }
+                }
+            });
+            if(operator.idleTimeoutNanos > 0) {
+                long period = Math.max(1, operator.idleTimeoutNanos / IDLE_TICKS);
+                worker = operator.scheduler.createWorker();
+                add(worker);
+                worker.schedulePeriodically(this::evictIdle, period, period, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void onNext(T t) {
+            if(done) {
+                return;
+            }
+            try {
+                groups.compute(operator.keySelector.call(t), t, update);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                unsubscribe();
+                onError(OnErrorThrowable.addValueAsLastCause(ex, t));
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                return;
+            }
+            error = e;
+            stopEvicting();
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            if(done) {
+                return;
+            }
+            stopEvicting();
+            try {
+                groups.removeIf((key, group) -> true, this::complete);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                error = ex;
+            }
+            done = true;
+            drain();
+        }
+
+        private void stopEvicting() {
+            if(worker != null) {
+                worker.unsubscribe();
+            }
+        }
+
+        private void evictIdle() {
+            long now = tick + 1;
+            tick = now;
+            try {
+                groups.removeIf((key, group) -> now - group.tick >= IDLE_TICKS, this::complete);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                // the source may still be emitting, it's up to it to stop once unsubscribed
+                error = ex;
+                unsubscribe();
+                done = true;
+            }
+            drain();
+        }
+
+        private void complete(K key, Group<A> group) {
+            results.offer(new AbstractMap.SimpleImmutableEntry<>(key, operator.finisher.call(group.value)));
+        }
+
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for(;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for(;;) {
+                    if(child.isUnsubscribed()) {
+                        return;
+                    }
+                    boolean d = done;
+                    if(d && error != null) {
+                        results.clear();
+                        child.onError(error);
+                        return;
+                    }
+                    if(e == r) {
+                        break;
+                    }
+                    Map.Entry<K, R> result = results.poll();
+                    if(result == null) {
+                        if(d) {
+                            child.onCompleted();
+                            return;
+                        }
+                        break;
+                    }
+                    child.onNext(result);
+                    e++;
+                }
+
+                if(e == r && done && error == null && results.isEmpty()) {
+                    child.onCompleted();
+                    return;
+                }
+                if(e != 0L) {
+                    BackpressureUtils.produced(requested, e);
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.balamaci.rx.logging;
+
+import com.balamaci.rx.util.SpscArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands the log events over to a thread of its own which formats and writes them to their slf4j Logger, so the
+ * emitting threads neither format the messages nor wait their turn on the lock of System.err.
+ *
+ * The events are written in place in a preallocated ring of slots, claimed by the producers like in
+ * {@link com.balamaci.rx.util.MpmcArrayQueue} - a sequence number per slot telling whether it's free for the
+ * current lap - so logging is a CAS and a few field writes: the format and the arguments are kept by reference,
+ * without a varargs array, and formatted later on the writer thread. The arguments shouldn't be changed after
+ * being logged.
+ *
+ * When the ring is full the event is dropped instead of making the producer wait, and counted. The writer logs
+ * the count of the events dropped since its last report when it catches up.
+ *
+ * <pre>
+ * AsyncLogAppender.shared().info(log, "Received {} on {}", val, Thread.currentThread().getName());
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class AsyncLogAppender {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncLogAppender.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FLUSH_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final LogEvent[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    /** written only by the writer thread */
+    private volatile long consumerIndex;
+
+    private final LongAdder dropped = new LongAdder();
+    /** accessed only by the writer thread */
+    private long droppedReported;
+
+    private final Thread writer;
+    private volatile boolean stopped;
+
+    private AsyncLogAppender(int capacity, String threadName) {
+        int length = SpscArrayQueue.roundToPowerOfTwo(Math.max(2, capacity));
+        this.events = new LogEvent[length];
+        this.sequences = new AtomicLongArray(length);
+        this.mask = length - 1;
+        for(int i=0; i < length; i++) {
+            events[i] = new LogEvent();
+            sequences.set(i, i);
+        }
+
+        this.writer = new Thread(this::run, threadName);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @param capacity the events waiting to be written, rounded up to a power of 2
+     */
+    public static AsyncLogAppender create(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        }
+        return new AsyncLogAppender(capacity, "RxAsyncLog");
+    }
+
+    /**
+     * The appender of 8192 events, writing what's left of them when the JVM shuts down
+     */
+    public static AsyncLogAppender shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * @return false if the ring was full and the event dropped
+     */
+    public boolean info(Logger logger, String format, Object arg1, Object arg2) {
+        return offer(logger, false, format, arg1, arg2, null);
+    }
+
+    /**
+     * @return false if the ring was full and the event dropped
+     */
+    public boolean error(Logger logger, String msg, Throwable t) {
+        return offer(logger, true, msg, null, null, t);
+    }
+
+    /**
+     * The events dropped because the ring was full
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * The slots of the ring
+     */
+    public int capacity() {
+        return events.length;
+    }
+
+    /**
+     * Waits for the events logged so far to be written
+     */
+    public void flush() {
+        long logged = producerIndex.get();
+        while(consumerIndex < logged && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, FLUSH_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Stops the writer thread once it wrote the events logged so far, those logged afterwards are not written
+     */
+    public void shutdown() {
+        stopped = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean offer(Logger logger, boolean error, String format, Object arg1, Object arg2, Throwable t) {
+        for(;;) {
+            long index = producerIndex.get();
+            int offset = (int) index & mask;
+            long sequence = sequences.get(offset);
+            if(sequence == index) {
+                if(producerIndex.compareAndSet(index, index + 1)) {
+                    events[offset].set(logger, error, format, arg1, arg2, t);
+                    sequences.lazySet(offset, index + 1);
+                    return true;
+                }
+            } else if(sequence < index) {
+                dropped.increment();
+                return false;
+            }
+        }
+    }
+
+    private void run() {
+        while(!stopped) {
+            if(drain() == 0) {
+                reportDropped();
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        drain();
+        reportDropped();
+    }
+
+    private int drain() {
+        int written = 0;
+        for(;;) {
+            long index = consumerIndex;
+            int offset = (int) index & mask;
+            if(sequences.get(offset) != index + 1) {
+                return written;
+            }
+            LogEvent event = events[offset];
+            try {
+                event.write();
+            } catch (RuntimeException ex) {
+                log.error("Failed writing the log event '" + event.format + "'", ex);
+            }
+            event.clear();
+            consumerIndex = index + 1;
+            sequences.lazySet(offset, index + mask + 1);
+            written++;
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if(total > droppedReported) {
+            log.warn("Dropped {} log events, the ring of {} was full", total - droppedReported, events.length);
+            droppedReported = total;
+        }
+    }
+
+    /**
+     * A slot of the ring, reused for every lap
+     */
+    static final class LogEvent {
+
+        Logger logger;
+        boolean error;
+        String format;
+        Object arg1;
+        Object arg2;
+        Throwable throwable;
+
+        void set(Logger logger, boolean error, String format, Object arg1, Object arg2, Throwable throwable) {
+            this.logger = logger;
+            this.error = error;
+            this.format = format;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.throwable = throwable;
+        }
+
+        void write() {
+            if(error) {
+                logger.error(format, throwable);
+            } else {
+                logger.info(format, arg1, arg2);
+            }
+        }
+
+        void clear() {
+            set(null, false, null, null, null, null);
+        }
+    }
+
+    private static final class SharedHolder {
+        static final AsyncLogAppender INSTANCE = new AsyncLogAppender(8192, "RxAsyncLogShared");
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::shutdown, "RxAsyncLogShutdown"));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.balamaci.rx.logging;
+
+import org.slf4j.Logger;
+import rx.Subscriber;
+
+/**
+ * Subscriber logging the events it receives, and the thread they came on, through an {@link AsyncLogAppender} -
+ * the emitting thread only fills a slot of the appender's ring.
+ *
+ * With 'sampleEvery' N only the first value and then 1 in every N is logged, for the streams of millions of
+ * values where a line for each is more than anyone reads. The completion and the error are always logged.
+ *
+ * <pre>
+ * numbers.subscribe(AsyncLogSubscriber.create(log, 1000));
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public class AsyncLogSubscriber<T> extends Subscriber<T> {
+
+    private final AsyncLogAppender appender;
+    private final Logger logger;
+    private final int sampleEvery;
+
+    /** accessed only by onNext, serialized */
+    private long received;
+    private int untilSampled = 1;
+
+    private AsyncLogSubscriber(AsyncLogAppender appender, Logger logger, int sampleEvery) {
+        this.appender = appender;
+        this.logger = logger;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Logs every value, on the shared appender
+     */
+    public static <T> AsyncLogSubscriber<T> create(Logger logger) {
+        return create(AsyncLogAppender.shared(), logger, 1);
+    }
+
+    /**
+     * Logs 1 in every 'sampleEvery' values, on the shared appender
+     */
+    public static <T> AsyncLogSubscriber<T> create(Logger logger, int sampleEvery) {
+        return create(AsyncLogAppender.shared(), logger, sampleEvery);
+    }
+
+    public static <T> AsyncLogSubscriber<T> create(AsyncLogAppender appender, Logger logger, int sampleEvery) {
+        if(sampleEvery <= 0) {
+            throw new IllegalArgumentException("sampleEvery > 0 required but it was " + sampleEvery);
+        }
+        return new AsyncLogSubscriber<>(appender, logger, sampleEvery);
+    }
+
+    @Override
+    public void onNext(T val) {
+        received++;
+        if(--untilSampled == 0) {
+            untilSampled = sampleEvery;
+            appender.info(logger, "Subscriber received {} on {}", val, Thread.currentThread().getName());
+        }
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        appender.error(logger, "Subscriber received error", e);
+    }
+
+    @Override
+    public void onCompleted() {
+        appender.info(logger, "Subscriber got Completed event after {} values on {}", received,
+                Thread.currentThread().getName());
+    }
+}
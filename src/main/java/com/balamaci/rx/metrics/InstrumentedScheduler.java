@@ -0,0 +1,247 @@
+package com.balamaci.rx.metrics;
+
+import org.HdrHistogram.Recorder;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Wraps a Scheduler to publish, under the name 'scheduler.&lt;name&gt;.':
+ *
+ *  - queueDepth - tasks scheduled without a delay and waiting to start - the delayed ones are not counted, even once
+ *  due, the Worker not telling when they become due
+ *  - waitTime - histogram of the nanoseconds between a task being due and it starting
+ *  - executionTime - histogram of the nanoseconds the tasks ran for
+ *  - workers, activeWorkers, idleWorkers - the Workers alive, and of these the ones running a task or not
+ *
+ * <pre>
+ * Scheduler scheduler = new InstrumentedScheduler("custom", Schedulers.from(executor), registry);
+ * </pre>
+ * Use {@link SchedulerInstrumentation} to instrument the Schedulers.computation() / io() / newThread() Schedulers.
+ *
+ * Reading the clock costs about as much as the rest of the instrumentation, so only one task in
+ * 'sampleEvery' of a Worker is timed - the histograms hold a sample of the tasks while the gauges
+ * account for all of them. A Worker runs its tasks one at a time, so the counters updated when the tasks
+ * run have a single writer and need only ordered writes, the gauges adding them up when read.
+ *
+ * @author sbalamaci
+ */
+public final class InstrumentedScheduler extends Scheduler {
+
+    public static final int DEFAULT_SAMPLE_EVERY = 16;
+
+    private static final AtomicLongFieldUpdater<InstrumentedWorker> STARTED =
+            AtomicLongFieldUpdater.newUpdater(InstrumentedWorker.class, "started");
+    private static final AtomicIntegerFieldUpdater<InstrumentedWorker> RUNNING =
+            AtomicIntegerFieldUpdater.newUpdater(InstrumentedWorker.class, "running");
+    private static final AtomicReferenceFieldUpdater<TimedAction, Subscription> INNER =
+            AtomicReferenceFieldUpdater.newUpdater(TimedAction.class, Subscription.class, "inner");
+
+    private final Scheduler delegate;
+    private final int sampleEvery;
+
+    private final Set<InstrumentedWorker> workers = ConcurrentHashMap.newKeySet();
+    private final Recorder waitTime = new Recorder(3);
+    private final Recorder executionTime = new Recorder(3);
+
+    public InstrumentedScheduler(String name, Scheduler delegate, MetricsRegistry registry) {
+        this(name, delegate, registry, DEFAULT_SAMPLE_EVERY);
+    }
+
+    /**
+     * @param sampleEvery time one task in 'sampleEvery', 1 to time all of them
+     */
+    public InstrumentedScheduler(String name, Scheduler delegate, MetricsRegistry registry, int sampleEvery) {
+        if(sampleEvery <= 0) {
+            throw new IllegalArgumentException("sampleEvery > 0 required but it was " + sampleEvery);
+        }
+        this.delegate = delegate;
+        this.sampleEvery = sampleEvery;
+
+        String prefix = "scheduler." + name + ".";
+        registry.gauge(prefix + "queueDepth", this::queueDepth);
+        registry.gauge(prefix + "workers", workers::size);
+        registry.gauge(prefix + "activeWorkers", this::activeWorkers);
+        registry.gauge(prefix + "idleWorkers", () -> workers.size() - activeWorkers());
+        registry.histogram(prefix + "waitTime", waitTime);
+        registry.histogram(prefix + "executionTime", executionTime);
+    }
+
+    @Override
+    public Worker createWorker() {
+        InstrumentedWorker worker = new InstrumentedWorker(delegate.createWorker());
+        workers.add(worker);
+        return worker;
+    }
+
+    @Override
+    public long now() {
+        return delegate.now();
+    }
+
+    private long queueDepth() {
+        long depth = 0;
+        for(InstrumentedWorker worker : workers) {
+            depth += worker.queued.get() - worker.started - worker.cancelled.get();
+        }
+        return depth;
+    }
+
+    private long activeWorkers() {
+        long active = 0;
+        for(InstrumentedWorker worker : workers) {
+            if(worker.running != 0) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    final class InstrumentedWorker extends Worker {
+
+        final Worker actual;
+
+        /** tasks that were due to run */
+        final AtomicLong queued = new AtomicLong();
+
+        /** queued tasks unsubscribed before starting */
+        final AtomicLong cancelled = new AtomicLong();
+
+        /** queued tasks that started, written only by the task running on the Worker */
+        volatile long started;
+
+        /** the number of tasks running, more than one only when a task schedules on a trampoline */
+        volatile int running;
+
+        /** decides which tasks are timed, racy when scheduling from multiple threads but it's only sampling */
+        int untilSample;
+
+        InstrumentedWorker(Worker actual) {
+            this.actual = actual;
+        }
+
+        @Override
+        public Subscription schedule(Action0 action) {
+            TimedAction task = new TimedAction(this, action, sample() ? System.nanoTime() : 0L, true);
+            queued.getAndIncrement();
+            task.setInner(actual.schedule(task));
+            return task;
+        }
+
+        @Override
+        public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+            if(delayTime <= 0) {
+                return schedule(action);
+            }
+            long due = sample() ? System.nanoTime() + unit.toNanos(delayTime) : 0L;
+            TimedAction task = new TimedAction(this, action, due, false);
+            task.setInner(actual.schedule(task, delayTime, unit));
+            return task;
+        }
+
+        private boolean sample() {
+            if(--untilSample > 0) {
+                return false;
+            }
+            untilSample = sampleEvery;
+            return true;
+        }
+
+        @Override
+        public long now() {
+            return actual.now();
+        }
+
+        @Override
+        public void unsubscribe() {
+            workers.remove(this);
+            actual.unsubscribe();
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return actual.isUnsubscribed();
+        }
+    }
+
+    /**
+     * The task as passed to the wrapped Worker, and the Subscription returned for it
+     */
+    final class TimedAction extends AtomicInteger implements Action0, Subscription {
+
+        static final int WAITING = 0;
+        static final int STARTED = 1;
+        static final int CANCELLED = 2;
+
+        final InstrumentedWorker worker;
+        final Action0 action;
+
+        /** 0 when the task is not timed */
+        final long due;
+        final boolean countedAsQueued;
+        volatile Subscription inner;
+
+        TimedAction(InstrumentedWorker worker, Action0 action, long due, boolean countedAsQueued) {
+            this.worker = worker;
+            this.action = action;
+            this.due = due;
+            this.countedAsQueued = countedAsQueued;
+        }
+
+        void setInner(Subscription inner) {
+            INNER.lazySet(this, inner);
+        }
+
+        @Override
+        public void call() {
+            InstrumentedWorker w = worker;
+            // the task leaves the queue either by starting or by being unsubscribed, whichever comes first
+            if(compareAndSet(WAITING, STARTED) && countedAsQueued) {
+                InstrumentedScheduler.STARTED.lazySet(w, w.started + 1);
+            }
+            RUNNING.lazySet(w, w.running + 1);
+            if(due == 0L) {
+                try {
+                    action.call();
+                } finally {
+                    RUNNING.lazySet(w, w.running - 1);
+                }
+                return;
+            }
+            long start = System.nanoTime();
+            waitTime.recordValue(Math.max(0, start - due));
+            try {
+                action.call();
+            } finally {
+                RUNNING.lazySet(w, w.running - 1);
+                executionTime.recordValue(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            if(compareAndSet(WAITING, CANCELLED) && countedAsQueued) {
+                worker.cancelled.getAndIncrement();
+            }
+            Subscription s = inner;
+            if(s != null) {
+                s.unsubscribe();
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            Subscription s = inner;
+            return get() == CANCELLED || (s != null && s.isUnsubscribed());
+        }
+    }
+}
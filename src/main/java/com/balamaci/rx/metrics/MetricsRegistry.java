@@ -0,0 +1,28 @@
+package com.balamaci.rx.metrics;
+
+import org.HdrHistogram.Recorder;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Where the instrumented components publish their metrics. Implement it to bridge to a metrics library,
+ * or use {@link SimpleMetricsRegistry} which keeps them in memory.
+ *
+ * The components only hand over how to read the metrics, the registry decides when to read them,
+ * so nothing is done on the hot path on the registry's behalf.
+ *
+ * @author sbalamaci
+ */
+public interface MetricsRegistry {
+
+    /**
+     * @param value read whenever the registry reports, like a queue depth
+     */
+    void gauge(String name, LongSupplier value);
+
+    /**
+     * @param recorder values recorded by the component, the registry takes the values recorded since
+     *                 the last read with recorder.getIntervalHistogram()
+     */
+    void histogram(String name, Recorder recorder);
+}
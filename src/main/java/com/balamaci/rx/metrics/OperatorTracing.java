@@ -0,0 +1,168 @@
+package com.balamaci.rx.metrics;
+
+import org.HdrHistogram.Recorder;
+import rx.Observable;
+import rx.functions.Func1;
+import rx.internal.operators.BackpressureUtils;
+import rx.plugins.RxJavaHooks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traces every operator of the Observables assembled while it's installed, through the
+ * RxJavaHooks.onObservableCreate hook. For every stage of a chain - identified by its path like
+ * 'fromArray;groupBy;merge' - it publishes under 'operator.&lt;path&gt;.':
+ *
+ *  - onNext - the values received by the operator
+ *  - requested - the total request(n) made by the operator to its upstream, Long.MAX_VALUE for unbounded
+ *  - threadHops - the values which reached the operator on another thread than the one which subscribed it, and than
+ *  the one the upstream operator received them on - like after an observeOn or subscribeOn
+ *  - time - histogram of the nanoseconds spent inside the operator's onNext, not counting the downstream operators
+ *
+ * <pre>
+ * OperatorTracing tracing = OperatorTracing.install(registry);
+ * ... assemble and subscribe to the chain
+ * tracing.uninstall();
+ * log.info("Flame graph {}", tracing.flameGraph());
+ * </pre>
+ *
+ * Only the Observables created while the tracing is installed are traced, the others don't pay anything for it.
+ * The hook being global, that's those of every thread - the inner Observables assembled on the threads of the
+ * Schedulers included - so the chains assembled meanwhile by other parts of the application show up as well.
+ * A source subscribed from inside the onNext of a traced operator - like the inner Observables of flatMap, or the
+ * sources of zip and merge - has its path continue the one of the operator which emitted it, and end with the
+ * operator consuming it: zip(range.map, range.filter) gives 'just;range;map;zip', 'just;range;filter;zip' and
+ * 'just;zip;...' for what comes after the zip.
+ *
+ * @author sbalamaci
+ */
+public final class OperatorTracing {
+
+    private static final ClassValue<String> NAMES = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return operatorName(type);
+        }
+    };
+
+    private final MetricsRegistry registry;
+    private final Func1<Observable.OnSubscribe, Observable.OnSubscribe> previousHook;
+    private final Map<String, Stage> stages = new ConcurrentSkipListMap<>();
+
+    private OperatorTracing(MetricsRegistry registry,
+                            Func1<Observable.OnSubscribe, Observable.OnSubscribe> previousHook) {
+        this.registry = registry;
+        this.previousHook = previousHook;
+    }
+
+    public static OperatorTracing install(MetricsRegistry registry) {
+        OperatorTracing tracing = new OperatorTracing(registry, RxJavaHooks.getOnObservableCreate());
+        RxJavaHooks.setOnObservableCreate(tracing::trace);
+        return tracing;
+    }
+
+    /**
+     * Stops tracing the Observables created from now on, the ones already created keep being traced
+     */
+    public void uninstall() {
+        RxJavaHooks.setOnObservableCreate(previousHook);
+    }
+
+    /**
+     * The time spent in each stage in the 'folded stacks' format of flamegraph.pl and speedscope,
+     * one line for each stage with its path and the nanoseconds spent in it:
+     * <pre>
+     * fromArray;groupBy 1250000
+     * fromArray;groupBy;merge 830000
+     * </pre>
+     */
+    public String flameGraph() {
+        StringBuilder folded = new StringBuilder();
+        for(Stage stage : stages.values()) {
+            folded.append(stage.path).append(' ').append(stage.nanos.sum()).append('\n');
+        }
+        return folded.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Observable.OnSubscribe trace(Observable.OnSubscribe onSubscribe) {
+        if(previousHook != null) {
+            onSubscribe = previousHook.call(onSubscribe);
+        }
+        if(onSubscribe instanceof TracingOnSubscribe) {
+            return onSubscribe;
+        }
+        return new TracingOnSubscribe<>(this, onSubscribe);
+    }
+
+    Stage stage(String path) {
+        Stage stage = stages.get(path);
+        if(stage != null) {
+            return stage;
+        }
+        return stages.computeIfAbsent(path, p -> {
+            Stage created = new Stage(p);
+            String prefix = "operator." + p + ".";
+            registry.gauge(prefix + "onNext", created.onNext::sum);
+            registry.gauge(prefix + "requested", created.requested::get);
+            registry.gauge(prefix + "threadHops", created.threadHops::sum);
+            registry.histogram(prefix + "time", created.time);
+            return created;
+        });
+    }
+
+    /**
+     * The name of an operator or subscriber, the class of its OnSubscribe or Subscriber
+     * like OperatorObserveOn$ObserveOnSubscriber becoming 'observeOn'
+     */
+    static String nameOf(Class<?> type) {
+        return NAMES.get(type);
+    }
+
+    private static String operatorName(Class<?> type) {
+        while(type.getEnclosingClass() != null) {
+            type = type.getEnclosingClass();
+        }
+        String name = type.getSimpleName();
+        if(name.contains("$$Lambda")) {
+            return "create";
+        }
+        for(String prefix : new String[] {"OnSubscribe", "Operator"}) {
+            if(name.startsWith(prefix) && name.length() > prefix.length()) {
+                name = name.substring(prefix.length());
+                return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+            }
+        }
+        return name;
+    }
+
+    static final class Stage {
+
+        final String path;
+
+        final LongAdder onNext = new LongAdder();
+        final AtomicLong requested = new AtomicLong();
+        final LongAdder threadHops = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final Recorder time = new Recorder(3);
+
+        Stage(String path) {
+            this.path = path;
+        }
+
+        void request(long n) {
+            long r;
+            do {
+                r = requested.get();
+            } while(!requested.compareAndSet(r, BackpressureUtils.addCap(r, n)));
+        }
+
+        void record(long elapsed) {
+            nanos.add(elapsed);
+            time.recordValue(Math.max(0, elapsed));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.balamaci.rx.metrics;
+
+import rx.Scheduler;
+import rx.functions.Func1;
+import rx.plugins.RxJavaHooks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Instruments the standard Schedulers through the RxJavaHooks, so every Schedulers.computation(), io() and
+ * newThread() - including the ones used by default by operators like interval or delay - returns an
+ * {@link InstrumentedScheduler} named 'computation', 'io' or 'newThread'.
+ *
+ * The hooks installed before - like a test's virtual clock - keep applying, the Scheduler they return being the one
+ * instrumented, and are put back by uninstall().
+ *
+ * <pre>
+ * SchedulerInstrumentation instrumentation = SchedulerInstrumentation.install(registry);
+ * ...
+ * instrumentation.uninstall();
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class SchedulerInstrumentation {
+
+    private final Func1<Scheduler, Scheduler> previousComputation;
+    private final Func1<Scheduler, Scheduler> previousIO;
+    private final Func1<Scheduler, Scheduler> previousNewThread;
+
+    private SchedulerInstrumentation(Func1<Scheduler, Scheduler> previousComputation,
+                                     Func1<Scheduler, Scheduler> previousIO,
+                                     Func1<Scheduler, Scheduler> previousNewThread) {
+        this.previousComputation = previousComputation;
+        this.previousIO = previousIO;
+        this.previousNewThread = previousNewThread;
+    }
+
+    public static SchedulerInstrumentation install(MetricsRegistry registry) {
+        SchedulerInstrumentation instrumentation = new SchedulerInstrumentation(
+                RxJavaHooks.getOnComputationScheduler(), RxJavaHooks.getOnIOScheduler(),
+                RxJavaHooks.getOnNewThreadScheduler());
+
+        // the hooks are called on every Schedulers.xxx() call, so the wrappers are created only once
+        Map<Scheduler, Scheduler> instrumented = new ConcurrentHashMap<>();
+
+        RxJavaHooks.setOnComputationScheduler(instrument("computation", instrumentation.previousComputation,
+                instrumented, registry));
+        RxJavaHooks.setOnIOScheduler(instrument("io", instrumentation.previousIO, instrumented, registry));
+        RxJavaHooks.setOnNewThreadScheduler(instrument("newThread", instrumentation.previousNewThread,
+                instrumented, registry));
+        return instrumentation;
+    }
+
+    /**
+     * Puts back the hooks which were installed before
+     */
+    public void uninstall() {
+        RxJavaHooks.setOnComputationScheduler(previousComputation);
+        RxJavaHooks.setOnIOScheduler(previousIO);
+        RxJavaHooks.setOnNewThreadScheduler(previousNewThread);
+    }
+
+    private static Func1<Scheduler, Scheduler> instrument(String name, Func1<Scheduler, Scheduler> previousHook,
+                                                          Map<Scheduler, Scheduler> instrumented,
+                                                          MetricsRegistry registry) {
+        return scheduler -> {
+            Scheduler actual = previousHook != null ? previousHook.call(scheduler) : scheduler;
+            return instrumented.computeIfAbsent(actual, s -> new InstrumentedScheduler(name, s, registry));
+        };
+    }
+}
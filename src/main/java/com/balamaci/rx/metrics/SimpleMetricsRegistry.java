@@ -0,0 +1,80 @@
+package com.balamaci.rx.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the metrics in memory, the histograms accumulating all the values recorded since they were registered.
+ *
+ * <pre>
+ * SimpleMetricsRegistry registry = new SimpleMetricsRegistry();
+ * ...
+ * log.info("Metrics {}", registry.report());
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public class SimpleMetricsRegistry implements MetricsRegistry {
+
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, Recorder> recorders = new ConcurrentSkipListMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+
+    @Override
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    @Override
+    public void histogram(String name, Recorder recorder) {
+        recorders.put(name, recorder);
+        histograms.put(name, new Histogram(3));
+    }
+
+    public long gaugeValue(String name) {
+        LongSupplier gauge = gauges.get(name);
+        if(gauge == null) {
+            throw new IllegalArgumentException("No gauge named " + name);
+        }
+        return gauge.getAsLong();
+    }
+
+    /**
+     * @return copy of the histogram with all the values recorded until now
+     */
+    public synchronized Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if(histogram == null) {
+            throw new IllegalArgumentException("No histogram named " + name);
+        }
+        histogram.add(recorders.get(name).getIntervalHistogram());
+        return histogram.copy();
+    }
+
+    /**
+     * One line for each metric, the histograms of nanoseconds summarized in microseconds
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for(Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            report.append(String.format("%n  %s = %d", gauge.getKey(), gauge.getValue().getAsLong()));
+        }
+        for(String name : histograms.keySet()) {
+            Histogram histogram = histogram(name);
+            report.append(String.format("%n  %s count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", name,
+                    histogram.getTotalCount(), micros(histogram.getMean()),
+                    micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(99)),
+                    micros(histogram.getMaxValue())));
+        }
+        return report.toString();
+    }
+
+    private static double micros(double nanos) {
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,190 @@
+package com.balamaci.rx.metrics;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.internal.operators.BackpressureUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts a {@link TracingSubscriber} between the operator and each of its subscribers, which times the onNext of the
+ * subscriber - the downstream operator - and counts the values and requests going through.
+ *
+ * @author sbalamaci
+ */
+final class TracingOnSubscribe<T> implements Observable.OnSubscribe<T> {
+
+    /** the TracingSubscriber being subscribed on this thread, until the first traced upstream links to it */
+    static final ThreadLocal<TracingSubscriber<?>> SUBSCRIBING = new ThreadLocal<>();
+
+    /** the innermost TracingSubscriber running its onNext on this thread */
+    static final ThreadLocal<TracingSubscriber<?>> CURRENT = new ThreadLocal<>();
+
+    private final OperatorTracing tracing;
+    private final Observable.OnSubscribe<T> actual;
+
+    TracingOnSubscribe(OperatorTracing tracing, Observable.OnSubscribe<T> actual) {
+        this.tracing = tracing;
+        this.actual = actual;
+    }
+
+    @Override
+    public void call(Subscriber<? super T> child) {
+        TracingSubscriber<T> subscriber = new TracingSubscriber<>(tracing, child,
+                OperatorTracing.nameOf(actual.getClass()), CURRENT.get());
+
+        // a source subscribed from an onNext started after the downstream subscribed - like the sources zip and
+        // merge get as values - is not its upstream, and of the sources an operator subscribes only the first is
+        TracingSubscriber<?> downstream = SUBSCRIBING.get();
+        if(downstream != null && downstream.upstream == null && downstream.context == subscriber.context) {
+            downstream.upstream = subscriber;
+        }
+        SUBSCRIBING.set(subscriber);
+        try {
+            actual.call(subscriber);
+        } finally {
+            SUBSCRIBING.set(downstream);
+        }
+    }
+
+    static final class TracingSubscriber<T> extends Subscriber<T> {
+
+        private final OperatorTracing tracing;
+        private final Subscriber<? super T> child;
+        private final String name;
+        private final String childName;
+
+        /** the subscriber which was running its onNext when this one subscribed, to continue its path */
+        private final TracingSubscriber<?> context;
+        private final Thread subscribedOn;
+
+        /** the TracingSubscriber feeding the operator, null when the operator is the source */
+        TracingSubscriber<?> upstream;
+
+        private volatile OperatorTracing.Stage stage;
+        private final AtomicLong pendingRequested = new AtomicLong();
+
+        /** the time spent in the onNext of the TracingSubscribers called from this one's onNext */
+        long nestedNanos;
+
+        TracingSubscriber(OperatorTracing tracing, Subscriber<? super T> child, String name,
+                          TracingSubscriber<?> context) {
+            super(child);
+            this.tracing = tracing;
+            this.child = child;
+            this.name = name;
+            this.childName = OperatorTracing.nameOf(child.getClass());
+            this.context = context;
+            this.subscribedOn = Thread.currentThread();
+        }
+
+        @Override
+        public void onNext(T t) {
+            OperatorTracing.Stage stage = stage();
+            TracingSubscriber<?> caller = CURRENT.get();
+
+            Thread thread = Thread.currentThread();
+            if(thread != subscribedOn && (caller == null || caller.subscribedOn == thread)) {
+                stage.threadHops.increment();
+            }
+            stage.onNext.increment();
+
+            CURRENT.set(this);
+            long nested = nestedNanos;
+            long start = System.nanoTime();
+            try {
+                child.onNext(t);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                CURRENT.set(caller);
+                stage.record(elapsed - (nestedNanos - nested));
+                if(caller != null) {
+                    caller.nestedNanos += elapsed;
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            stage();
+            TracingSubscriber<?> caller = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                child.onError(e);
+            } finally {
+                CURRENT.set(caller);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            stage();
+            TracingSubscriber<?> caller = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                child.onCompleted();
+            } finally {
+                CURRENT.set(caller);
+            }
+        }
+
+        @Override
+        public void setProducer(Producer p) {
+            child.setProducer(n -> {
+                requested(n);
+                p.request(n);
+            });
+        }
+
+        private void requested(long n) {
+            OperatorTracing.Stage s = stage;
+            if(s != null) {
+                s.request(n);
+                return;
+            }
+            // the path is known only once the whole chain got subscribed, until then the requests are kept aside
+            BackpressureUtils.getAndAddRequest(pendingRequested, n);
+            s = stage;
+            if(s != null) {
+                flushRequested(s);
+            }
+        }
+
+        private void flushRequested(OperatorTracing.Stage s) {
+            long pending = pendingRequested.getAndSet(0);
+            if(pending != 0) {
+                s.request(pending);
+            }
+        }
+
+        private OperatorTracing.Stage stage() {
+            OperatorTracing.Stage s = stage;
+            if(s == null) {
+                s = tracing.stage(path());
+                stage = s;
+                flushRequested(s);
+            }
+            return s;
+        }
+
+        private String path() {
+            OperatorTracing.Stage s = stage;
+            if(s != null) {
+                return s.path;
+            }
+            return operatorPath() + ";" + childName;
+        }
+
+        /**
+         * The path up to the operator this subscriber receives from. A source subscribed from the onNext of another
+         * subscriber continues the path of the operator which emitted the value, not of the one consuming it.
+         */
+        private String operatorPath() {
+            if(upstream != null) {
+                return upstream.path();
+            }
+            return context != null ? context.operatorPath() + ";" + name : name;
+        }
+    }
+}
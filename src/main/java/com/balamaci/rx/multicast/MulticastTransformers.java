@@ -0,0 +1,50 @@
+package com.balamaci.rx.multicast;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sharing one subscription to an expensive source - a connection to a remote feed, a database query -
+ * between subscribers which come and go, through compose().
+ *
+ * <pre>
+ * Observable&lt;Quote&gt; quotes = quoteFeed.compose(MulticastTransformers.shareWithGracePeriod(30, TimeUnit.SECONDS, 1));
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class MulticastTransformers {
+
+    private MulticastTransformers() {
+    }
+
+    /**
+     * Like share(), subscribes to the source with the first subscriber, but once the last subscriber unsubscribed
+     * keeps the subscription for 'gracePeriod' instead of unsubscribing right away, so a subscriber coming in the
+     * meantime reuses it instead of subscribing to the source again.
+     *
+     * @param replaySize how many of the last values a subscriber receives when subscribing, 0 for only the new ones
+     */
+    public static <T> Observable.Transformer<T, T> shareWithGracePeriod(long gracePeriod, TimeUnit unit,
+                                                                       int replaySize) {
+        return shareWithGracePeriod(gracePeriod, unit, replaySize, new ShareCounters());
+    }
+
+    /**
+     * @param counters counts the subscriptions to the source, and those avoided by the grace period
+     */
+    public static <T> Observable.Transformer<T, T> shareWithGracePeriod(long gracePeriod, TimeUnit unit,
+                                                                       int replaySize, ShareCounters counters) {
+        return shareWithGracePeriod(gracePeriod, unit, replaySize, counters, Schedulers.computation());
+    }
+
+    public static <T> Observable.Transformer<T, T> shareWithGracePeriod(long gracePeriod, TimeUnit unit,
+                                                                       int replaySize, ShareCounters counters,
+                                                                       Scheduler scheduler) {
+        return source -> Observable.create(new OnSubscribeShareWithGracePeriod<>(source, gracePeriod, unit,
+                replaySize, scheduler, counters));
+    }
+}
@@ -0,0 +1,155 @@
+package com.balamaci.rx.multicast;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.observables.ConnectableObservable;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Like publish().refCount() - what share() is - connecting to the source with the first subscriber, but when the
+ * last one unsubscribes the connection is kept for 'gracePeriod' and reused if a subscriber comes in the meantime.
+ *
+ * Every connection gets its own ConnectableObservable: a publish(), or a RingBufferReplay of the last 'replaySize'
+ * values for the subscribers coming later. Once the source terminates, the next subscriber connects again.
+ *
+ * @author sbalamaci
+ */
+final class OnSubscribeShareWithGracePeriod<T> implements Observable.OnSubscribe<T> {
+
+    private final Observable<T> source;
+    private final long gracePeriodMillis;
+    private final int replaySize;
+    private final Scheduler scheduler;
+    private final ShareCounters counters;
+
+    /** guarded by this */
+    private Connection<T> current;
+
+    OnSubscribeShareWithGracePeriod(Observable<T> source, long gracePeriod, TimeUnit unit, int replaySize,
+                                    Scheduler scheduler, ShareCounters counters) {
+        if(gracePeriod < 0) {
+            throw new IllegalArgumentException("gracePeriod >= 0 required but it was " + gracePeriod);
+        }
+        if(replaySize < 0) {
+            throw new IllegalArgumentException("replaySize >= 0 required but it was " + replaySize);
+        }
+        this.source = source;
+        this.gracePeriodMillis = unit.toMillis(gracePeriod);
+        this.replaySize = replaySize;
+        this.scheduler = scheduler;
+        this.counters = counters;
+    }
+
+    @Override
+    public void call(Subscriber<? super T> child) {
+        Connection<T> connection;
+        boolean connect = false;
+        synchronized (this) {
+            connection = current;
+            if(connection == null || connection.terminated) {
+                connection = new Connection<>();
+                Connection<T> terminating = connection;
+                Observable<T> upstream = source.doOnTerminate(() -> terminated(terminating));
+                connection.shared = replaySize == 0 ? upstream.publish()
+                        : RingBufferReplay.create(upstream, replaySize);
+                current = connection;
+                connect = true;
+            } else if(connection.disconnectTimer != null) {
+                connection.disconnectTimer.unsubscribe();
+                connection.disconnectTimer = null;
+                counters.onReconnectAvoided();
+            }
+            connection.subscribers++;
+        }
+
+        Connection<T> subscribed = connection;
+        child.add(Subscriptions.create(() -> release(subscribed)));
+        connection.shared.unsafeSubscribe(child);
+
+        if(connect) {
+            counters.onConnect();
+            connection.shared.connect(subscription -> connected(subscribed, subscription));
+        }
+    }
+
+    private void connected(Connection<T> connection, Subscription subscription) {
+        synchronized (this) {
+            if(!connection.disconnected) {
+                connection.subscription = subscription;
+                return;
+            }
+        }
+        // the grace period passed before the source was even subscribed
+        subscription.unsubscribe();
+    }
+
+    private void terminated(Connection<T> connection) {
+        synchronized (this) {
+            connection.terminated = true;
+        }
+    }
+
+    private void release(Connection<T> connection) {
+        Subscription subscription;
+        synchronized (this) {
+            if(--connection.subscribers > 0 || connection.terminated || current != connection) {
+                return;
+            }
+            if(gracePeriodMillis > 0) {
+                Scheduler.Worker worker = scheduler.createWorker();
+                connection.disconnectTimer = worker;
+                worker.schedule(() -> gracePeriodEnded(connection, worker), gracePeriodMillis,
+                        TimeUnit.MILLISECONDS);
+                return;
+            }
+            subscription = disconnect(connection);
+        }
+        if(subscription != null) {
+            subscription.unsubscribe();
+        }
+    }
+
+    private void gracePeriodEnded(Connection<T> connection, Scheduler.Worker worker) {
+        Subscription subscription;
+        synchronized (this) {
+            if(connection.disconnectTimer != worker) {
+                // a subscriber came in the meantime
+                return;
+            }
+            connection.disconnectTimer = null;
+            subscription = disconnect(connection);
+        }
+        worker.unsubscribe();
+        if(subscription != null) {
+            subscription.unsubscribe();
+        }
+    }
+
+    /**
+     * Called holding the lock
+     * @return the subscription to the source, to unsubscribe outside of the lock
+     */
+    private Subscription disconnect(Connection<T> connection) {
+        current = null;
+        connection.disconnected = true;
+        counters.onDisconnect();
+        return connection.subscription;
+    }
+
+    /**
+     * A subscription to the source and its subscribers, guarded by the OnSubscribe's lock
+     */
+    static final class Connection<T> {
+
+        ConnectableObservable<T> shared;
+        Subscription subscription;
+        int subscribers;
+        Subscription disconnectTimer;
+        boolean terminated;
+        boolean disconnected;
+    }
+}
@@ -0,0 +1,381 @@
+package com.balamaci.rx.multicast;
+
+import com.balamaci.rx.util.SpscArrayQueue;
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.exceptions.MissingBackpressureException;
+import rx.functions.Action1;
+import rx.internal.operators.BackpressureUtils;
+import rx.observables.ConnectableObservable;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Like replay(capacity) / replay(capacity, time, unit), late subscribers first receive the last values, up to
+ * 'capacity' of them and not older than 'maxAge', before the live ones.
+ *
+ * replay() keeps the values in a linked list of nodes, allocating a node for every value and having every subscriber
+ * walk the nodes. Here the values are written in a preallocated ring buffer and each subscriber only keeps its
+ * index in it, reading the values in place without locks: the writer publishes the values through a volatile
+ * index, and a subscriber checks after reading a slot that it wasn't overwritten in the meantime.
+ *
+ * Nothing is allocated per value, so the memory stays the size of the ring. The values are evicted by the writer
+ * overwriting them, those older than 'maxAge' are only skipped by the new subscribers, and are released once
+ * overwritten.
+ *
+ * The source is requested unbounded, same as replay(). A subscriber which didn't request the values before the
+ * writer overwrote them, being more than the ring's size behind, receives a MissingBackpressureException, while
+ * the history being overwritten as a new subscriber replays it is just skipped.
+ *
+ * <pre>
+ * ConnectableObservable&lt;Quote&gt; quotes = RingBufferReplay.create(quoteFeed, 1024, 1, TimeUnit.MINUTES);
+ * quotes.connect();
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class RingBufferReplay<T> extends ConnectableObservable<T> {
+
+    private final Observable<? extends T> source;
+    private final AtomicReference<ReplayBuffer<T>> current;
+    private final int capacity;
+    private final long maxAgeMillis;
+    private final Scheduler scheduler;
+
+    private RingBufferReplay(OnSubscribe<T> onSubscribe, Observable<? extends T> source,
+                             AtomicReference<ReplayBuffer<T>> current, int capacity, long maxAgeMillis,
+                             Scheduler scheduler) {
+        super(onSubscribe);
+        this.source = source;
+        this.current = current;
+        this.capacity = capacity;
+        this.maxAgeMillis = maxAgeMillis;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Replays the last 'capacity' values
+     */
+    public static <T> RingBufferReplay<T> create(Observable<? extends T> source, int capacity) {
+        return create(source, capacity, Long.MAX_VALUE, TimeUnit.MILLISECONDS, Schedulers.immediate());
+    }
+
+    /**
+     * Replays the last 'capacity' values not older than 'maxAge', by the time of Schedulers.computation()
+     */
+    public static <T> RingBufferReplay<T> create(Observable<? extends T> source, int capacity,
+                                                 long maxAge, TimeUnit unit) {
+        return create(source, capacity, maxAge, unit, Schedulers.computation());
+    }
+
+    public static <T> RingBufferReplay<T> create(Observable<? extends T> source, int capacity,
+                                                 long maxAge, TimeUnit unit, Scheduler scheduler) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        }
+        if(maxAge <= 0) {
+            throw new IllegalArgumentException("maxAge > 0 required but it was " + maxAge);
+        }
+        long maxAgeMillis = unit.toMillis(maxAge);
+        AtomicReference<ReplayBuffer<T>> current = new AtomicReference<>(
+                new ReplayBuffer<>(capacity, maxAgeMillis, scheduler));
+        OnSubscribe<T> onSubscribe = child -> current.get().subscribe(child);
+
+        return new RingBufferReplay<>(onSubscribe, source, current, capacity, maxAgeMillis, scheduler);
+    }
+
+    /**
+     * Subscribes to the source, or does nothing if already connected. Once the source terminated or the previous
+     * connection was unsubscribed, connects with a new empty buffer
+     */
+    @Override
+    public void connect(Action1<? super Subscription> connection) {
+        for(;;) {
+            ReplayBuffer<T> buffer = current.get();
+            if(buffer.isDisconnected()) {
+                ReplayBuffer<T> next = new ReplayBuffer<>(capacity, maxAgeMillis, scheduler);
+                if(!current.compareAndSet(buffer, next)) {
+                    continue;
+                }
+                buffer = next;
+            }
+            boolean doConnect = buffer.connected.compareAndSet(false, true);
+            connection.call(buffer);
+            if(doConnect) {
+                source.unsafeSubscribe(buffer);
+            }
+            return;
+        }
+    }
+
+    /**
+     * The writer, subscribed to the source
+     */
+    static final class ReplayBuffer<T> extends Subscriber<T> {
+
+        @SuppressWarnings("rawtypes")
+        static final ReplaySubscription[] EMPTY = new ReplaySubscription[0];
+        @SuppressWarnings("rawtypes")
+        static final ReplaySubscription[] TERMINATED = new ReplaySubscription[0];
+
+        final int capacity;
+        final int length;
+        final int mask;
+        final AtomicReferenceArray<T> values;
+        /** when the values were written, only when evicting by age */
+        final AtomicLongArray timestamps;
+        final long maxAgeMillis;
+        final Scheduler scheduler;
+
+        /** the number of values written, the next value going at producerIndex & mask */
+        final AtomicLong producerIndex = new AtomicLong();
+        final AtomicReference<ReplaySubscription<T>[]> subscribers;
+        final AtomicBoolean connected = new AtomicBoolean();
+
+        volatile boolean done;
+        Throwable error;
+
+        @SuppressWarnings("unchecked")
+        ReplayBuffer(int capacity, long maxAgeMillis, Scheduler scheduler) {
+            this.capacity = capacity;
+            // a spare slot, for the writer not to be overwriting the oldest value while it's replayed
+            this.length = SpscArrayQueue.roundToPowerOfTwo(capacity + 1);
+            this.mask = length - 1;
+            this.values = new AtomicReferenceArray<>(length);
+            this.maxAgeMillis = maxAgeMillis;
+            this.timestamps = maxAgeMillis == Long.MAX_VALUE ? null : new AtomicLongArray(length);
+            this.scheduler = scheduler;
+            this.subscribers = new AtomicReference<>(EMPTY);
+        }
+
+        @Override
+        public void onNext(T t) {
+            long index = producerIndex.get();
+            int offset = (int) index & mask;
+            values.lazySet(offset, t);
+            if(timestamps != null) {
+                timestamps.lazySet(offset, scheduler.now());
+            }
+            producerIndex.lazySet(index + 1);
+
+            for(ReplaySubscription<T> inner : subscribers.get()) {
+                inner.drain();
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error = e;
+            terminate();
+        }
+
+        @Override
+        public void onCompleted() {
+            terminate();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void terminate() {
+            done = true;
+            for(ReplaySubscription<T> inner : subscribers.getAndSet(TERMINATED)) {
+                inner.drain();
+            }
+        }
+
+        boolean isDisconnected() {
+            return done || isUnsubscribed();
+        }
+
+        void subscribe(Subscriber<? super T> child) {
+            ReplaySubscription<T> inner = new ReplaySubscription<>(child, this, firstIndex());
+            child.add(inner);
+            child.setProducer(inner);
+
+            if(add(inner) && inner.isUnsubscribed()) {
+                remove(inner);
+            }
+            inner.drain();
+        }
+
+        /**
+         * The oldest value a new subscriber replays
+         */
+        private long firstIndex() {
+            long end = producerIndex.get();
+            long index = Math.max(0, end - capacity);
+            if(timestamps != null) {
+                long oldest = scheduler.now() - maxAgeMillis;
+                while(index < end && timestamps.get((int) index & mask) < oldest) {
+                    index++;
+                }
+            }
+            return index;
+        }
+
+        boolean add(ReplaySubscription<T> inner) {
+            for(;;) {
+                ReplaySubscription<T>[] current = subscribers.get();
+                if(current == TERMINATED) {
+                    return false;
+                }
+                @SuppressWarnings("unchecked")
+                ReplaySubscription<T>[] next = new ReplaySubscription[current.length + 1];
+                System.arraycopy(current, 0, next, 0, current.length);
+                next[current.length] = inner;
+                if(subscribers.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void remove(ReplaySubscription<T> inner) {
+            for(;;) {
+                ReplaySubscription<T>[] current = subscribers.get();
+                if(current == TERMINATED || current == EMPTY) {
+                    return;
+                }
+                int index = -1;
+                for(int i=0; i < current.length; i++) {
+                    if(current[i] == inner) {
+                        index = i;
+                        break;
+                    }
+                }
+                if(index < 0) {
+                    return;
+                }
+                ReplaySubscription<T>[] next;
+                if(current.length == 1) {
+                    next = EMPTY;
+                } else {
+                    next = new ReplaySubscription[current.length - 1];
+                    System.arraycopy(current, 0, next, 0, index);
+                    System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+                }
+                if(subscribers.compareAndSet(current, next)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * A subscriber's cursor in the ring
+     */
+    static final class ReplaySubscription<T> implements Producer, Subscription {
+
+        final Subscriber<? super T> child;
+        final ReplayBuffer<T> buffer;
+        /** the values before this index were already written when subscribing */
+        final long historyEnd;
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+        final AtomicInteger unsubscribed = new AtomicInteger();
+
+        /** accessed only by the thread draining */
+        long index;
+
+        ReplaySubscription(Subscriber<? super T> child, ReplayBuffer<T> buffer, long index) {
+            this.child = child;
+            this.buffer = buffer;
+            this.index = index;
+            this.historyEnd = buffer.producerIndex.get();
+        }
+
+        @Override
+        public void request(long n) {
+            if(n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if(n > 0) {
+                BackpressureUtils.getAndAddRequest(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            if(unsubscribed.compareAndSet(0, 1)) {
+                buffer.remove(this);
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return unsubscribed.get() != 0;
+        }
+
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            ReplayBuffer<T> buffer = this.buffer;
+            int missed = 1;
+            for(;;) {
+                long r = requested.get();
+                long e = 0L;
+                long i = index;
+
+                for(;;) {
+                    if(isUnsubscribed()) {
+                        return;
+                    }
+                    boolean d = buffer.done;
+                    boolean empty = i == buffer.producerIndex.get();
+                    if(d && empty) {
+                        Throwable ex = buffer.error;
+                        if(ex != null) {
+                            child.onError(ex);
+                        } else {
+                            child.onCompleted();
+                        }
+                        return;
+                    }
+                    if(empty || e == r) {
+                        break;
+                    }
+
+                    T v = buffer.values.get((int) i & buffer.mask);
+                    // the writer might have reused the slot while it was read
+                    long overwritten = buffer.producerIndex.get() - buffer.length;
+                    if(i <= overwritten) {
+                        if(overwritten < historyEnd) {
+                            i = overwritten + 1;
+                            continue;
+                        }
+                        unsubscribe();
+                        child.onError(new MissingBackpressureException("The subscriber is more than "
+                                + buffer.length + " values behind the source"));
+                        return;
+                    }
+
+                    child.onNext(v);
+                    i++;
+                    e++;
+                }
+
+                index = i;
+                if(e != 0L) {
+                    BackpressureUtils.produced(requested, e);
+                }
+
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.balamaci.rx.multicast;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the connections to the source of a shared Observable, to see the churn of subscribing and unsubscribing
+ * to the source that the grace period saved.
+ *
+ * @author sbalamaci
+ */
+public class ShareCounters {
+
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+    private final LongAdder reconnectsAvoided = new LongAdder();
+
+    /**
+     * Subscriptions to the source
+     */
+    public long connects() {
+        return connects.sum();
+    }
+
+    /**
+     * Subscriptions to the source canceled, once the grace period passed without subscribers
+     */
+    public long disconnects() {
+        return disconnects.sum();
+    }
+
+    /**
+     * Subscribers which came during the grace period and reused the connection, where share() would have
+     * unsubscribed from the source and subscribed again
+     */
+    public long reconnectsAvoided() {
+        return reconnectsAvoided.sum();
+    }
+
+    void onConnect() {
+        connects.increment();
+    }
+
+    void onDisconnect() {
+        disconnects.increment();
+    }
+
+    void onReconnectAvoided() {
+        reconnectsAvoided.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "ShareCounters{connects=" + connects() + ", disconnects=" + disconnects()
+                + ", reconnectsAvoided=" + reconnectsAvoided() + "}";
+    }
+}
@@ -0,0 +1,464 @@
+package com.balamaci.rx.parallel;
+
+import com.balamaci.rx.util.SpscArrayQueue;
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.exceptions.MissingBackpressureException;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.internal.operators.BackpressureUtils;
+import rx.plugins.RxJavaHooks;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits the source into rails and merges them back, see {@link ParallelObservable}.
+ *
+ * The source subscriber deals element n to rail (n % rails). Each rail has an input and an output queue
+ * of 'prefetch' capacity and drains input to output on its own Worker. The source is requested only as
+ * much as the slowest rail has room for, and a rail stalls when its output queue is full until the merge
+ * makes room, so memory stays bounded regardless of the speed of the downstream.
+ *
+ * @author sbalamaci
+ */
+final class OnSubscribeParallel<T> implements Observable.OnSubscribe<T> {
+
+    private static final Object NULL = new Object();
+
+    private final Observable<?> source;
+    private final int rails;
+    private final Scheduler scheduler;
+    private final int prefetch;
+    private final Func1<Object, Object> railFunction;
+    private final boolean preserveOrder;
+
+    OnSubscribeParallel(Observable<?> source, int rails, Scheduler scheduler, int prefetch,
+                        Func1<Object, Object> railFunction, boolean preserveOrder) {
+        this.source = source;
+        this.rails = rails;
+        this.scheduler = scheduler;
+        this.prefetch = prefetch;
+        this.railFunction = railFunction;
+        this.preserveOrder = preserveOrder;
+    }
+
+    @Override
+    public void call(Subscriber<? super T> child) {
+        Coordinator<T> coordinator = new Coordinator<>(child, this);
+        coordinator.init();
+        source.unsafeSubscribe(coordinator.dispatcher);
+    }
+
+    static final class Coordinator<T> implements Producer {
+
+        final Subscriber<? super T> child;
+        final Rail[] rails;
+        final Dispatcher dispatcher;
+        final boolean preserveOrder;
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        volatile boolean cancelled;
+
+        /** next rail to look at, accessed only inside drain() */
+        long emitIndex;
+
+        Coordinator(Subscriber<? super T> child, OnSubscribeParallel<T> parent) {
+            this.child = child;
+            this.preserveOrder = parent.preserveOrder;
+            this.rails = new Rail[parent.rails];
+            for(int i=0; i < rails.length; i++) {
+                rails[i] = new Rail(this, parent.scheduler.createWorker(), parent.prefetch,
+                        parent.railFunction);
+            }
+            this.dispatcher = new Dispatcher(this, parent.prefetch);
+        }
+
+        void init() {
+            child.add(dispatcher);
+            for(Rail rail : rails) {
+                child.add(rail.worker);
+            }
+            child.add(Subscriptions.create(this::cancel));
+            child.setProducer(this);
+        }
+
+        @Override
+        public void request(long n) {
+            if(n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if(n > 0) {
+                BackpressureUtils.getAndAddRequest(requested, n);
+                drain();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            dispatcher.unsubscribe();
+            for(Rail rail : rails) {
+                rail.worker.unsubscribe();
+            }
+        }
+
+        void onError(Throwable e) {
+            if(error.compareAndSet(null, e)) {
+                drain();
+            } else {
+                RxJavaHooks.onError(e);
+            }
+        }
+
+        /**
+         * Replenish the source with as many elements as the slowest rail has room for.
+         */
+        void replenish() {
+            long minConsumed = Long.MAX_VALUE;
+            for(Rail rail : rails) {
+                minConsumed = Math.min(minConsumed, rail.consumed.get());
+            }
+            dispatcher.replenish(rails.length * (minConsumed + dispatcher.prefetch));
+        }
+
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for(;;) {
+                boolean terminated = preserveOrder ? drainOrdered() : drainUnordered();
+                if(terminated) {
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private boolean drainUnordered() {
+            long r = requested.get();
+            long e = 0L;
+            int n = rails.length;
+
+            for(;;) {
+                if(checkCancelledOrError()) {
+                    return true;
+                }
+
+                boolean allDone = true;
+                for(Rail rail : rails) {
+                    if(!rail.done) {
+                        allDone = false;
+                        break;
+                    }
+                }
+
+                boolean empty = true;
+                for(int i=0; i < n && e != r; i++) {
+                    Rail rail = rails[(int) (emitIndex++ % n)];
+                    Object v = rail.output.poll();
+                    if(v == null) {
+                        continue;
+                    }
+                    empty = false;
+                    rail.resume();
+                    if(v != ParallelObservable.NONE) {
+                        child.onNext(unwrap(v));
+                        e++;
+                    }
+                }
+
+                if(empty) {
+                    if(allDone && allOutputsEmpty()) {
+                        cancel();
+                        child.onCompleted();
+                        return true;
+                    }
+                    break;
+                }
+                if(e == r) {
+                    r = produced(e);
+                    e = 0L;
+                    if(r == 0L) {
+                        break;
+                    }
+                }
+            }
+            produced(e);
+            return false;
+        }
+
+        private boolean drainOrdered() {
+            long r = requested.get();
+            long e = 0L;
+            int n = rails.length;
+
+            for(;;) {
+                if(checkCancelledOrError()) {
+                    return true;
+                }
+
+                Rail rail = rails[(int) (emitIndex % n)];
+                boolean done = rail.done;
+                Object v = rail.output.peek();
+
+                if(v == null) {
+                    // the source deals the elements round-robin, so if the rail holding the next
+                    // element is finished there are no more elements on the other rails either
+                    if(done && rail.output.isEmpty()) {
+                        cancel();
+                        child.onCompleted();
+                        return true;
+                    }
+                    break;
+                }
+
+                if(v != ParallelObservable.NONE && e == r) {
+                    r = produced(e);
+                    e = 0L;
+                    if(r == 0L) {
+                        break;
+                    }
+                }
+
+                rail.output.poll();
+                emitIndex++;
+                rail.resume();
+                if(v != ParallelObservable.NONE) {
+                    child.onNext(unwrap(v));
+                    e++;
+                }
+            }
+            produced(e);
+            return false;
+        }
+
+        private long produced(long e) {
+            if(e == 0L) {
+                return requested.get();
+            }
+            return BackpressureUtils.produced(requested, e);
+        }
+
+        private boolean allOutputsEmpty() {
+            for(Rail rail : rails) {
+                if(!rail.output.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean checkCancelledOrError() {
+            if(cancelled) {
+                clearOutputs();
+                return true;
+            }
+            Throwable ex = error.get();
+            if(ex != null) {
+                cancel();
+                clearOutputs();
+                child.onError(ex);
+                return true;
+            }
+            return false;
+        }
+
+        private void clearOutputs() {
+            for(Rail rail : rails) {
+                rail.output.clear();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private T unwrap(Object v) {
+            return v == NULL ? null : (T) v;
+        }
+    }
+
+    /**
+     * Subscribes to the source and deals the elements round-robin to the rails.
+     */
+    static final class Dispatcher extends Subscriber<Object> {
+
+        final Coordinator<?> coordinator;
+        final int prefetch;
+        final AtomicLong requestedUpstream = new AtomicLong();
+
+        volatile boolean done;
+        long index;
+
+        Dispatcher(Coordinator<?> coordinator, int prefetch) {
+            this.coordinator = coordinator;
+            this.prefetch = prefetch;
+        }
+
+        @Override
+        public void onStart() {
+            long initial = (long) coordinator.rails.length * prefetch;
+            requestedUpstream.set(initial);
+            request(initial);
+        }
+
+        @Override
+        public void onNext(Object t) {
+            if(done) {
+                return;
+            }
+            Rail[] rails = coordinator.rails;
+            Rail rail = rails[(int) (index++ % rails.length)];
+            if(!rail.input.offer(t == null ? NULL : t)) {
+                unsubscribe();
+                onError(new MissingBackpressureException("Rail queue is full"));
+                return;
+            }
+            rail.schedule();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            coordinator.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(done) {
+                return;
+            }
+            done = true;
+            for(Rail rail : coordinator.rails) {
+                rail.schedule();
+            }
+        }
+
+        /**
+         * @param target the total number of source elements the rails have room for
+         */
+        void replenish(long target) {
+            for(;;) {
+                long current = requestedUpstream.get();
+                if(target <= current) {
+                    return;
+                }
+                if(requestedUpstream.compareAndSet(current, target)) {
+                    request(target - current);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the rail function for the elements of one rail on a single Worker.
+     */
+    static final class Rail implements Action0 {
+
+        final Coordinator<?> coordinator;
+        final Scheduler.Worker worker;
+        final Func1<Object, Object> railFunction;
+        final SpscArrayQueue<Object> input;
+        final SpscArrayQueue<Object> output;
+        final int limit;
+
+        final AtomicInteger wip = new AtomicInteger();
+        final AtomicBoolean stalled = new AtomicBoolean();
+        final AtomicLong consumed = new AtomicLong();
+        volatile boolean done;
+
+        Rail(Coordinator<?> coordinator, Scheduler.Worker worker, int prefetch,
+             Func1<Object, Object> railFunction) {
+            this.coordinator = coordinator;
+            this.worker = worker;
+            this.railFunction = railFunction;
+            this.input = new SpscArrayQueue<>(prefetch);
+            this.output = new SpscArrayQueue<>(prefetch);
+            this.limit = Math.max(1, prefetch - (prefetch >> 2));
+        }
+
+        void schedule() {
+            if(wip.getAndIncrement() == 0) {
+                worker.schedule(this);
+            }
+        }
+
+        /**
+         * Called by the merge after it took an element from the output queue.
+         */
+        void resume() {
+            if(stalled.get() && stalled.compareAndSet(true, false)) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void call() {
+            int missed = 1;
+            long sinceReplenish = 0L;
+            for(;;) {
+                for(;;) {
+                    if(coordinator.cancelled) {
+                        input.clear();
+                        return;
+                    }
+                    if(output.isFull()) {
+                        stalled.set(true);
+                        if(output.isFull()) {
+                            break;
+                        }
+                        stalled.set(false);
+                    }
+
+                    boolean sourceDone = coordinator.dispatcher.done;
+                    Object v = input.poll();
+                    if(v == null) {
+                        if(sourceDone && coordinator.error.get() == null) {
+                            done = true;
+                        }
+                        break;
+                    }
+
+                    Object result;
+                    try {
+                        result = railFunction.call(v == NULL ? null : v);
+                    } catch (Throwable ex) {
+                        Exceptions.throwIfFatal(ex);
+                        coordinator.dispatcher.unsubscribe();
+                        coordinator.onError(ex);
+                        return;
+                    }
+                    output.offer(result == null ? NULL : result);
+
+                    consumed.lazySet(consumed.get() + 1);
+                    if(++sinceReplenish == limit) {
+                        sinceReplenish = 0L;
+                        coordinator.replenish();
+                    }
+                }
+
+                coordinator.replenish();
+                coordinator.drain();
+
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+}
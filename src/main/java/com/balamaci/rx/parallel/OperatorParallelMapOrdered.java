@@ -0,0 +1,236 @@
+package com.balamaci.rx.parallel;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Func1;
+import rx.internal.operators.BackpressureUtils;
+import rx.plugins.RxJavaHooks;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs the mapper for up to 'maxInFlight' elements concurrently and emits the results in source order.
+ *
+ * Element n is mapped on Worker (n % maxInFlight) and its result is stored in slot (n % maxInFlight) of a
+ * ring buffer. The source is never requested more than 'maxInFlight' elements ahead of the last emitted
+ * result, so a slot is always free by the time the element for it arrives and the memory stays flat
+ * no matter how long the source is.
+ *
+ * @author sbalamaci
+ */
+final class OperatorParallelMapOrdered<T, R> implements Observable.Operator<R, T> {
+
+    private static final Object NULL = new Object();
+
+    private final Func1<? super T, ? extends R> mapper;
+    private final Scheduler scheduler;
+    private final int maxInFlight;
+
+    OperatorParallelMapOrdered(Func1<? super T, ? extends R> mapper, Scheduler scheduler, int maxInFlight) {
+        if(maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight > 0 required but it was " + maxInFlight);
+        }
+        this.mapper = mapper;
+        this.scheduler = scheduler;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public Subscriber<? super T> call(Subscriber<? super R> child) {
+        ParallelMapSubscriber<T, R> parent = new ParallelMapSubscriber<>(child, mapper, scheduler, maxInFlight);
+        parent.init();
+        return parent;
+    }
+
+    static final class ParallelMapSubscriber<T, R> extends Subscriber<T> {
+
+        final Subscriber<? super R> child;
+        final Func1<? super T, ? extends R> mapper;
+        final Scheduler.Worker[] workers;
+        final AtomicReferenceArray<Object> window;
+        final int limit;
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        /** number of source elements received, written only by onNext */
+        volatile long received;
+        volatile boolean done;
+        volatile boolean cancelled;
+
+        /** accessed only inside drain() */
+        long emitIndex;
+        int consumed;
+
+        ParallelMapSubscriber(Subscriber<? super R> child, Func1<? super T, ? extends R> mapper,
+                              Scheduler scheduler, int maxInFlight) {
+            this.child = child;
+            this.mapper = mapper;
+            this.window = new AtomicReferenceArray<>(maxInFlight);
+            this.limit = Math.max(1, maxInFlight - (maxInFlight >> 2));
+            this.workers = new Scheduler.Worker[maxInFlight];
+            for(int i=0; i < maxInFlight; i++) {
+                workers[i] = scheduler.createWorker();
+            }
+        }
+
+        void init() {
+            child.add(this);
+            for(Scheduler.Worker worker : workers) {
+                child.add(worker);
+            }
+            child.add(Subscriptions.create(() -> cancelled = true));
+            child.setProducer(this::requestFromChild);
+        }
+
+        @Override
+        public void onStart() {
+            request(workers.length);
+        }
+
+        @Override
+        public void onNext(T t) {
+            if(done) {
+                return;
+            }
+            long index = received;
+            int slot = (int) (index % workers.length);
+            received = index + 1;
+
+            workers[slot].schedule(() -> {
+                if(cancelled) {
+                    return;
+                }
+                try {
+                    R result = mapper.call(t);
+                    window.lazySet(slot, result == null ? NULL : result);
+                } catch (Throwable ex) {
+                    Exceptions.throwIfFatal(ex);
+                    unsubscribe();
+                    signalError(ex);
+                    return;
+                }
+                drain();
+            });
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            signalError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(done) {
+                return;
+            }
+            done = true;
+            drain();
+        }
+
+        void requestFromChild(long n) {
+            if(n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if(n > 0) {
+                BackpressureUtils.getAndAddRequest(requested, n);
+                drain();
+            }
+        }
+
+        void signalError(Throwable e) {
+            if(error.compareAndSet(null, e)) {
+                drain();
+            } else {
+                RxJavaHooks.onError(e);
+            }
+        }
+
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            int n = workers.length;
+            for(;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for(;;) {
+                    if(cancelled) {
+                        return;
+                    }
+                    Throwable ex = error.get();
+                    if(ex != null) {
+                        cancel();
+                        child.onError(ex);
+                        return;
+                    }
+
+                    boolean d = done;
+                    int slot = (int) (emitIndex % n);
+                    Object v = window.get(slot);
+
+                    if(v == null) {
+                        if(d && emitIndex == received) {
+                            cancel();
+                            child.onCompleted();
+                            return;
+                        }
+                        break;
+                    }
+                    if(e == r) {
+                        break;
+                    }
+
+                    window.lazySet(slot, null);
+                    emitIndex++;
+                    child.onNext(unwrap(v));
+                    e++;
+
+                    if(++consumed == limit) {
+                        consumed = 0;
+                        requestMore(limit);
+                    }
+                }
+
+                if(e != 0L) {
+                    BackpressureUtils.produced(requested, e);
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private void requestMore(long n) {
+            request(n);
+        }
+
+        private void cancel() {
+            cancelled = true;
+            unsubscribe();
+            for(Scheduler.Worker worker : workers) {
+                worker.unsubscribe();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private R unwrap(Object v) {
+            return v == NULL ? null : (R) v;
+        }
+    }
+}
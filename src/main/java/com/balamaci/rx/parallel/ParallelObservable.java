@@ -0,0 +1,113 @@
+package com.balamaci.rx.parallel;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func1;
+
+/**
+ * A stream split into a fixed number of 'rails' which are processed in parallel.
+ *
+ * Instead of the flatMap(val -> Observable.just(val).subscribeOn(scheduler)) pattern which creates an
+ * Observable, a Worker and a scheduling hop for every element, the source elements are dealt round-robin
+ * to the rails. Every rail is backed by a bounded queue and a single Worker of the Scheduler which runs
+ * the map/filter stages for all the elements of that rail.
+ *
+ * sequential() merges the rails back into an Observable, either in the order the rails produce the
+ * results or - because the elements are dealt round-robin - in the original order of the source.
+ *
+ * <pre>
+ * ParallelObservable.parallel(Observable.range(1, 10), 4, Schedulers.computation())
+ *          .map(val -> intenseCalculation(val))
+ *          .sequential()
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class ParallelObservable<T> {
+
+    public static final int DEFAULT_PREFETCH = 128;
+
+    /**
+     * Marks an element that was removed by filter(), so the order preserving merge still
+     * knows it has to move on to the next rail.
+     */
+    static final Object NONE = new Object();
+
+    private final Observable<?> source;
+    private final int rails;
+    private final Scheduler scheduler;
+    private final int prefetch;
+    private final Func1<Object, Object> railFunction;
+
+    private ParallelObservable(Observable<?> source, int rails, Scheduler scheduler, int prefetch,
+                               Func1<Object, Object> railFunction) {
+        this.source = source;
+        this.rails = rails;
+        this.scheduler = scheduler;
+        this.prefetch = prefetch;
+        this.railFunction = railFunction;
+    }
+
+    public static <T> ParallelObservable<T> parallel(Observable<T> source, int rails, Scheduler scheduler) {
+        return parallel(source, rails, scheduler, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * @param rails number of rails, each rail gets a Worker from the scheduler
+     * @param prefetch the capacity of the bounded queues in front and after every rail
+     */
+    public static <T> ParallelObservable<T> parallel(Observable<T> source, int rails, Scheduler scheduler,
+                                                     int prefetch) {
+        if(rails <= 0) {
+            throw new IllegalArgumentException("rails > 0 required but it was " + rails);
+        }
+        if(prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        return new ParallelObservable<>(source, rails, scheduler, prefetch, val -> val);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> ParallelObservable<R> map(Func1<? super T, ? extends R> mapper) {
+        Func1<Object, Object> previous = railFunction;
+        return new ParallelObservable<>(source, rails, scheduler, prefetch, val -> {
+            Object prev = previous.call(val);
+            if(prev == NONE) {
+                return NONE;
+            }
+            return mapper.call((T) prev);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public ParallelObservable<T> filter(Func1<? super T, Boolean> predicate) {
+        Func1<Object, Object> previous = railFunction;
+        return new ParallelObservable<>(source, rails, scheduler, prefetch, val -> {
+            Object prev = previous.call(val);
+            if(prev == NONE || !predicate.call((T) prev)) {
+                return NONE;
+            }
+            return prev;
+        });
+    }
+
+    /**
+     * Merges the rails emitting the results as soon as any of the rails produced them.
+     */
+    public Observable<T> sequential() {
+        return sequential(false);
+    }
+
+    /**
+     * @param preserveOrder if true the results are emitted in the order of the source elements,
+     *                      a slow element holds back the results from the other rails until it's done
+     */
+    public Observable<T> sequential(boolean preserveOrder) {
+        return Observable.create(new OnSubscribeParallel<>(source, rails, scheduler, prefetch,
+                railFunction, preserveOrder));
+    }
+
+    public int rails() {
+        return rails;
+    }
+}
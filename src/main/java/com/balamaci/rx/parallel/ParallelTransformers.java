@@ -0,0 +1,34 @@
+package com.balamaci.rx.parallel;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func1;
+
+/**
+ * Parallel operators which plug into a regular Observable chain through compose()
+ *
+ * <pre>
+ * Observable.range(1, 10)
+ *          .compose(ParallelTransformers.parallelMapOrdered(val -> intenseCalculation(val),
+ *                                                           Schedulers.computation(), 4))
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class ParallelTransformers {
+
+    private ParallelTransformers() {
+    }
+
+    /**
+     * Like concatMapEager(val -> Observable.fromCallable(() -> mapper.call(val)).subscribeOn(scheduler))
+     * it runs the mapper concurrently for up to 'maxInFlight' elements and emits the results in the
+     * order of the source elements. Instead of buffering the eagerly subscribed inner Observables,
+     * the results wait in a ring buffer of 'maxInFlight' slots, so the memory doesn't grow with the source.
+     */
+    public static <T, R> Observable.Transformer<T, R> parallelMapOrdered(Func1<? super T, ? extends R> mapper,
+                                                                         Scheduler scheduler, int maxInFlight) {
+        OperatorParallelMapOrdered<T, R> operator = new OperatorParallelMapOrdered<>(mapper, scheduler, maxInFlight);
+        return source -> source.lift(operator);
+    }
+}
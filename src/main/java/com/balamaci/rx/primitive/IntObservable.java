@@ -0,0 +1,753 @@
+package com.balamaci.rx.primitive;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.exceptions.Exceptions;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.internal.operators.BackpressureUtils;
+import rx.plugins.RxJavaHooks;
+import rx.subscriptions.Subscriptions;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Stream of primitive ints which, unlike Observable&lt;Integer&gt;, doesn't box the values into Integer
+ * objects as they pass from one operator to the next.
+ *
+ * Backpressure works like for Observable, the subscriber requests values through a {@link PrimitiveSubscription}.
+ * The values are boxed only when bridging back to an Observable with boxed() / mapToObj().
+ *
+ * <pre>
+ * IntObservable.range(1, 100)
+ *          .map(val -> val * 2)
+ *          .filter(val -> val % 3 == 0)
+ *          .sum()
+ *          .subscribe(sum -> log.info("Sum {}", sum));
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public abstract class IntObservable {
+
+    protected abstract void subscribeActual(IntSubscriber subscriber);
+
+    public final void subscribe(IntSubscriber subscriber) {
+        subscribeActual(subscriber);
+    }
+
+    public final Subscription subscribe(IntConsumer onNext) {
+        return subscribe(onNext, RxJavaHooks::onError, () -> { });
+    }
+
+    /**
+     * Requests all the values
+     */
+    public final Subscription subscribe(IntConsumer onNext, Action1<Throwable> onError, Action0 onCompleted) {
+        LambdaSubscriber subscriber = new LambdaSubscriber(onNext, onError, onCompleted);
+        subscribe(subscriber);
+        return subscriber;
+    }
+
+    // Sources
+    //========================================================
+
+    public static IntObservable range(int start, int count) {
+        if(count < 0) {
+            throw new IllegalArgumentException("count >= 0 required but it was " + count);
+        }
+        if((long) start + count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Integer overflow");
+        }
+        return new IntObservable() {
+            @Override
+            protected void subscribeActual(IntSubscriber subscriber) {
+                subscriber.onSubscribe(new IndexedSubscription(subscriber, start, start + count) {
+                    @Override
+                    int valueAt(int index) {
+                        return index;
+                    }
+                });
+            }
+        };
+    }
+
+    public static IntObservable fromArray(int... values) {
+        return new IntObservable() {
+            @Override
+            protected void subscribeActual(IntSubscriber subscriber) {
+                subscriber.onSubscribe(new IndexedSubscription(subscriber, 0, values.length) {
+                    @Override
+                    int valueAt(int index) {
+                        return values[index];
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Unboxes the values of an Observable, forwarding the requests to it
+     */
+    public static IntObservable fromObservable(Observable<Integer> source) {
+        return new IntObservable() {
+            @Override
+            protected void subscribeActual(IntSubscriber subscriber) {
+                UnboxingSubscriber parent = new UnboxingSubscriber(subscriber);
+                subscriber.onSubscribe(new PrimitiveSubscription() {
+                    @Override
+                    public void request(long n) {
+                        parent.requestMore(n);
+                    }
+
+                    @Override
+                    public void cancel() {
+                        parent.unsubscribe();
+                    }
+                });
+                source.unsafeSubscribe(parent);
+            }
+        };
+    }
+
+    // Operators
+    //========================================================
+
+    public final IntObservable map(IntUnaryOperator mapper) {
+        IntObservable source = this;
+        return new IntObservable() {
+            @Override
+            protected void subscribeActual(IntSubscriber subscriber) {
+                source.subscribe(new ForwardingSubscriber(subscriber) {
+                    @Override
+                    public void onNext(int value) {
+                        if(done) {
+                            return;
+                        }
+                        int result;
+                        try {
+                            result = mapper.applyAsInt(value);
+                        } catch (Throwable ex) {
+                            fail(ex);
+                            return;
+                        }
+                        actual.onNext(result);
+                    }
+                });
+            }
+        };
+    }
+
+    public final IntObservable filter(IntPredicate predicate) {
+        IntObservable source = this;
+        return new IntObservable() {
+            @Override
+            protected void subscribeActual(IntSubscriber subscriber) {
+                source.subscribe(new ForwardingSubscriber(subscriber) {
+                    @Override
+                    public void onNext(int value) {
+                        if(done) {
+                            return;
+                        }
+                        boolean pass;
+                        try {
+                            pass = predicate.test(value);
+                        } catch (Throwable ex) {
+                            fail(ex);
+                            return;
+                        }
+                        if(pass) {
+                            actual.onNext(value);
+                        } else {
+                            upstream.request(1); // replaces the value which was requested but not delivered
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    public final LongObservable mapToLong(IntToLongFunction mapper) {
+        IntObservable source = this;
+        return new LongObservable() {
+            @Override
+            protected void subscribeActual(LongSubscriber subscriber) {
+                source.subscribe(new IntSubscriber() {
+                    PrimitiveSubscription upstream;
+                    boolean done;
+
+                    @Override
+                    public void onSubscribe(PrimitiveSubscription subscription) {
+                        upstream = subscription;
+                        subscriber.onSubscribe(subscription);
+                    }
+
+                    @Override
+                    public void onNext(int value) {
+                        if(done) {
+                            return;
+                        }
+                        long result;
+                        try {
+                            result = mapper.applyAsLong(value);
+                        } catch (Throwable ex) {
+                            Exceptions.throwIfFatal(ex);
+                            done = true;
+                            upstream.cancel();
+                            subscriber.onError(ex);
+                            return;
+                        }
+                        subscriber.onNext(result);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        if(!done) {
+                            done = true;
+                            subscriber.onError(e);
+                        }
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        if(!done) {
+                            done = true;
+                            subscriber.onCompleted();
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Emits a single value, the result of applying the reducer to all the values starting from identity
+     */
+    public final IntObservable reduce(int identity, IntBinaryOperator reducer) {
+        IntObservable source = this;
+        return new IntObservable() {
+            @Override
+            protected void subscribeActual(IntSubscriber subscriber) {
+                source.subscribe(new ReduceSubscriber(subscriber, identity, reducer));
+            }
+        };
+    }
+
+    /**
+     * Emits a single value, the sum of all the values as a long so it doesn't overflow
+     */
+    public final LongObservable sum() {
+        return mapToLong(value -> value).reduce(0L, Long::sum);
+    }
+
+    /**
+     * Emits the values in int[] chunks of 'size', the last one possibly shorter.
+     * One array is allocated for each chunk, none for the values.
+     */
+    public final Observable<int[]> buffer(int size) {
+        if(size <= 0) {
+            throw new IllegalArgumentException("size > 0 required but it was " + size);
+        }
+        IntObservable source = this;
+        return Observable.create(child -> source.subscribe(new BufferSubscriber(child, size)));
+    }
+
+    /**
+     * Splits the values into windows of 'size' values, each window being an IntObservable.
+     * The values of a window are kept in a chunk like for buffer(), so each window can be subscribed
+     * multiple times.
+     */
+    public final Observable<IntObservable> window(int size) {
+        return buffer(size).map(IntObservable::fromArray);
+    }
+
+    /**
+     * Bridges back to Observable, boxing each value
+     */
+    public final Observable<Integer> boxed() {
+        return mapToObj(Integer::valueOf);
+    }
+
+    /**
+     * Bridges back to Observable, the requests of the Observable's subscriber are forwarded upstream
+     */
+    public final <T> Observable<T> mapToObj(IntFunction<? extends T> mapper) {
+        IntObservable source = this;
+        return Observable.create(child -> source.subscribe(new IntSubscriber() {
+            PrimitiveSubscription upstream;
+            boolean done;
+
+            @Override
+            public void onSubscribe(PrimitiveSubscription subscription) {
+                upstream = subscription;
+                child.add(Subscriptions.create(subscription::cancel));
+                child.setProducer(subscription::request);
+            }
+
+            @Override
+            public void onNext(int value) {
+                if(done) {
+                    return;
+                }
+                T result;
+                try {
+                    result = mapper.apply(value);
+                } catch (Throwable ex) {
+                    Exceptions.throwIfFatal(ex);
+                    done = true;
+                    upstream.cancel();
+                    child.onError(ex);
+                    return;
+                }
+                child.onNext(result);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                if(!done) {
+                    done = true;
+                    child.onError(e);
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+                if(!done) {
+                    done = true;
+                    child.onCompleted();
+                }
+            }
+        }));
+    }
+
+    // Implementation
+    //========================================================
+
+    /**
+     * Emits the values between start(inclusive) and end(exclusive) of an index, honoring the requests
+     */
+    abstract static class IndexedSubscription extends AtomicLong implements PrimitiveSubscription {
+
+        final IntSubscriber actual;
+        final int end;
+        int index;
+        volatile boolean cancelled;
+
+        IndexedSubscription(IntSubscriber actual, int start, int end) {
+            this.actual = actual;
+            this.index = start;
+            this.end = end;
+        }
+
+        abstract int valueAt(int index);
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                return;
+            }
+            if(BackpressureUtils.getAndAddRequest(this, n) != 0L) {
+                return; // the thread already emitting will see the new request
+            }
+            if(n == Long.MAX_VALUE) {
+                fastPath();
+            } else {
+                slowPath(n);
+            }
+        }
+
+        private void fastPath() {
+            for(int i = index; i < end; i++) {
+                if(cancelled) {
+                    return;
+                }
+                actual.onNext(valueAt(i));
+            }
+            if(!cancelled) {
+                actual.onCompleted();
+            }
+        }
+
+        private void slowPath(long r) {
+            int i = index;
+            long e = 0L;
+            for(;;) {
+                while(e != r && i != end) {
+                    if(cancelled) {
+                        return;
+                    }
+                    actual.onNext(valueAt(i));
+                    i++;
+                    e++;
+                }
+                if(i == end) {
+                    if(!cancelled) {
+                        actual.onCompleted();
+                    }
+                    return;
+                }
+                r = get();
+                if(e == r) {
+                    index = i;
+                    r = addAndGet(-e);
+                    if(r == 0L) {
+                        return;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Base for the operators which pass the values one by one, forwarding the requests upstream
+     */
+    abstract static class ForwardingSubscriber implements IntSubscriber, PrimitiveSubscription {
+
+        final IntSubscriber actual;
+        PrimitiveSubscription upstream;
+        boolean done;
+
+        ForwardingSubscriber(IntSubscriber actual) {
+            this.actual = actual;
+        }
+
+        @Override
+        public void onSubscribe(PrimitiveSubscription subscription) {
+            upstream = subscription;
+            actual.onSubscribe(this);
+        }
+
+        void fail(Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            done = true;
+            upstream.cancel();
+            actual.onError(ex);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            actual.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(!done) {
+                done = true;
+                actual.onCompleted();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            upstream.cancel();
+        }
+    }
+
+    static final class ReduceSubscriber implements IntSubscriber, PrimitiveSubscription {
+
+        static final int NO_REQUEST_NO_VALUE = 0;
+        static final int HAS_REQUEST_NO_VALUE = 1;
+        static final int NO_REQUEST_HAS_VALUE = 2;
+        static final int DONE = 3;
+
+        final IntSubscriber actual;
+        final IntBinaryOperator reducer;
+        final AtomicInteger state = new AtomicInteger();
+        PrimitiveSubscription upstream;
+        int accumulator;
+        boolean done;
+        volatile boolean cancelled;
+
+        ReduceSubscriber(IntSubscriber actual, int identity, IntBinaryOperator reducer) {
+            this.actual = actual;
+            this.accumulator = identity;
+            this.reducer = reducer;
+        }
+
+        @Override
+        public void onSubscribe(PrimitiveSubscription subscription) {
+            upstream = subscription;
+            actual.onSubscribe(this);
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(int value) {
+            if(done) {
+                return;
+            }
+            try {
+                accumulator = reducer.applyAsInt(accumulator, value);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                done = true;
+                upstream.cancel();
+                actual.onError(ex);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            actual.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(done) {
+                return;
+            }
+            done = true;
+            for(;;) {
+                int s = state.get();
+                if(s == HAS_REQUEST_NO_VALUE) {
+                    if(state.compareAndSet(HAS_REQUEST_NO_VALUE, DONE)) {
+                        emit();
+                    }
+                    return;
+                }
+                if(state.compareAndSet(NO_REQUEST_NO_VALUE, NO_REQUEST_HAS_VALUE)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                return;
+            }
+            for(;;) {
+                int s = state.get();
+                if(s == NO_REQUEST_HAS_VALUE) {
+                    if(state.compareAndSet(NO_REQUEST_HAS_VALUE, DONE)) {
+                        emit();
+                    }
+                    return;
+                }
+                if(s != NO_REQUEST_NO_VALUE || state.compareAndSet(NO_REQUEST_NO_VALUE, HAS_REQUEST_NO_VALUE)) {
+                    return;
+                }
+            }
+        }
+
+        private void emit() {
+            if(cancelled) {
+                return;
+            }
+            actual.onNext(accumulator);
+            if(!cancelled) {
+                actual.onCompleted();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            upstream.cancel();
+        }
+    }
+
+    static final class BufferSubscriber implements IntSubscriber {
+
+        final Subscriber<? super int[]> child;
+        final int size;
+        int[] chunk;
+        int count;
+        boolean done;
+
+        BufferSubscriber(Subscriber<? super int[]> child, int size) {
+            this.child = child;
+            this.size = size;
+        }
+
+        @Override
+        public void onSubscribe(PrimitiveSubscription subscription) {
+            child.add(Subscriptions.create(subscription::cancel));
+            child.setProducer(n -> {
+                if(n > 0) {
+                    // n chunks need n * size values
+                    long values = n >= Long.MAX_VALUE / size ? Long.MAX_VALUE : n * size;
+                    subscription.request(values);
+                }
+            });
+        }
+
+        @Override
+        public void onNext(int value) {
+            if(done) {
+                return;
+            }
+            int[] c = chunk;
+            if(c == null) {
+                c = new int[size];
+                chunk = c;
+            }
+            c[count++] = value;
+            if(count == size) {
+                chunk = null;
+                count = 0;
+                child.onNext(c);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            chunk = null;
+            child.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(done) {
+                return;
+            }
+            done = true;
+            int[] c = chunk;
+            if(c != null) {
+                chunk = null;
+                child.onNext(Arrays.copyOf(c, count));
+            }
+            child.onCompleted();
+        }
+    }
+
+    static final class UnboxingSubscriber extends Subscriber<Integer> {
+
+        final IntSubscriber actual;
+
+        UnboxingSubscriber(IntSubscriber actual) {
+            this.actual = actual;
+        }
+
+        @Override
+        public void onStart() {
+            request(0); // nothing until the IntSubscriber requests
+        }
+
+        @Override
+        public void onNext(Integer value) {
+            actual.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            actual.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            actual.onCompleted();
+        }
+
+        void requestMore(long n) {
+            request(n);
+        }
+    }
+
+    static final class LambdaSubscriber implements IntSubscriber, Subscription {
+
+        final IntConsumer onNext;
+        final Action1<Throwable> onError;
+        final Action0 onCompleted;
+        volatile PrimitiveSubscription upstream;
+        volatile boolean unsubscribed;
+        boolean done;
+
+        LambdaSubscriber(IntConsumer onNext, Action1<Throwable> onError, Action0 onCompleted) {
+            this.onNext = onNext;
+            this.onError = onError;
+            this.onCompleted = onCompleted;
+        }
+
+        @Override
+        public void onSubscribe(PrimitiveSubscription subscription) {
+            upstream = subscription;
+            if(unsubscribed) {
+                subscription.cancel();
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(int value) {
+            if(done) {
+                return;
+            }
+            try {
+                onNext.accept(value);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                unsubscribe();
+                onError(ex);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            onError.call(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(!done) {
+                done = true;
+                onCompleted.call();
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            unsubscribed = true;
+            PrimitiveSubscription s = upstream;
+            if(s != null) {
+                s.cancel();
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return unsubscribed;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.balamaci.rx.primitive;
+
+/**
+ * Receives the values of an {@link IntObservable} as primitive ints.
+ *
+ * onSubscribe is called first, and no value is emitted before the subscriber requested it
+ * through the received {@link PrimitiveSubscription}.
+ *
+ * @author sbalamaci
+ */
+public interface IntSubscriber {
+
+    void onSubscribe(PrimitiveSubscription subscription);
+
+    void onNext(int value);
+
+    void onError(Throwable e);
+
+    void onCompleted();
+}
@@ -0,0 +1,745 @@
+package com.balamaci.rx.primitive;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.exceptions.Exceptions;
+import rx.exceptions.MissingBackpressureException;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.internal.operators.BackpressureUtils;
+import rx.plugins.RxJavaHooks;
+import rx.subscriptions.Subscriptions;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Stream of primitive longs which, unlike Observable&lt;Long&gt;, doesn't box the values into Long
+ * objects as they pass from one operator to the next.
+ *
+ * Backpressure works like for Observable, the subscriber requests values through a {@link PrimitiveSubscription}.
+ * The values are boxed only when bridging back to an Observable with boxed() / mapToObj().
+ *
+ * <pre>
+ * LongObservable.range(1, 100)
+ *          .map(val -> val * 2)
+ *          .filter(val -> val % 3 == 0)
+ *          .sum()
+ *          .subscribe(sum -> log.info("Sum {}", sum));
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public abstract class LongObservable {
+
+    protected abstract void subscribeActual(LongSubscriber subscriber);
+
+    public final void subscribe(LongSubscriber subscriber) {
+        subscribeActual(subscriber);
+    }
+
+    public final Subscription subscribe(LongConsumer onNext) {
+        return subscribe(onNext, RxJavaHooks::onError, () -> { });
+    }
+
+    /**
+     * Requests all the values
+     */
+    public final Subscription subscribe(LongConsumer onNext, Action1<Throwable> onError, Action0 onCompleted) {
+        LambdaSubscriber subscriber = new LambdaSubscriber(onNext, onError, onCompleted);
+        subscribe(subscriber);
+        return subscriber;
+    }
+
+    // Sources
+    //========================================================
+
+    public static LongObservable range(long start, long count) {
+        if(count < 0) {
+            throw new IllegalArgumentException("count >= 0 required but it was " + count);
+        }
+        if(start > Long.MAX_VALUE - count) {
+            throw new IllegalArgumentException("Long overflow");
+        }
+        return new LongObservable() {
+            @Override
+            protected void subscribeActual(LongSubscriber subscriber) {
+                subscriber.onSubscribe(new IndexedSubscription(subscriber, start, start + count) {
+                    @Override
+                    long valueAt(long index) {
+                        return index;
+                    }
+                });
+            }
+        };
+    }
+
+    public static LongObservable fromArray(long... values) {
+        return new LongObservable() {
+            @Override
+            protected void subscribeActual(LongSubscriber subscriber) {
+                subscriber.onSubscribe(new IndexedSubscription(subscriber, 0, values.length) {
+                    @Override
+                    long valueAt(long index) {
+                        return values[(int) index];
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Unboxes the values of an Observable, forwarding the requests to it
+     */
+    public static LongObservable fromObservable(Observable<Long> source) {
+        return new LongObservable() {
+            @Override
+            protected void subscribeActual(LongSubscriber subscriber) {
+                UnboxingSubscriber parent = new UnboxingSubscriber(subscriber);
+                subscriber.onSubscribe(new PrimitiveSubscription() {
+                    @Override
+                    public void request(long n) {
+                        parent.requestMore(n);
+                    }
+
+                    @Override
+                    public void cancel() {
+                        parent.unsubscribe();
+                    }
+                });
+                source.unsafeSubscribe(parent);
+            }
+        };
+    }
+
+    /**
+     * Emits 0, 1, 2... every 'period' on the scheduler.
+     * Time doesn't wait for the subscriber, so a tick which wasn't requested fails the stream
+     * with a MissingBackpressureException.
+     */
+    public static LongObservable interval(long period, TimeUnit unit, Scheduler scheduler) {
+        return new LongObservable() {
+            @Override
+            protected void subscribeActual(LongSubscriber subscriber) {
+                Scheduler.Worker worker = scheduler.createWorker();
+                AtomicLong requested = new AtomicLong();
+                subscriber.onSubscribe(new PrimitiveSubscription() {
+                    @Override
+                    public void request(long n) {
+                        if(n > 0) {
+                            BackpressureUtils.getAndAddRequest(requested, n);
+                        }
+                    }
+
+                    @Override
+                    public void cancel() {
+                        worker.unsubscribe();
+                    }
+                });
+                worker.schedulePeriodically(new Action0() {
+                    long count;
+
+                    @Override
+                    public void call() {
+                        if(requested.get() == 0L) {
+                            worker.unsubscribe();
+                            subscriber.onError(new MissingBackpressureException("Could not emit tick " + count
+                                    + " due to lack of requests"));
+                            return;
+                        }
+                        subscriber.onNext(count++);
+                        BackpressureUtils.produced(requested, 1);
+                    }
+                }, period, period, unit);
+            }
+        };
+    }
+
+    // Operators
+    //========================================================
+
+    public final LongObservable map(LongUnaryOperator mapper) {
+        LongObservable source = this;
+        return new LongObservable() {
+            @Override
+            protected void subscribeActual(LongSubscriber subscriber) {
+                source.subscribe(new ForwardingSubscriber(subscriber) {
+                    @Override
+                    public void onNext(long value) {
+                        if(done) {
+                            return;
+                        }
+                        long result;
+                        try {
+                            result = mapper.applyAsLong(value);
+                        } catch (Throwable ex) {
+                            fail(ex);
+                            return;
+                        }
+                        actual.onNext(result);
+                    }
+                });
+            }
+        };
+    }
+
+    public final LongObservable filter(LongPredicate predicate) {
+        LongObservable source = this;
+        return new LongObservable() {
+            @Override
+            protected void subscribeActual(LongSubscriber subscriber) {
+                source.subscribe(new ForwardingSubscriber(subscriber) {
+                    @Override
+                    public void onNext(long value) {
+                        if(done) {
+                            return;
+                        }
+                        boolean pass;
+                        try {
+                            pass = predicate.test(value);
+                        } catch (Throwable ex) {
+                            fail(ex);
+                            return;
+                        }
+                        if(pass) {
+                            actual.onNext(value);
+                        } else {
+                            upstream.request(1); // replaces the value which was requested but not delivered
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Emits a single value, the result of applying the reducer to all the values starting from identity
+     */
+    public final LongObservable reduce(long identity, LongBinaryOperator reducer) {
+        LongObservable source = this;
+        return new LongObservable() {
+            @Override
+            protected void subscribeActual(LongSubscriber subscriber) {
+                source.subscribe(new ReduceSubscriber(subscriber, identity, reducer));
+            }
+        };
+    }
+
+    /**
+     * Emits a single value, the sum of all the values
+     */
+    public final LongObservable sum() {
+        return reduce(0L, Long::sum);
+    }
+
+    /**
+     * Emits the values in long[] chunks of 'size', the last one possibly shorter.
+     * One array is allocated for each chunk, none for the values.
+     */
+    public final Observable<long[]> buffer(int size) {
+        if(size <= 0) {
+            throw new IllegalArgumentException("size > 0 required but it was " + size);
+        }
+        LongObservable source = this;
+        return Observable.create(child -> source.subscribe(new BufferSubscriber(child, size)));
+    }
+
+    /**
+     * Splits the values into windows of 'size' values, each window being a LongObservable.
+     * The values of a window are kept in a chunk like for buffer(), so each window can be subscribed
+     * multiple times.
+     */
+    public final Observable<LongObservable> window(int size) {
+        return buffer(size).map(LongObservable::fromArray);
+    }
+
+    /**
+     * Bridges back to Observable, boxing each value
+     */
+    public final Observable<Long> boxed() {
+        return mapToObj(Long::valueOf);
+    }
+
+    /**
+     * Bridges back to Observable, the requests of the Observable's subscriber are forwarded upstream
+     */
+    public final <T> Observable<T> mapToObj(LongFunction<? extends T> mapper) {
+        LongObservable source = this;
+        return Observable.create(child -> source.subscribe(new LongSubscriber() {
+            PrimitiveSubscription upstream;
+            boolean done;
+
+            @Override
+            public void onSubscribe(PrimitiveSubscription subscription) {
+                upstream = subscription;
+                child.add(Subscriptions.create(subscription::cancel));
+                child.setProducer(subscription::request);
+            }
+
+            @Override
+            public void onNext(long value) {
+                if(done) {
+                    return;
+                }
+                T result;
+                try {
+                    result = mapper.apply(value);
+                } catch (Throwable ex) {
+                    Exceptions.throwIfFatal(ex);
+                    done = true;
+                    upstream.cancel();
+                    child.onError(ex);
+                    return;
+                }
+                child.onNext(result);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                if(!done) {
+                    done = true;
+                    child.onError(e);
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+                if(!done) {
+                    done = true;
+                    child.onCompleted();
+                }
+            }
+        }));
+    }
+
+    // Implementation
+    //========================================================
+
+    /**
+     * Emits the values between start(inclusive) and end(exclusive) of an index, honoring the requests
+     */
+    abstract static class IndexedSubscription extends AtomicLong implements PrimitiveSubscription {
+
+        final LongSubscriber actual;
+        final long end;
+        long index;
+        volatile boolean cancelled;
+
+        IndexedSubscription(LongSubscriber actual, long start, long end) {
+            this.actual = actual;
+            this.index = start;
+            this.end = end;
+        }
+
+        abstract long valueAt(long index);
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                return;
+            }
+            if(BackpressureUtils.getAndAddRequest(this, n) != 0L) {
+                return; // the thread already emitting will see the new request
+            }
+            if(n == Long.MAX_VALUE) {
+                fastPath();
+            } else {
+                slowPath(n);
+            }
+        }
+
+        private void fastPath() {
+            for(long i = index; i < end; i++) {
+                if(cancelled) {
+                    return;
+                }
+                actual.onNext(valueAt(i));
+            }
+            if(!cancelled) {
+                actual.onCompleted();
+            }
+        }
+
+        private void slowPath(long r) {
+            long i = index;
+            long e = 0L;
+            for(;;) {
+                while(e != r && i != end) {
+                    if(cancelled) {
+                        return;
+                    }
+                    actual.onNext(valueAt(i));
+                    i++;
+                    e++;
+                }
+                if(i == end) {
+                    if(!cancelled) {
+                        actual.onCompleted();
+                    }
+                    return;
+                }
+                r = get();
+                if(e == r) {
+                    index = i;
+                    r = addAndGet(-e);
+                    if(r == 0L) {
+                        return;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Base for the operators which pass the values one by one, forwarding the requests upstream
+     */
+    abstract static class ForwardingSubscriber implements LongSubscriber, PrimitiveSubscription {
+
+        final LongSubscriber actual;
+        PrimitiveSubscription upstream;
+        boolean done;
+
+        ForwardingSubscriber(LongSubscriber actual) {
+            this.actual = actual;
+        }
+
+        @Override
+        public void onSubscribe(PrimitiveSubscription subscription) {
+            upstream = subscription;
+            actual.onSubscribe(this);
+        }
+
+        void fail(Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            done = true;
+            upstream.cancel();
+            actual.onError(ex);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            actual.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(!done) {
+                done = true;
+                actual.onCompleted();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            upstream.cancel();
+        }
+    }
+
+    static final class ReduceSubscriber implements LongSubscriber, PrimitiveSubscription {
+
+        static final int NO_REQUEST_NO_VALUE = 0;
+        static final int HAS_REQUEST_NO_VALUE = 1;
+        static final int NO_REQUEST_HAS_VALUE = 2;
+        static final int DONE = 3;
+
+        final LongSubscriber actual;
+        final LongBinaryOperator reducer;
+        final AtomicInteger state = new AtomicInteger();
+        PrimitiveSubscription upstream;
+        long accumulator;
+        boolean done;
+        volatile boolean cancelled;
+
+        ReduceSubscriber(LongSubscriber actual, long identity, LongBinaryOperator reducer) {
+            this.actual = actual;
+            this.accumulator = identity;
+            this.reducer = reducer;
+        }
+
+        @Override
+        public void onSubscribe(PrimitiveSubscription subscription) {
+            upstream = subscription;
+            actual.onSubscribe(this);
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(long value) {
+            if(done) {
+                return;
+            }
+            try {
+                accumulator = reducer.applyAsLong(accumulator, value);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                done = true;
+                upstream.cancel();
+                actual.onError(ex);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            actual.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(done) {
+                return;
+            }
+            done = true;
+            for(;;) {
+                int s = state.get();
+                if(s == HAS_REQUEST_NO_VALUE) {
+                    if(state.compareAndSet(HAS_REQUEST_NO_VALUE, DONE)) {
+                        emit();
+                    }
+                    return;
+                }
+                if(state.compareAndSet(NO_REQUEST_NO_VALUE, NO_REQUEST_HAS_VALUE)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                return;
+            }
+            for(;;) {
+                int s = state.get();
+                if(s == NO_REQUEST_HAS_VALUE) {
+                    if(state.compareAndSet(NO_REQUEST_HAS_VALUE, DONE)) {
+                        emit();
+                    }
+                    return;
+                }
+                if(s != NO_REQUEST_NO_VALUE || state.compareAndSet(NO_REQUEST_NO_VALUE, HAS_REQUEST_NO_VALUE)) {
+                    return;
+                }
+            }
+        }
+
+        private void emit() {
+            if(cancelled) {
+                return;
+            }
+            actual.onNext(accumulator);
+            if(!cancelled) {
+                actual.onCompleted();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            upstream.cancel();
+        }
+    }
+
+    static final class BufferSubscriber implements LongSubscriber {
+
+        final Subscriber<? super long[]> child;
+        final int size;
+        long[] chunk;
+        int count;
+        boolean done;
+
+        BufferSubscriber(Subscriber<? super long[]> child, int size) {
+            this.child = child;
+            this.size = size;
+        }
+
+        @Override
+        public void onSubscribe(PrimitiveSubscription subscription) {
+            child.add(Subscriptions.create(subscription::cancel));
+            child.setProducer(n -> {
+                if(n > 0) {
+                    // n chunks need n * size values
+                    long values = n >= Long.MAX_VALUE / size ? Long.MAX_VALUE : n * size;
+                    subscription.request(values);
+                }
+            });
+        }
+
+        @Override
+        public void onNext(long value) {
+            if(done) {
+                return;
+            }
+            long[] c = chunk;
+            if(c == null) {
+                c = new long[size];
+                chunk = c;
+            }
+            c[count++] = value;
+            if(count == size) {
+                chunk = null;
+                count = 0;
+                child.onNext(c);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            chunk = null;
+            child.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(done) {
+                return;
+            }
+            done = true;
+            long[] c = chunk;
+            if(c != null) {
+                chunk = null;
+                child.onNext(Arrays.copyOf(c, count));
+            }
+            child.onCompleted();
+        }
+    }
+
+    static final class UnboxingSubscriber extends Subscriber<Long> {
+
+        final LongSubscriber actual;
+
+        UnboxingSubscriber(LongSubscriber actual) {
+            this.actual = actual;
+        }
+
+        @Override
+        public void onStart() {
+            request(0); // nothing until the LongSubscriber requests
+        }
+
+        @Override
+        public void onNext(Long value) {
+            actual.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            actual.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            actual.onCompleted();
+        }
+
+        void requestMore(long n) {
+            request(n);
+        }
+    }
+
+    static final class LambdaSubscriber implements LongSubscriber, Subscription {
+
+        final LongConsumer onNext;
+        final Action1<Throwable> onError;
+        final Action0 onCompleted;
+        volatile PrimitiveSubscription upstream;
+        volatile boolean unsubscribed;
+        boolean done;
+
+        LambdaSubscriber(LongConsumer onNext, Action1<Throwable> onError, Action0 onCompleted) {
+            this.onNext = onNext;
+            this.onError = onError;
+            this.onCompleted = onCompleted;
+        }
+
+        @Override
+        public void onSubscribe(PrimitiveSubscription subscription) {
+            upstream = subscription;
+            if(unsubscribed) {
+                subscription.cancel();
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(long value) {
+            if(done) {
+                return;
+            }
+            try {
+                onNext.accept(value);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                unsubscribe();
+                onError(ex);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            done = true;
+            onError.call(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if(!done) {
+                done = true;
+                onCompleted.call();
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            unsubscribed = true;
+            PrimitiveSubscription s = upstream;
+            if(s != null) {
+                s.cancel();
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return unsubscribed;
+        }
+    }
+}
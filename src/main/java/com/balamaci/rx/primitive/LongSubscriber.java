@@ -0,0 +1,20 @@
+package com.balamaci.rx.primitive;
+
+/**
+ * Receives the values of a {@link LongObservable} as primitive longs.
+ *
+ * onSubscribe is called first, and no value is emitted before the subscriber requested it
+ * through the received {@link PrimitiveSubscription}.
+ *
+ * @author sbalamaci
+ */
+public interface LongSubscriber {
+
+    void onSubscribe(PrimitiveSubscription subscription);
+
+    void onNext(long value);
+
+    void onError(Throwable e);
+
+    void onCompleted();
+}
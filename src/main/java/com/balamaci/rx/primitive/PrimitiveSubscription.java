@@ -0,0 +1,17 @@
+package com.balamaci.rx.primitive;
+
+/**
+ * Link between a primitive stream and its subscriber, through which the subscriber asks for more values
+ * (backpressure) or stops the stream.
+ *
+ * @author sbalamaci
+ */
+public interface PrimitiveSubscription {
+
+    /**
+     * @param n number of additional values the subscriber is ready to receive, Long.MAX_VALUE for unbounded
+     */
+    void request(long n);
+
+    void cancel();
+}
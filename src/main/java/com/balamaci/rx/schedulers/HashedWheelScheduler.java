@@ -0,0 +1,209 @@
+package com.balamaci.rx.schedulers;
+
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.plugins.RxJavaHooks;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler for delay(), interval(), timer() and timeout() when there are lots of pending timers, most of them
+ * canceled before they fire - like a timeout() on every request.
+ *
+ * Schedulers.computation() keeps the delayed tasks in the heap of a ScheduledThreadPoolExecutor, where scheduling
+ * and canceling cost O(log n) of the pending tasks. Here the delays are kept by a {@link HashedWheelTimer} where
+ * both are O(1), at the price of a resolution of 'tickDuration': a task runs up to a tick late.
+ * Once their delay passed, the tasks are handed over to a Worker of the 'executor' Scheduler which runs them,
+ * computation() by default, the timer thread only keeping time.
+ *
+ * A Worker links its pending tasks in a list, to cancel them when unsubscribed, instead of the
+ * CompositeSubscription of ScheduledActions the Workers of the standard Schedulers use - a task is a single object.
+ *
+ * <pre>
+ * requests.timeout(1, TimeUnit.SECONDS, MoreSchedulers.hashedWheel())
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class HashedWheelScheduler extends Scheduler {
+
+    private final HashedWheelTimer timer;
+    private final Scheduler executor;
+
+    /**
+     * Ticks every 'tickDuration' over a wheel of 512 ticks, running the tasks on Schedulers.computation(),
+     * looked up for every Worker so it follows a Scheduler swapped through RxJavaHooks
+     */
+    public HashedWheelScheduler(long tickDuration, TimeUnit unit) {
+        this(tickDuration, unit, 512, null);
+    }
+
+    /**
+     * @param ticksPerWheel the number of buckets, rounded up to a power of 2. Delays longer than a turn of the
+     *                      wheel are checked again every turn, so it should cover the usual delays
+     * @param executor runs the tasks, null for Schedulers.computation()
+     */
+    public HashedWheelScheduler(long tickDuration, TimeUnit unit, int ticksPerWheel, Scheduler executor) {
+        this.timer = new HashedWheelTimer(tickDuration, unit, ticksPerWheel, "RxHashedWheelTimer");
+        this.executor = executor;
+    }
+
+    @Override
+    public Worker createWorker() {
+        Scheduler actual = executor != null ? executor : Schedulers.computation();
+        return new HashedWheelWorker(actual.createWorker(), timer);
+    }
+
+    /**
+     * The tasks waiting for their delay to pass
+     */
+    public int pendingTimers() {
+        return timer.pendingTimeouts();
+    }
+
+    /**
+     * Stops the timer thread, the tasks waiting for their delay are dropped
+     */
+    public void shutdown() {
+        timer.stop();
+    }
+
+    static final class HashedWheelWorker extends Worker {
+
+        final Worker actual;
+        final HashedWheelTimer timer;
+
+        /** the pending tasks, guarded by this */
+        final DelayedTask head;
+        boolean unsubscribed;
+
+        HashedWheelWorker(Worker actual, HashedWheelTimer timer) {
+            this.actual = actual;
+            this.timer = timer;
+            this.head = new DelayedTask(timer, this, null);
+            head.workerPrev = head;
+            head.workerNext = head;
+        }
+
+        @Override
+        public Subscription schedule(Action0 action) {
+            return actual.schedule(action);
+        }
+
+        @Override
+        public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+            if(delayTime <= 0) {
+                return schedule(action);
+            }
+            // on the scheduling thread like the standard Schedulers, for the hooks capturing its context
+            DelayedTask task = new DelayedTask(timer, this, RxJavaHooks.onScheduledAction(action));
+            synchronized (this) {
+                if(unsubscribed) {
+                    return Subscriptions.unsubscribed();
+                }
+                task.workerPrev = head.workerPrev;
+                task.workerNext = head;
+                head.workerPrev.workerNext = task;
+                head.workerPrev = task;
+            }
+            timer.add(task, delayTime, unit);
+            return task;
+        }
+
+        synchronized void remove(DelayedTask task) {
+            // once unsubscribed the detached list belongs to unsubscribe()
+            if(!unsubscribed && task.workerNext != null) {
+                task.workerPrev.workerNext = task.workerNext;
+                task.workerNext.workerPrev = task.workerPrev;
+                task.workerPrev = null;
+                task.workerNext = null;
+            }
+        }
+
+        @Override
+        public long now() {
+            return actual.now();
+        }
+
+        @Override
+        public void unsubscribe() {
+            DelayedTask task;
+            synchronized (this) {
+                if(unsubscribed) {
+                    return;
+                }
+                unsubscribed = true;
+                task = head.workerNext;
+                head.workerPrev = head;
+                head.workerNext = head;
+            }
+            while(task != head) {
+                DelayedTask next = task.workerNext;
+                task.workerPrev = null;
+                task.workerNext = null;
+                task.cancel();
+                task = next;
+            }
+            actual.unsubscribe();
+        }
+
+        @Override
+        public synchronized boolean isUnsubscribed() {
+            return unsubscribed;
+        }
+    }
+
+    /**
+     * A task waiting in the timer wheel, handed over to the actual Worker when its delay passed
+     */
+    static final class DelayedTask extends HashedWheelTimer.Timeout implements Subscription {
+
+        final HashedWheelWorker worker;
+        final Action0 action;
+
+        /** the Worker's list of pending tasks, guarded by the Worker - apart from the links of the timer's buckets */
+        DelayedTask workerPrev;
+        DelayedTask workerNext;
+
+        /** the task given to the actual Worker */
+        volatile Subscription scheduled;
+        volatile boolean disposed;
+
+        DelayedTask(HashedWheelTimer timer, HashedWheelWorker worker, Action0 action) {
+            super(timer);
+            this.worker = worker;
+            this.action = action;
+        }
+
+        @Override
+        void run() {
+            worker.remove(this);
+            Subscription subscription = worker.actual.schedule(action);
+            scheduled = subscription;
+            if(disposed) {
+                subscription.unsubscribe();
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            disposed = true;
+            if(cancel()) {
+                worker.remove(this);
+                return;
+            }
+            Subscription subscription = scheduled;
+            if(subscription != null) {
+                subscription.unsubscribe();
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return disposed || isCancelled();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.balamaci.rx.schedulers;
+
+import com.balamaci.rx.util.SpscArrayQueue;
+import rx.plugins.RxJavaHooks;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timer wheel, as in "Hashed and Hierarchical Timing Wheels" by Varghese and Lauck, the way Netty's
+ * HashedWheelTimer does it.
+ *
+ * The time is cut in ticks, and the wheel has a bucket for each of the next 'ticksPerWheel' ticks, a timeout going
+ * in the bucket of its deadline's tick modulo the wheel size along with the number of turns of the wheel left.
+ * Every tick the timer thread goes through the bucket of the tick, firing the timeouts on their last turn.
+ * Adding and canceling are O(1): both only offer the timeout to a queue the timer thread picks up on the next tick,
+ * and the buckets are doubly linked lists.
+ *
+ * The timeouts fire up to a tick late, never early. They run on the timer thread, so they must be short.
+ *
+ * @author sbalamaci
+ */
+final class HashedWheelTimer {
+
+    /** limits the time the timer thread spends moving new timeouts to the buckets in one tick */
+    static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final long startNanos;
+    private final Thread thread;
+    private volatile boolean stopped;
+
+    HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel, String threadName) {
+        if(tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration > 0 required but it was " + tickDuration);
+        }
+        if(ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("ticksPerWheel > 0 required but it was " + ticksPerWheel);
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[SpscArrayQueue.roundToPowerOfTwo(ticksPerWheel)];
+        for(int i=0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+
+        this.startNanos = System.nanoTime();
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Fires the timeout, on the timer thread, once the delay passed
+     */
+    void add(Timeout timeout, long delay, TimeUnit unit) {
+        timeout.deadlineNanos = System.nanoTime() + unit.toNanos(delay) - startNanos;
+        pending.incrementAndGet();
+        added.offer(timeout);
+    }
+
+    /**
+     * The timeouts added and not yet fired nor canceled
+     */
+    int pendingTimeouts() {
+        return pending.get();
+    }
+
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        long tick = 0;
+        while(!stopped) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos;
+            while((sleepNanos = deadline - (System.nanoTime() - startNanos)) > 0 && !stopped) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+
+            removeCancelled();
+            transferAdded(tick);
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while((timeout = cancelled.poll()) != null) {
+            if(timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferAdded(long tick) {
+        for(int i=0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = added.poll();
+            if(timeout == null) {
+                return;
+            }
+            if(timeout.isCancelled()) {
+                continue;
+            }
+            long deadlineTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            // a deadline already passed goes in the current bucket
+            long bucketTick = Math.max(deadlineTick, tick);
+            wheel[(int) (bucketTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * A pending action, canceled with cancel() and fired with run()
+     */
+    abstract static class Timeout extends AtomicInteger {
+
+        static final int PENDING = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+
+        final HashedWheelTimer timer;
+        long deadlineNanos;
+
+        /** accessed only by the timer thread */
+        long remainingRounds;
+        Bucket bucket;
+        Timeout prev;
+        Timeout next;
+
+        Timeout(HashedWheelTimer timer) {
+            this.timer = timer;
+        }
+
+        /**
+         * Called on the timer thread once the delay passed, unless canceled
+         */
+        abstract void run();
+
+        /**
+         * @return false if the timeout already fired or was canceled
+         */
+        final boolean cancel() {
+            if(compareAndSet(PENDING, CANCELLED)) {
+                timer.pending.decrementAndGet();
+                timer.cancelled.offer(this);
+                return true;
+            }
+            return false;
+        }
+
+        final boolean isCancelled() {
+            return get() == CANCELLED;
+        }
+
+        final void expire() {
+            if(!compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            timer.pending.decrementAndGet();
+            try {
+                run();
+            } catch (Throwable ex) {
+                RxJavaHooks.onError(ex);
+            }
+        }
+    }
+
+    /**
+     * The timeouts of a tick, accessed only by the timer thread
+     */
+    static final class Bucket {
+
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if(head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long deadlineNanos) {
+            Timeout timeout = head;
+            while(timeout != null) {
+                Timeout next = timeout.next;
+                if(timeout.isCancelled()) {
+                    remove(timeout);
+                } else if(timeout.remainingRounds <= 0 && timeout.deadlineNanos <= deadlineNanos) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if(timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if(timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if(timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if(next != null) {
+                next.prev = timeout.prev;
+            }
+            if(timeout == head) {
+                head = next;
+            }
+            if(timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.balamaci.rx.schedulers;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedulers in addition to the ones provided by {@link Schedulers}.
+ *
+ * @author sbalamaci
+ */
+public final class MoreSchedulers {
+
+    /** null when the JVM doesn't support virtual threads */
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = virtualThreadFactory();
+
+    private static final Scheduler VIRTUAL = VIRTUAL_THREAD_FACTORY == null ? null
+            : Schedulers.from(new VirtualThreadExecutor(VIRTUAL_THREAD_FACTORY));
+
+    private MoreSchedulers() {
+    }
+
+    /**
+     * Scheduler for blocking IO, like Schedulers.io(), but running the Workers' tasks on virtual threads.
+     *
+     * A Worker runs its tasks one after the other, in the order they were scheduled, on a virtual thread
+     * started when the Worker has tasks to run and ending once it has run out of them.
+     * A task blocked on IO or sleeping parks its virtual thread instead of holding a platform thread,
+     * so thousands of blocking subscriptions need just a few carrier threads.
+     *
+     * @throws UnsupportedOperationException when running on a JVM older than Java 21
+     */
+    public static Scheduler virtual() {
+        if(VIRTUAL == null) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer, running on "
+                    + System.getProperty("java.version"));
+        }
+        return VIRTUAL;
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return VIRTUAL != null;
+    }
+
+    /**
+     * Scheduler for CPU intensive tasks, like Schedulers.computation(), but on a work-stealing pool with
+     * a thread for each core so the Workers are not bound to a thread, see {@link WorkStealingScheduler}
+     */
+    public static Scheduler workStealing() {
+        return WorkStealingHolder.INSTANCE;
+    }
+
+    /**
+     * Scheduler for delay(), interval(), timer() and timeout() with lots of pending timers, keeping the delays in a
+     * timer wheel ticking every 10ms and running the tasks on Schedulers.computation(),
+     * see {@link HashedWheelScheduler}
+     */
+    public static Scheduler hashedWheel() {
+        return HashedWheelHolder.INSTANCE;
+    }
+
+    /**
+     * Thread.ofVirtual().name("RxVirtualThread-", 0).factory(), looked up at runtime so the project
+     * still compiles for, and runs on, older Java versions
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            Object builder = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(builderClass))
+                    .invoke();
+            MethodHandle name = lookup.findVirtual(builderClass, "name",
+                    MethodType.methodType(builderClass, String.class, long.class));
+            builder = name.invoke(builder, "RxVirtualThread-", 0L);
+            MethodHandle factory = lookup.findVirtual(builderClass, "factory",
+                    MethodType.methodType(ThreadFactory.class));
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Throwable notSupported) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts a new virtual thread for every task, the per-Worker ordering being handled by the
+     * Schedulers.from() Workers which submit a single task draining their own queue.
+     */
+    static final class VirtualThreadExecutor implements Executor {
+
+        private final ThreadFactory threadFactory;
+
+        VirtualThreadExecutor(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            threadFactory.newThread(command).start();
+        }
+    }
+
+    private static final class WorkStealingHolder {
+        static final WorkStealingScheduler INSTANCE =
+                new WorkStealingScheduler(Runtime.getRuntime().availableProcessors());
+    }
+
+    private static final class HashedWheelHolder {
+        static final HashedWheelScheduler INSTANCE = new HashedWheelScheduler(10, TimeUnit.MILLISECONDS);
+    }
+}
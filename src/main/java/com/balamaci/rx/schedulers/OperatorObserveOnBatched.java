@@ -0,0 +1,267 @@
+package com.balamaci.rx.schedulers;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.internal.operators.BackpressureUtils;
+import rx.plugins.RxJavaHooks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * observeOn which hands the values to the worker in arrays of 'batchSize' and wakes the worker up only when an array
+ * fills, or 'maxLatency' after a value which didn't fill one was emitted, instead of for every burst of values.
+ *
+ * The arrays are linked to one another, the last slot of an array pointing to the next one, so the upstream thread
+ * appends to the last array while the worker reads from the first one. The only state they share is the count of
+ * values published, so a value crosses the threads with a single ordered write and no queue offer/poll.
+ *
+ * @author sbalamaci
+ */
+final class OperatorObserveOnBatched<T, R> implements Observable.Operator<R, T> {
+
+    private final Scheduler scheduler;
+    private final int batchSize;
+    private final long maxLatencyNanos;
+    private final boolean lists;
+
+    /**
+     * @param lists emit List&lt;T&gt; of up to 'batchSize' values instead of the values one by one
+     */
+    OperatorObserveOnBatched(Scheduler scheduler, int batchSize, long maxLatency, TimeUnit unit, boolean lists) {
+        if(batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize > 0 required but it was " + batchSize);
+        }
+        if(maxLatency < 0) {
+            throw new IllegalArgumentException("maxLatency >= 0 required but it was " + maxLatency);
+        }
+        this.scheduler = scheduler;
+        this.batchSize = batchSize;
+        this.maxLatencyNanos = unit.toNanos(maxLatency);
+        this.lists = lists;
+    }
+
+    @Override
+    public Subscriber<? super T> call(Subscriber<? super R> child) {
+        Scheduler.Worker worker = scheduler.createWorker();
+        BatchingSubscriber<T> parent = new BatchingSubscriber<>(child, worker, batchSize, maxLatencyNanos, lists);
+        parent.init();
+        return parent;
+    }
+
+    static final class BatchingSubscriber<T> extends Subscriber<T> implements Action0 {
+
+        final Subscriber<Object> child;
+        final Scheduler.Worker worker;
+        final int batchSize;
+        final long maxLatencyNanos;
+        final boolean lists;
+
+        /** requested from upstream at start, and replenished every 'limit' values the worker consumed */
+        final long prefetch;
+        final long limit;
+
+        /** the count of values published, written by the upstream thread and read by the worker */
+        final AtomicLong producerIndex = new AtomicLong();
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+        final AtomicBoolean timerArmed = new AtomicBoolean();
+        final Action0 timer;
+
+        volatile boolean done;
+        Throwable error;
+
+        /** the timer expired, the worker emits the values even if they don't fill a List */
+        volatile boolean flush;
+
+        /** accessed only by the upstream thread */
+        Object[] producerArray;
+        int producerOffset;
+        long published;
+        long signaled;
+
+        /** accessed only by the worker */
+        Object[] consumerArray;
+        int consumerOffset;
+        long consumerIndex;
+        long consumed;
+
+        @SuppressWarnings("unchecked")
+        BatchingSubscriber(Subscriber<?> child, Scheduler.Worker worker, int batchSize, long maxLatencyNanos,
+                           boolean lists) {
+            this.child = (Subscriber<Object>) child;
+            this.worker = worker;
+            this.batchSize = batchSize;
+            this.maxLatencyNanos = maxLatencyNanos;
+            this.lists = lists;
+
+            this.prefetch = Math.max(4L * batchSize, 128L);
+            this.limit = prefetch - (prefetch >> 2);
+
+            producerArray = new Object[batchSize + 1];
+            consumerArray = producerArray;
+
+            timer = () -> {
+                timerArmed.set(false);
+                flush = true;
+                if(wip.getAndIncrement() == 0) {
+                    call(); // already on the worker
+                }
+            };
+        }
+
+        void init() {
+            child.add(worker);
+            child.add(this);
+            child.setProducer(n -> {
+                if(n < 0) {
+                    throw new IllegalArgumentException("n >= 0 required but it was " + n);
+                }
+                if(n > 0) {
+                    BackpressureUtils.getAndAddRequest(requested, n);
+                    schedule();
+                }
+            });
+            request(prefetch);
+        }
+
+        @Override
+        public void onNext(T t) {
+            if(done) {
+                return;
+            }
+            Object[] array = producerArray;
+            int offset = producerOffset;
+            if(offset == batchSize) {
+                Object[] next = new Object[batchSize + 1];
+                array[batchSize] = next;
+                producerArray = next;
+                array = next;
+                offset = 0;
+            }
+            array[offset] = t;
+            producerOffset = offset + 1;
+
+            long index = published + 1;
+            published = index;
+            producerIndex.lazySet(index);
+
+            if(index - signaled >= batchSize || maxLatencyNanos == 0L) {
+                signaled = index;
+                schedule();
+            } else if(!timerArmed.get() && timerArmed.compareAndSet(false, true)) {
+                worker.schedule(timer, maxLatencyNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if(done) {
+                RxJavaHooks.onError(e);
+                return;
+            }
+            error = e;
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void onCompleted() {
+            if(done) {
+                return;
+            }
+            done = true;
+            schedule();
+        }
+
+        void schedule() {
+            if(wip.getAndIncrement() == 0) {
+                worker.schedule(this);
+            }
+        }
+
+        @Override
+        public void call() {
+            int missed = 1;
+            for(;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for(;;) {
+                    if(child.isUnsubscribed()) {
+                        return;
+                    }
+                    boolean d = done;
+                    long available = producerIndex.get() - consumerIndex;
+                    if(d) {
+                        Throwable ex = error;
+                        if(ex != null) {
+                            error = null;
+                            child.onError(ex);
+                            return;
+                        }
+                        if(available == 0L) {
+                            child.onCompleted();
+                            return;
+                        }
+                    }
+                    if(e == r || available == 0L) {
+                        break;
+                    }
+
+                    if(lists) {
+                        if(available < batchSize && !d && !flush) {
+                            break;
+                        }
+                        int size = (int) Math.min(available, batchSize);
+                        List<Object> list = new ArrayList<>(size);
+                        for(int i = 0; i < size; i++) {
+                            list.add(poll());
+                        }
+                        if(size < batchSize) {
+                            flush = false;
+                        }
+                        child.onNext(list);
+                    } else {
+                        child.onNext(poll());
+                    }
+                    e++;
+                }
+
+                if(e != 0L) {
+                    BackpressureUtils.produced(requested, e);
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private Object poll() {
+            Object[] array = consumerArray;
+            int offset = consumerOffset;
+            if(offset == batchSize) {
+                array = (Object[]) array[batchSize];
+                consumerArray = array;
+                offset = 0;
+            }
+            Object value = array[offset];
+            consumerOffset = offset + 1;
+            consumerIndex++;
+
+            if(++consumed == limit) {
+                consumed = 0;
+                request(limit);
+            }
+            return value;
+        }
+    }
+}
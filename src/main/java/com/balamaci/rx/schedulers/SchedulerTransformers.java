@@ -0,0 +1,50 @@
+package com.balamaci.rx.schedulers;
+
+import rx.Observable;
+import rx.Scheduler;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling operators which plug into a regular Observable chain through compose()
+ *
+ * <pre>
+ * observable.compose(SchedulerTransformers.observeOnBatched(Schedulers.computation(), 256, 1, TimeUnit.MILLISECONDS))
+ *           .map(val -> val * 2)
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class SchedulerTransformers {
+
+    private SchedulerTransformers() {
+    }
+
+    /**
+     * Like observeOn(scheduler), but the values cross to the scheduler's thread in arrays of 'batchSize', the
+     * worker being woken up when an array fills or at most 'maxLatency' after a value was emitted.
+     * It trades a bit of latency for throughput on streams of millions of values, where observeOn
+     * pays for a queue offer/poll for every value and schedules the worker for every burst.
+     *
+     * @param maxLatency 0 to wake the worker up for every value, like observeOn
+     */
+    public static <T> Observable.Transformer<T, T> observeOnBatched(Scheduler scheduler, int batchSize,
+                                                                   long maxLatency, TimeUnit unit) {
+        OperatorObserveOnBatched<T, T> operator = new OperatorObserveOnBatched<>(scheduler, batchSize,
+                maxLatency, unit, false);
+        return source -> source.lift(operator);
+    }
+
+    /**
+     * Same as {@link #observeOnBatched(Scheduler, int, long, TimeUnit)} but emits the values in Lists of
+     * 'batchSize', shorter when 'maxLatency' expired before a List filled up or when the source completes.
+     * A request(n) from downstream is for n Lists.
+     */
+    public static <T> Observable.Transformer<T, List<T>> observeOnBatchedLists(Scheduler scheduler, int batchSize,
+                                                                              long maxLatency, TimeUnit unit) {
+        OperatorObserveOnBatched<T, List<T>> operator = new OperatorObserveOnBatched<>(scheduler, batchSize,
+                maxLatency, unit, true);
+        return source -> source.lift(operator);
+    }
+}
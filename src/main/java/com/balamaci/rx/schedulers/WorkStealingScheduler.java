@@ -0,0 +1,169 @@
+package com.balamaci.rx.schedulers;
+
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.internal.schedulers.ScheduledAction;
+import rx.plugins.RxJavaHooks;
+import rx.subscriptions.CompositeSubscription;
+import rx.subscriptions.Subscriptions;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler for CPU intensive tasks where, unlike Schedulers.computation(), a Worker is not bound to
+ * one of the threads.
+ *
+ * Schedulers.computation() assigns the Workers round-robin to a fixed set of event loops, so when the tasks
+ * take very different times some event loops build up a backlog while others sit idle.
+ * Here the Workers run on a ForkJoinPool: a Worker with tasks to run submits a single task which drains
+ * the Worker's queue, into the deque of the submitting thread when that's one of the pool's threads.
+ * Idle threads steal these tasks from the other threads' deques.
+ *
+ * The tasks of one Worker still run one at a time, in the order they were scheduled, like for any Scheduler.
+ * After running BATCH_SIZE tasks a Worker goes back to the end of the deque, so a Worker with a long
+ * backlog doesn't keep the others waiting.
+ *
+ * @author sbalamaci
+ */
+public final class WorkStealingScheduler extends Scheduler {
+
+    static final int BATCH_SIZE = 64;
+
+    /** fires the delayed tasks, which then run on the pool */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RxWorkStealingTimer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism number of threads, usually the number of cores
+     */
+    public WorkStealingScheduler(int parallelism) {
+        if(parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism > 0 required but it was " + parallelism);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("RxWorkStealing-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true); // asyncMode - FIFO for the local tasks, the Workers' drain tasks are never joined
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new WorkStealingWorker(pool);
+    }
+
+    /**
+     * Stops the threads, the tasks not yet started are dropped
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    static final class WorkStealingWorker extends Worker implements Runnable {
+
+        final ForkJoinPool pool;
+        final CompositeSubscription tasks = new CompositeSubscription();
+        final Queue<ScheduledAction> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger wip = new AtomicInteger();
+
+        WorkStealingWorker(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public Subscription schedule(Action0 action) {
+            if(isUnsubscribed()) {
+                return Subscriptions.unsubscribed();
+            }
+            ScheduledAction scheduledAction = new ScheduledAction(RxJavaHooks.onScheduledAction(action), tasks);
+            tasks.add(scheduledAction);
+            enqueue(scheduledAction);
+            return scheduledAction;
+        }
+
+        @Override
+        public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+            if(delayTime <= 0) {
+                return schedule(action);
+            }
+            if(isUnsubscribed()) {
+                return Subscriptions.unsubscribed();
+            }
+            ScheduledAction scheduledAction = new ScheduledAction(RxJavaHooks.onScheduledAction(action), tasks);
+            tasks.add(scheduledAction);
+            scheduledAction.add(TIMER.schedule(() -> enqueue(scheduledAction), delayTime, unit));
+            return scheduledAction;
+        }
+
+        void enqueue(ScheduledAction scheduledAction) {
+            queue.offer(scheduledAction);
+            if(wip.getAndIncrement() == 0) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            if(ForkJoinTask.getPool() == pool) {
+                ForkJoinTask.adapt(this).fork(); // into this thread's deque, from where idle threads can steal it
+            } else {
+                pool.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            int executed = 0;
+            for(;;) {
+                for(;;) {
+                    if(tasks.isUnsubscribed()) {
+                        queue.clear();
+                        return;
+                    }
+                    ScheduledAction scheduledAction = queue.poll();
+                    if(scheduledAction == null) {
+                        break;
+                    }
+                    if(!scheduledAction.isUnsubscribed()) {
+                        scheduledAction.run();
+                    }
+                    if(++executed >= BATCH_SIZE && !queue.isEmpty()) {
+                        submit(); // wip stays > 0, the resubmitted task carries on draining
+                        return;
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            tasks.unsubscribe();
+            queue.clear();
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return tasks.isUnsubscribed();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.balamaci.rx.sources;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.exceptions.Exceptions;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic sources sharing a single timer per period.
+ *
+ * Every Observable.interval() subscription schedules its own periodic task, so thousands of tickers - one per
+ * entity, session or connection - mean thousands of timers on the Scheduler. Here all the subscribers with the
+ * same period are attached to a single periodic task of that period which, on every tick, emits to each of them
+ * its own counter, so they still see 0, 1, 2... like with interval().
+ *
+ * The trade-off is the phase: the ticks of a period are those of its timer, started by its first subscriber,
+ * so a subscriber gets its first value on the tick nearest to its initial delay, up to half a period early or late.
+ * The timer is stopped when its last subscriber unsubscribes.
+ *
+ * Like interval() the values are emitted without checking the requests, use onBackpressureDrop() for a
+ * subscriber that can't keep up. The subscribers of a period are emitted to one after the other on the
+ * same thread, so a slow one delays the others and should observeOn() its own Scheduler.
+ *
+ * <pre>
+ * Observable&lt;Long&gt; heartbeat = SharedClock.computation().interval(1, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class SharedClock {
+
+    private static final Ticker[] EMPTY = new Ticker[0];
+
+    private final Func0<Scheduler> scheduler;
+
+    /** the timers of every Scheduler 'scheduler' returned, by period, guarded by this */
+    private final Map<Scheduler, Map<Long, Period>> periods = new HashMap<>();
+
+    private SharedClock(Func0<Scheduler> scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public static SharedClock create(Scheduler scheduler) {
+        return new SharedClock(() -> scheduler);
+    }
+
+    /**
+     * The clock ticking on Schedulers.computation(), looked up for every new subscriber so it follows a Scheduler
+     * swapped through RxJavaHooks, like the TestScheduler of a test. Subscribers getting different Schedulers
+     * get different timers.
+     */
+    public static SharedClock computation() {
+        return ComputationHolder.INSTANCE;
+    }
+
+    public Observable<Long> interval(long period, TimeUnit unit) {
+        return interval(period, period, unit);
+    }
+
+    /**
+     * Emits 0, 1, 2... to every subscriber on the ticks of the shared timer of 'period'
+     */
+    public Observable<Long> interval(long initialDelay, long period, TimeUnit unit) {
+        if(initialDelay < 0) {
+            throw new IllegalArgumentException("initialDelay >= 0 required but it was " + initialDelay);
+        }
+        if(period <= 0) {
+            throw new IllegalArgumentException("period > 0 required but it was " + period);
+        }
+        long initialDelayNanos = unit.toNanos(initialDelay);
+        long periodNanos = unit.toNanos(period);
+        return Observable.create(child -> subscribe(child, initialDelayNanos, periodNanos));
+    }
+
+    /**
+     * The periodic tasks currently scheduled, one for every period having subscribers
+     */
+    public synchronized int timers() {
+        int timers = 0;
+        for(Map<Long, Period> byPeriod : periods.values()) {
+            timers += byPeriod.size();
+        }
+        return timers;
+    }
+
+    private void subscribe(Subscriber<? super Long> child, long initialDelayNanos, long periodNanos) {
+        Ticker ticker = new Ticker(child);
+        Period period;
+        synchronized (this) {
+            Scheduler current = scheduler.call();
+            Map<Long, Period> byPeriod = periods.computeIfAbsent(current, s -> new HashMap<>());
+            period = byPeriod.get(periodNanos);
+            if(period == null) {
+                period = new Period(periodNanos, current);
+                byPeriod.put(periodNanos, period);
+            }
+            period.add(ticker, initialDelayNanos);
+        }
+
+        Period subscribed = period;
+        child.add(Subscriptions.create(() -> remove(subscribed, ticker)));
+    }
+
+    private void remove(Period period, Ticker ticker) {
+        synchronized (this) {
+            if(!period.remove(ticker) || period.subscribers.length > 0) {
+                return;
+            }
+            Map<Long, Period> byPeriod = periods.get(period.scheduler);
+            byPeriod.remove(period.periodNanos);
+            if(byPeriod.isEmpty()) {
+                periods.remove(period.scheduler);
+            }
+        }
+        period.stop();
+    }
+
+    private long nowNanos(Scheduler.Worker worker) {
+        return TimeUnit.MILLISECONDS.toNanos(worker.now());
+    }
+
+    /**
+     * A subscriber with its own counter and the tick of its first value
+     */
+    static final class Ticker {
+
+        final Subscriber<? super Long> child;
+
+        /** accessed only on the tick */
+        long count;
+        /** published by the write of the subscribers array */
+        long firstTick;
+
+        Ticker(Subscriber<? super Long> child) {
+            this.child = child;
+        }
+    }
+
+    /**
+     * The periodic task of a period, fanning out every tick to the subscribers
+     */
+    final class Period {
+
+        final long periodNanos;
+        final Scheduler scheduler;
+        final Scheduler.Worker worker;
+        final long startNanos;
+        final Subscription task;
+
+        /** copy-on-write, changed under the SharedClock's lock */
+        volatile Ticker[] subscribers = EMPTY;
+
+        /** the last tick run, written only by the task */
+        volatile long tick;
+
+        Period(long periodNanos, Scheduler scheduler) {
+            this.periodNanos = periodNanos;
+            this.scheduler = scheduler;
+            this.worker = scheduler.createWorker();
+            this.startNanos = nowNanos(worker);
+            this.task = worker.schedulePeriodically(this::tick, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void add(Ticker ticker, long initialDelayNanos) {
+            long elapsedNanos = nowNanos(worker) - startNanos + initialDelayNanos;
+            long nearestTick = (elapsedNanos + periodNanos / 2) / periodNanos;
+            ticker.firstTick = Math.max(nearestTick, tick + 1);
+
+            Ticker[] current = subscribers;
+            Ticker[] next = new Ticker[current.length + 1];
+            System.arraycopy(current, 0, next, 0, current.length);
+            next[current.length] = ticker;
+            subscribers = next;
+        }
+
+        /**
+         * @return false if the ticker was already removed
+         */
+        boolean remove(Ticker ticker) {
+            Ticker[] current = subscribers;
+            int n = current.length;
+            int j = -1;
+            for(int i=0; i < n; i++) {
+                if(current[i] == ticker) {
+                    j = i;
+                    break;
+                }
+            }
+            if(j < 0) {
+                return false;
+            }
+            Ticker[] next = EMPTY;
+            if(n > 1) {
+                next = new Ticker[n - 1];
+                System.arraycopy(current, 0, next, 0, j);
+                System.arraycopy(current, j + 1, next, j, n - j - 1);
+            }
+            subscribers = next;
+            return true;
+        }
+
+        void tick() {
+            long current = tick + 1;
+            tick = current;
+            for(Ticker ticker : subscribers) {
+                if(current < ticker.firstTick || ticker.child.isUnsubscribed()) {
+                    continue;
+                }
+                try {
+                    ticker.child.onNext(ticker.count++);
+                } catch (Throwable ex) {
+                    Exceptions.throwOrReport(ex, ticker.child);
+                    SharedClock.this.remove(this, ticker);
+                }
+            }
+        }
+
+        void stop() {
+            task.unsubscribe();
+            worker.unsubscribe();
+        }
+    }
+
+    private static final class ComputationHolder {
+        static final SharedClock INSTANCE = new SharedClock(Schedulers::computation);
+    }
+}
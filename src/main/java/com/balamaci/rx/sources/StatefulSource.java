@@ -0,0 +1,65 @@
+package com.balamaci.rx.sources;
+
+import rx.Observable;
+import rx.Observer;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func2;
+import rx.observables.SyncOnSubscribe;
+
+/**
+ * Backpressure aware alternative to Observable.create().
+ *
+ * With Observable.create() the lambda pushes all the events as fast as it can, regardless of how many the
+ * subscriber asked for, which ends with a MissingBackpressureException behind an observeOn().
+ * A generator instead is called once for every element that downstream has requested, so it produces only
+ * as much as can be consumed without any buffering or dropping of events.
+ *
+ * On every call the generator receives the current state, must emit at most one onNext and / or a terminal
+ * event on the emitter, and returns the state for the next call.
+ *
+ * <pre>
+ * Observable&lt;Integer&gt; observable = StatefulSource.generate(0, (i, emitter) -&gt; {
+ *      if(i == 200) {
+ *          emitter.onCompleted();
+ *      } else {
+ *          emitter.onNext(i);
+ *      }
+ *      return i + 1;
+ * });
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public final class StatefulSource {
+
+    private StatefulSource() {
+    }
+
+    /**
+     * @param initialState starting state shared by all the subscriptions, so it should be an immutable value,
+     *                     use {@link #generateFrom(Func0, Func2)} for a mutable state
+     */
+    public static <S, T> Observable<T> generate(S initialState,
+                                                Func2<? super S, ? super Observer<? super T>, ? extends S> generator) {
+        return generateFrom(() -> initialState, generator);
+    }
+
+    /**
+     * @param stateFactory called for each new subscription to create the state of that subscription
+     */
+    public static <S, T> Observable<T> generateFrom(Func0<? extends S> stateFactory,
+                                                    Func2<? super S, ? super Observer<? super T>, ? extends S> generator) {
+        return Observable.create(SyncOnSubscribe.createStateful(stateFactory, generator));
+    }
+
+    /**
+     * @param onTerminate called with the last state when the source completes, fails or is unsubscribed,
+     *                    useful to release resources like an open file or a db cursor
+     */
+    public static <S, T> Observable<T> generateFrom(Func0<? extends S> stateFactory,
+                                                    Func2<? super S, ? super Observer<? super T>, ? extends S> generator,
+                                                    Action1<? super S> onTerminate) {
+        return Observable.create(SyncOnSubscribe.createStateful(stateFactory, generator, onTerminate));
+    }
+}
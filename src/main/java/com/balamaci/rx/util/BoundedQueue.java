@@ -0,0 +1,27 @@
+package com.balamaci.rx.util;
+
+/**
+ * Common operations of the fixed capacity, array backed queues.
+ *
+ * @author sbalamaci
+ */
+public interface BoundedQueue<E> {
+
+    /**
+     * @return false if the queue is full
+     */
+    boolean offer(E e);
+
+    /**
+     * @return null if the queue is empty
+     */
+    E poll();
+
+    boolean isEmpty();
+
+    int size();
+
+    int capacity();
+
+    void clear();
+}
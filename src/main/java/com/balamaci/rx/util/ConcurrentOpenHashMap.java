@@ -0,0 +1,292 @@
+package com.balamaci.rx.util;
+
+import rx.functions.Action2;
+import rx.functions.Func2;
+import rx.functions.Func3;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent hash map with open addressing: the keys and values are stored next to each other in a
+ * single array, probed linearly, so there's no node object per entry like in a ConcurrentHashMap.
+ *
+ * The map is split in sections, each guarded by its own StampedLock. Reads are optimistic and take the
+ * read lock only if a write went on in the meantime, writes take the section's write lock - with as many
+ * sections as writing threads they rarely contend. Removal shifts back the entries that follow,
+ * so no tombstones pile up with keys coming and going.
+ * Null keys and values are not allowed.
+ *
+ * @author sbalamaci
+ */
+public final class ConcurrentOpenHashMap<K, V> {
+
+    private static final float FILL_FACTOR = 0.66f;
+    private static final int DEFAULT_SECTIONS = 16;
+
+    private final Section<K, V>[] sections;
+    private final int sectionShift;
+
+    public ConcurrentOpenHashMap() {
+        this(256, DEFAULT_SECTIONS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentOpenHashMap(int expectedSize, int concurrency) {
+        if(expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize >= 0 required but it was " + expectedSize);
+        }
+        if(concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency > 0 required but it was " + concurrency);
+        }
+        int sectionCount = SpscArrayQueue.roundToPowerOfTwo(concurrency);
+        int perSection = (int) (expectedSize / sectionCount / FILL_FACTOR) + 1;
+        int capacity = SpscArrayQueue.roundToPowerOfTwo(Math.max(4, perSection));
+
+        this.sections = new Section[sectionCount];
+        for(int i=0; i < sectionCount; i++) {
+            sections[i] = new Section<>(capacity);
+        }
+        // the section is picked by the high bits of the hash, the bucket by the low ones
+        this.sectionShift = 32 - Integer.numberOfTrailingZeros(sectionCount);
+    }
+
+    public V get(K key) {
+        int hash = hash(key);
+        return section(hash).get(key, hash);
+    }
+
+    /**
+     * Atomically replaces the value of the key with remapping(key, current value or null, param),
+     * removing the key when it returns null. 'param' saves allocating a lambda capturing it on every call.
+     *
+     * @return the new value
+     */
+    public <P> V compute(K key, P param, Func3<? super K, ? super V, ? super P, ? extends V> remapping) {
+        int hash = hash(key);
+        return section(hash).compute(key, hash, param, remapping);
+    }
+
+    public V remove(K key) {
+        int hash = hash(key);
+        return section(hash).remove(key, hash);
+    }
+
+    /**
+     * Removes the entries matching the predicate, passing each of them to 'removed'.
+     * A section is locked while it's scanned, so the entries can't change in between.
+     */
+    public void removeIf(Func2<? super K, ? super V, Boolean> predicate, Action2<? super K, ? super V> removed) {
+        for(Section<K, V> section : sections) {
+            section.removeIf(predicate, removed);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for(Section<K, V> section : sections) {
+            size += section.size;
+        }
+        return size;
+    }
+
+    private Section<K, V> section(int hash) {
+        return sectionShift == 32 ? sections[0] : sections[hash >>> sectionShift];
+    }
+
+    static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Keys at the even indexes of the table, their values right after them
+     */
+    static final class Section<K, V> extends StampedLock {
+
+        Object[] table;
+        int capacity;
+        int resizeThreshold;
+        volatile int size;
+
+        Section(int capacity) {
+            this.table = new Object[2 * capacity];
+            this.capacity = capacity;
+            this.resizeThreshold = (int) (capacity * FILL_FACTOR);
+        }
+
+        V get(K key, int hash) {
+            long stamp = tryOptimisticRead();
+            if(stamp != 0L) {
+                Object[] t = table;
+                // with a concurrent write the probing may miss the key or run over the table, the stamp tells
+                V value = null;
+                boolean consistent = true;
+                try {
+                    value = find(t, key, hash);
+                } catch (RuntimeException raced) {
+                    consistent = false;
+                }
+                if(consistent && validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = readLock();
+            try {
+                return find(table, key, hash);
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <K, V> V find(Object[] t, K key, int hash) {
+            int mask = (t.length >> 1) - 1;
+            int bucket = hash & mask;
+            for(int probes = 0; probes <= mask; probes++) {
+                Object k = t[bucket << 1];
+                if(k == null) {
+                    return null;
+                }
+                if(k == key || k.equals(key)) {
+                    return (V) t[(bucket << 1) + 1];
+                }
+                bucket = (bucket + 1) & mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        <P> V compute(K key, int hash, P param, Func3<? super K, ? super V, ? super P, ? extends V> remapping) {
+            long stamp = writeLock();
+            try {
+                int bucket = indexOf(key, hash);
+                Object[] t = table;
+                boolean present = t[bucket << 1] != null;
+                V current = present ? (V) t[(bucket << 1) + 1] : null;
+
+                V value = remapping.call(key, current, param);
+                if(value == null) {
+                    if(present) {
+                        removeAt(bucket);
+                    }
+                } else if(present) {
+                    t[(bucket << 1) + 1] = value;
+                } else {
+                    t[bucket << 1] = key;
+                    t[(bucket << 1) + 1] = value;
+                    size++;
+                    if(size > resizeThreshold) {
+                        rehash();
+                    }
+                }
+                return value;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V remove(K key, int hash) {
+            long stamp = writeLock();
+            try {
+                int bucket = indexOf(key, hash);
+                if(table[bucket << 1] == null) {
+                    return null;
+                }
+                V value = (V) table[(bucket << 1) + 1];
+                removeAt(bucket);
+                return value;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void removeIf(Func2<? super K, ? super V, Boolean> predicate, Action2<? super K, ? super V> removed) {
+            long stamp = writeLock();
+            try {
+                Object[] t = table;
+                int bucket = 0;
+                while(bucket < capacity) {
+                    K key = (K) t[bucket << 1];
+                    V value = (V) t[(bucket << 1) + 1];
+                    if(key != null && predicate.call(key, value)) {
+                        removeAt(bucket);
+                        removed.call(key, value);
+                        // an entry following it may have been shifted into the bucket
+                        continue;
+                    }
+                    bucket++;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * @return the bucket holding the key, or the empty one where it would go
+         */
+        private int indexOf(Object key, int hash) {
+            Object[] t = table;
+            int mask = capacity - 1;
+            int bucket = hash & mask;
+            for(;;) {
+                Object k = t[bucket << 1];
+                if(k == null || k == key || k.equals(key)) {
+                    return bucket;
+                }
+                bucket = (bucket + 1) & mask;
+            }
+        }
+
+        /**
+         * Empties the bucket and moves back into it the following entries which would otherwise no longer be
+         * reachable from their home bucket
+         */
+        private void removeAt(int bucket) {
+            Object[] t = table;
+            int mask = capacity - 1;
+            int hole = bucket;
+            int next = bucket;
+            for(;;) {
+                next = (next + 1) & mask;
+                Object k = t[next << 1];
+                if(k == null) {
+                    break;
+                }
+                int home = hash(k) & mask;
+                // the entry stays if its home bucket is cyclically between the hole (excluded) and it
+                boolean stays = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+                if(!stays) {
+                    t[hole << 1] = k;
+                    t[(hole << 1) + 1] = t[(next << 1) + 1];
+                    hole = next;
+                }
+            }
+            t[hole << 1] = null;
+            t[(hole << 1) + 1] = null;
+            size--;
+        }
+
+        private void rehash() {
+            Object[] old = table;
+            int newCapacity = capacity * 2;
+            Object[] t = new Object[2 * newCapacity];
+            int mask = newCapacity - 1;
+            for(int i=0; i < old.length; i += 2) {
+                Object k = old[i];
+                if(k != null) {
+                    int bucket = hash(k) & mask;
+                    while(t[bucket << 1] != null) {
+                        bucket = (bucket + 1) & mask;
+                    }
+                    t[bucket << 1] = k;
+                    t[(bucket << 1) + 1] = old[i + 1];
+                }
+            }
+            table = t;
+            capacity = newCapacity;
+            resizeThreshold = (int) (newCapacity * FILL_FACTOR);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.balamaci.rx.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer multi-consumer queue backed by a preallocated array
+ * (Dmitry Vyukov's bounded MPMC queue), each slot carries a sequence number telling whether
+ * it's ready to be written or read for the current lap around the array.
+ *
+ * Used where besides the consumer, another thread needs to take elements out of the queue,
+ * like a producer evicting the oldest element of a full buffer.
+ * Null elements are not allowed.
+ *
+ * @author sbalamaci
+ */
+public final class MpmcArrayQueue<E> implements BoundedQueue<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final int capacity;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    public MpmcArrayQueue(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        }
+        int length = SpscArrayQueue.roundToPowerOfTwo(Math.max(2, capacity));
+        this.buffer = new AtomicReferenceArray<>(length);
+        this.sequences = new AtomicLongArray(length);
+        this.mask = length - 1;
+        this.capacity = capacity;
+        for(int i=0; i < length; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the queue is full
+     */
+    @Override
+    public boolean offer(E e) {
+        if(e == null) {
+            throw new NullPointerException("Null elements are not allowed");
+        }
+        for(;;) {
+            long index = producerIndex.get();
+            if(index - consumerIndex.get() >= capacity) {
+                return false;
+            }
+            int offset = (int) index & mask;
+            long sequence = sequences.get(offset);
+            if(sequence == index) {
+                if(producerIndex.compareAndSet(index, index + 1)) {
+                    buffer.lazySet(offset, e);
+                    sequences.lazySet(offset, index + 1);
+                    return true;
+                }
+            } else if(sequence < index) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return null if the queue is empty
+     */
+    @Override
+    public E poll() {
+        for(;;) {
+            long index = consumerIndex.get();
+            int offset = (int) index & mask;
+            long sequence = sequences.get(offset);
+            if(sequence == index + 1) {
+                if(consumerIndex.compareAndSet(index, index + 1)) {
+                    E e = buffer.get(offset);
+                    buffer.lazySet(offset, null);
+                    sequences.lazySet(offset, index + mask + 1);
+                    return e;
+                }
+            } else if(sequence < index + 1) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex.get() == consumerIndex.get();
+    }
+
+    @Override
+    public int size() {
+        for(;;) {
+            long before = consumerIndex.get();
+            long producer = producerIndex.get();
+            long after = consumerIndex.get();
+            if(before == after) {
+                return (int) (producer - after);
+            }
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void clear() {
+        while(poll() != null) {
+            //drop the elements
+        }
+    }
+}
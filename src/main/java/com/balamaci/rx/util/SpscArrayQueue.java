@@ -0,0 +1,118 @@
+package com.balamaci.rx.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free single-producer single-consumer queue backed by a preallocated array.
+ *
+ * Only one thread may call offer() and only one (possibly other) thread may call poll()/peek().
+ * Null elements are not allowed, a null returned by poll() means the queue is empty.
+ *
+ * @author sbalamaci
+ */
+public final class SpscArrayQueue<E> implements BoundedQueue<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+    private final int capacity;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    public SpscArrayQueue(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        }
+        int length = roundToPowerOfTwo(capacity);
+        this.buffer = new AtomicReferenceArray<>(length);
+        this.mask = length - 1;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Called only by the producer thread
+     * @return false if the queue is full
+     */
+    @Override
+    public boolean offer(E e) {
+        if(e == null) {
+            throw new NullPointerException("Null elements are not allowed");
+        }
+        long index = producerIndex.get();
+        if(index - consumerIndex.get() >= capacity) {
+            return false;
+        }
+        int offset = (int) index & mask;
+        if(buffer.get(offset) != null) {
+            return false;
+        }
+        buffer.lazySet(offset, e);
+        producerIndex.lazySet(index + 1);
+        return true;
+    }
+
+    /**
+     * Called only by the consumer thread
+     * @return null if the queue is empty
+     */
+    @Override
+    public E poll() {
+        long index = consumerIndex.get();
+        int offset = (int) index & mask;
+        E e = buffer.get(offset);
+        if(e == null) {
+            return null;
+        }
+        buffer.lazySet(offset, null);
+        consumerIndex.lazySet(index + 1);
+        return e;
+    }
+
+    /**
+     * Called only by the consumer thread
+     */
+    public E peek() {
+        return buffer.get((int) consumerIndex.get() & mask);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex.get() == consumerIndex.get();
+    }
+
+    /**
+     * Exact when called by the producer thread, the consumer can only make room in the meantime.
+     */
+    public boolean isFull() {
+        return producerIndex.get() - consumerIndex.get() >= capacity;
+    }
+
+    @Override
+    public int size() {
+        for(;;) {
+            long before = consumerIndex.get();
+            long producer = producerIndex.get();
+            long after = consumerIndex.get();
+            if(before == after) {
+                return (int) (producer - after);
+            }
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void clear() {
+        while(poll() != null) {
+            //drop the elements
+        }
+    }
+
+    public static int roundToPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+}
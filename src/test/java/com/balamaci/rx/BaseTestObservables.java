@@ -1,8 +1,11 @@
 package com.balamaci.rx;
 
+import com.balamaci.rx.sources.SharedClock;
+import com.balamaci.rx.sources.StatefulSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
+import rx.Observer;
 import rx.Subscriber;
 import rx.functions.Action0;
 import rx.functions.Action1;
@@ -18,17 +21,22 @@ public interface BaseTestObservables {
 
     Logger log = LoggerFactory.getLogger(BaseTestObservables.class);
 
+    /**
+     * Emits 1 and 2 and then completes, generating each event only when the subscriber requested it.
+     */
     default Observable<Integer> simpleObservable() {
-        Observable<Integer> observable = Observable.create(subscriber -> {
-            log.info("Started emitting");
-
-            log.info("Emitting 1st");
-            subscriber.onNext(1);
-
-            log.info("Emitting 2nd");
-            subscriber.onNext(2);
+        Observable<Integer> observable = StatefulSource.generate(1, (Integer val, Observer<? super Integer> emitter) -> {
+            if(val == 1) {
+                log.info("Started emitting");
+            }
+            if(val > 2) {
+                emitter.onCompleted();
+                return val;
+            }
 
-            subscriber.onCompleted();
+            log.info("Emitting {}", val);
+            emitter.onNext(val);
+            return val + 1;
         });
 
         return observable;
@@ -81,10 +89,13 @@ public interface BaseTestObservables {
         return periodicEmitter(t1, t2, t3, interval, unit, interval);
     }
 
+    /**
+     * The emitters with the same interval share the timer of the SharedClock instead of scheduling one each
+     */
     default  <T> Observable<T> periodicEmitter(T t1, T t2, T t3, int interval,
                                                TimeUnit unit, int initialDelay) {
         Observable<T> colors = Observable.just(t1, t2, t3);
-        Observable<Long> timer = Observable.interval(initialDelay, interval, unit);
+        Observable<Long> timer = SharedClock.computation().interval(initialDelay, interval, unit);
 
         return Observable.zip(colors, timer, (key, val) -> key);
     }
@@ -1,16 +1,26 @@
 package com.balamaci.rx;
 
+import com.balamaci.rx.cache.SingleFlightCache;
+import com.balamaci.rx.primitive.IntObservable;
+import com.balamaci.rx.sources.StatefulSource;
 import com.balamaci.rx.util.Helpers;
+import com.balamaci.rx.util.RealTime;
+import com.balamaci.rx.util.VirtualTimeRule;
+import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
+import rx.Observer;
 import rx.Subscriber;
 import rx.Subscription;
 import rx.observers.TestSubscriber;
 import rx.schedulers.Schedulers;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
@@ -21,6 +31,8 @@ public class Part01CreateObservable implements BaseTestObservables {
 
     private static final Logger log = LoggerFactory.getLogger(Part01CreateObservable.class);
 
+    @Rule
+    public VirtualTimeRule virtualTime = new VirtualTimeRule();
 
     @Test
     public void just() {
@@ -78,7 +90,7 @@ public class Part01CreateObservable implements BaseTestObservables {
         TestSubscriber<String> testSubscriber = TestSubscriber.create();
 
         Observable.fromCallable(() -> {
-            Thread.sleep(2_000);
+            Helpers.sleepMillis(2_000);
             log.info("Finished the callable");
             return "done";
         })//.subscribeOn(Schedulers.newThread())
@@ -90,6 +102,36 @@ public class Part01CreateObservable implements BaseTestObservables {
         testSubscriber.assertValue("done");
     }
 
+    /**
+     * Every subscription to a fromCallable() calls it again. SingleFlightCache has the subscribers for the same
+     * key which come while the callable is running share its result, and caches it for the next ones.
+     */
+    @Test
+    public void fromCallableThroughSingleFlightCache() throws Exception {
+        SingleFlightCache<String, String> colors = SingleFlightCache.create(key -> Observable.fromCallable(() -> {
+            log.info("Loading {}", key);
+            Helpers.sleepMillis(500);
+            return key.toUpperCase();
+        }).subscribeOn(Schedulers.io()), 100, 1, TimeUnit.MINUTES);
+
+        List<TestSubscriber<String>> subscribers = new ArrayList<>();
+        for(int i=0; i < 5; i++) {
+            TestSubscriber<String> testSubscriber = TestSubscriber.create();
+            colors.get("red").subscribe(testSubscriber);
+            subscribers.add(testSubscriber);
+        }
+        for(TestSubscriber<String> testSubscriber : subscribers) {
+            Helpers.awaitTerminalEvent(testSubscriber);
+            testSubscriber.assertValue("RED");
+        }
+
+        TestSubscriber<String> cached = TestSubscriber.create();
+        colors.get("red").subscribe(cached);
+        cached.assertValue("RED");
+
+        log.info("{}", colors.counters());
+    }
+
 
     @Test
     public void createAnObservableThatEmitsInAnInterval() throws Exception {
@@ -97,7 +139,7 @@ public class Part01CreateObservable implements BaseTestObservables {
 
         Observable.interval(1, 500, MILLISECONDS).take(2_750, MILLISECONDS).subscribe(testSubscriber);
 
-        testSubscriber.awaitTerminalEvent(3_000, MILLISECONDS);
+        Helpers.advanceTimeBy(3_000, MILLISECONDS);
         testSubscriber.assertCompleted();
         testSubscriber.assertValueCount(6);
     }
@@ -246,8 +288,12 @@ public class Part01CreateObservable implements BaseTestObservables {
      *      A) Zero, one or more than one calls to onNext
      *      B) Zero or only one call to either of onCompleted or onError
      * </li>
+     * The IO operation blocks an io() thread while the test waits for it with a timeout, so this one runs on the
+     * real Schedulers, the timeout falling half a second away from the values so a busy machine doesn't change
+     * how many are received.
      */
     @Test
+    @RealTime
     public void createAnObservableUsingCreate() throws Exception {
         TestSubscriber<Integer> testSubscriber = TestSubscriber.create();
 
@@ -286,6 +332,58 @@ public class Part01CreateObservable implements BaseTestObservables {
         testSubscriber.assertValueCount(2);
     }
 
+    /**
+     * Observables made with create() push their events regardless of how many the subscriber asked for.
+     * A generator is instead called once for every event the subscriber requested, receiving the state
+     * from the previous call and returning the state for the next one.
+     * It's a backpressure aware way to create our own Observables {@see Part07BackpressureHandling}.
+     */
+    @Test
+    public void createUsingStatefulSource() {
+        Observable<Integer> observable = StatefulSource.generate(1, (Integer val, Observer<? super Integer> emitter) -> {
+            log.info("Emitting {}", val);
+            emitter.onNext(val);
+
+            if(val == 5) {
+                emitter.onCompleted();
+            }
+            return val + 1;
+        });
+
+        TestSubscriber<Integer> testSubscriber = TestSubscriber.create(2); //initially request only 2 events
+        observable.subscribe(testSubscriber);
+        testSubscriber.assertValues(1, 2);
+
+        testSubscriber.requestMore(3);
+        testSubscriber.assertValues(1, 2, 3, 4, 5);
+        testSubscriber.assertCompleted();
+    }
+
+    /**
+     * IntObservable / LongObservable pass primitive values between the operators, so unlike
+     * Observable&lt;Integer&gt; there is no Integer object created for every value.
+     * boxed() bridges back to a regular Observable.
+     */
+    @Test
+    public void primitiveStreams() {
+        IntObservable.range(1, 10)
+                .map(val -> val * 2)
+                .filter(val -> val % 3 == 0)
+                .sum()
+                .subscribe(sum -> log.info("Sum {}", sum));
+
+        TestSubscriber<Integer> testSubscriber = TestSubscriber.create(2);
+        IntObservable.range(1, 10)
+                .filter(val -> val % 2 == 0)
+                .boxed()
+                .subscribe(testSubscriber);
+        testSubscriber.assertValues(2, 4);
+
+        testSubscriber.requestMore(3);
+        testSubscriber.assertValues(2, 4, 6, 8, 10);
+        testSubscriber.assertCompleted();
+    }
+
 //    @Test
 //    public
 
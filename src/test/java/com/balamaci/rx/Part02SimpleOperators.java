@@ -1,5 +1,11 @@
 package com.balamaci.rx;
 
+import com.balamaci.rx.schedulers.MoreSchedulers;
+import com.balamaci.rx.sources.SharedClock;
+import com.balamaci.rx.util.Helpers;
+import com.balamaci.rx.util.RealTime;
+import com.balamaci.rx.util.VirtualTimeRule;
+import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +20,9 @@ public class Part02SimpleOperators {
 
     private static final Logger log = LoggerFactory.getLogger(Part02SimpleOperators.class);
 
+    @Rule
+    public VirtualTimeRule virtualTime = new VirtualTimeRule();
+
     /**
      * Delay operator - the Thread.sleep of the reactive world, it's pausing for a particular increment of time
      * before emitting the whole range events which are thus shifted by the specified time amount.
@@ -22,21 +31,22 @@ public class Part02SimpleOperators {
      * running the operators and the subscribe operations on a different thread, which means the test method
      * will terminate before we see the text from the log.
      *
-     * To prevent this we use the .toBlocking() operator which returns a BlockingObservable. Operators on
-     * BlockingObservable block(wait) until upstream Observable is completed
+     * To prevent this we could use the .toBlocking() operator which returns a BlockingObservable. Operators on
+     * BlockingObservable block(wait) until upstream Observable is completed.
+     *
+     * Here the Schedulers run on the virtual clock of the VirtualTimeRule, and instead of waiting 5 seconds
+     * the test moves the clock, the delayed events being emitted on the main thread.
      */
     @Test
     public void delayOperator() {
         Observable.range(0, 5)
                 .delay(5, TimeUnit.SECONDS)
-                .toBlocking() //waits on the main thread for the Scheduler thread to finish.
                 .subscribe(
                         tick -> log.info("Tick {}", tick),
                         (ex) -> log.info("Error emitted"),
                         () -> log.info("Completed"));
 
-
-//        Helpers.sleepMillis(10000);
+        Helpers.advanceTimeBy(5, TimeUnit.SECONDS);
     }
 
     /**
@@ -47,11 +57,35 @@ public class Part02SimpleOperators {
         log.info("Starting");
         Observable.interval(1, TimeUnit.SECONDS)
                 .take(5)
-                .toBlocking()
                 .subscribe(
                         tick -> log.info("Tick {}", tick),
                         (ex) -> log.info("Error emitted"),
                         () -> log.info("Completed"));
+
+        Helpers.advanceTimeBy(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Every interval() schedules its own periodic task, a ticker for each of thousands of entities means thousands
+     * of timers. The intervals of a SharedClock with the same period share a single timer emitting to all of them,
+     * each subscriber still counting from 0.
+     */
+    @Test
+    public void thousandsOfTickersOnASharedClock() {
+        SharedClock clock = SharedClock.computation();
+        Observable<Long> tickers = Observable.range(0, 2000)
+                .flatMap(entity -> clock.interval(1, TimeUnit.SECONDS)
+                        .take(3), 2000)
+                .doOnSubscribe(() -> log.info("Started"));
+
+        Observable.timer(500, TimeUnit.MILLISECONDS)
+                .subscribe(tick -> log.info("Timers scheduled for 2000 tickers: {}", clock.timers()));
+
+        tickers.count()
+                .subscribe(count -> log.info("Ticks received {}", count));
+
+        Helpers.advanceTimeBy(3, TimeUnit.SECONDS);
+        log.info("Timers scheduled after completion: {}", clock.timers());
     }
 
     /**
@@ -61,13 +95,34 @@ public class Part02SimpleOperators {
     public void timerOperator() {
         log.info("Starting");
         Observable.timer(5, TimeUnit.SECONDS)
-                .toBlocking()
                 .subscribe(
                         tick -> log.info("Tick {}", tick),
                         (ex) -> log.info("Error emitted"),
                         () -> log.info("Completed"));
-    }
 
+        Helpers.advanceTimeBy(5, TimeUnit.SECONDS);
+    }
 
+    /**
+     * Timeout operator emits an error if the next event doesn't come within the time limit.
+     *
+     * A timeout() on every request means a timer scheduled and then canceled for every event, the timers
+     * piling up on Schedulers.computation(). MoreSchedulers.hashedWheel() keeps them in a timer wheel
+     * where scheduling and canceling are cheap, at the price of the timers firing up to a tick(10ms) late.
+     * The wheel keeps the real time on its own thread, so the test runs on the real Schedulers.
+     */
+    @Test
+    @RealTime
+    public void timeoutOnHashedWheel() {
+        Observable.interval(20, TimeUnit.MILLISECONDS, MoreSchedulers.hashedWheel())
+                .take(5)
+                .concatWith(Observable.never())
+                .timeout(100, TimeUnit.MILLISECONDS, MoreSchedulers.hashedWheel())
+                .toBlocking()
+                .subscribe(
+                        tick -> log.info("Tick {}", tick),
+                        (ex) -> log.info("Error emitted {}", ex.getClass().getSimpleName()),
+                        () -> log.info("Completed"));
+    }
 
 }
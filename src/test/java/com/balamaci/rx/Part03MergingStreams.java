@@ -1,12 +1,13 @@
 package com.balamaci.rx;
 
+import com.balamaci.rx.sources.SharedClock;
 import com.balamaci.rx.util.Helpers;
+import com.balamaci.rx.util.VirtualTimeRule;
 import javafx.util.Pair;
+import org.junit.Rule;
 import org.junit.Test;
 import rx.Observable;
-import rx.observables.BlockingObservable;
 
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -17,26 +18,25 @@ import java.util.concurrent.TimeUnit;
  */
 public class Part03MergingStreams implements BaseTestObservables {
 
+    @Rule
+    public VirtualTimeRule virtualTime = new VirtualTimeRule();
+
     /**
      * Zip operator operates sort of like a zipper in the sense that it takes an event from one stream and waits
      * for an event from another other stream. Once an event for the other stream arrives, it uses the zip function
      * to merge the two events.
      * This is an useful scenario when for example you want to make requests to remote services in parallel and
-     * wait for the response before continuing
+     * wait for the response before continuing. Here the remote services answer after 200ms and 2.3 seconds.
      *
      */
     @Test
     public void zipUsedToSlowDown() {
         CountDownLatch latch = new CountDownLatch(1);
 
-        Observable<Boolean> isBlockedStream = Observable.from(CompletableFuture.supplyAsync(() -> {
-                    Helpers.sleepMillis(200);
-                    return Boolean.FALSE;
-                }));
-        Observable<Integer> creditScoreStream = Observable.from(CompletableFuture.supplyAsync(() -> {
-                    Helpers.sleepMillis(2300);
-                    return 200;
-                }));
+        Observable<Boolean> isBlockedStream = Observable.just(Boolean.FALSE)
+                .delay(200, TimeUnit.MILLISECONDS);
+        Observable<Integer> creditScoreStream = Observable.just(200)
+                .delay(2300, TimeUnit.MILLISECONDS);
 
         Observable<Pair<Boolean, Integer>> periodicEmitter = Observable.zip(isBlockedStream, creditScoreStream,
                 Pair::new);
@@ -53,7 +53,7 @@ public class Part03MergingStreams implements BaseTestObservables {
         CountDownLatch latch = new CountDownLatch(1);
 
         Observable<String> colors = Observable.just("red", "green", "blue");
-        Observable<Long> timer = Observable.interval(2, TimeUnit.SECONDS);
+        Observable<Long> timer = SharedClock.computation().interval(2, TimeUnit.SECONDS);
 
         Observable<String> periodicEmitter = Observable.zip(colors, timer, (key, val) -> key);
         subscribeWithLog(periodicEmitter, latch);
@@ -65,25 +65,31 @@ public class Part03MergingStreams implements BaseTestObservables {
 
     @Test
     public void mergeOperator() {
+        CountDownLatch latch = new CountDownLatch(1);
         Observable<String> colors = periodicEmitter("red", "green", "blue", 2, TimeUnit.SECONDS);
 
-        Observable<Long> numbers = Observable.interval(1, TimeUnit.SECONDS)
+        Observable<Long> numbers = SharedClock.computation().interval(1, TimeUnit.SECONDS)
                 .take(2);
 
-        BlockingObservable observable = Observable.merge(colors, numbers).toBlocking();
-        subscribeWithLog(observable);
+        Observable observable = Observable.merge(colors, numbers);
+        subscribeWithLog(observable, latch);
+
+        Helpers.wait(latch);
     }
 
 
     @Test
     public void concatStreams() {
+        CountDownLatch latch = new CountDownLatch(1);
         Observable<String> colors = periodicEmitter("red", "green", "blue", 2, TimeUnit.SECONDS);
 
-        Observable<Long> numbers = Observable.interval(1, TimeUnit.SECONDS)
+        Observable<Long> numbers = SharedClock.computation().interval(1, TimeUnit.SECONDS)
                 .take(4);
 
-        BlockingObservable observable = Observable.concat(colors, numbers).toBlocking();
-        subscribeWithLog(observable);
+        Observable observable = Observable.concat(colors, numbers);
+        subscribeWithLog(observable, latch);
+
+        Helpers.wait(latch);
     }
 
 
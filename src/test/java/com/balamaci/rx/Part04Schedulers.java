@@ -1,11 +1,22 @@
 package com.balamaci.rx;
 
+import com.balamaci.rx.fusion.Fusion;
+import com.balamaci.rx.schedulers.MoreSchedulers;
+import com.balamaci.rx.schedulers.SchedulerTransformers;
 import com.balamaci.rx.util.Helpers;
+import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 import rx.Observable;
+import rx.Scheduler;
 import rx.schedulers.Schedulers;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * RxJava provides some high level concepts for concurrent execution, like ExecutorService we're not dealing
@@ -28,6 +39,9 @@ import java.util.concurrent.CountDownLatch;
  * 'interval' need to run on a Scheduler, otherwise they would just block the subscribing thread.
  * By default **Schedulers.computation()** is used, but the Scheduler can be passed as a parameter.
  *
+ * Being about the threads running the code, these scenarios run on the real Schedulers and not on the virtual clock
+ * of the VirtualTimeRule the other parts use.
+ *
  * @author sbalamaci
  */
 public class Part04Schedulers implements BaseTestObservables {
@@ -43,7 +57,7 @@ public class Part04Schedulers implements BaseTestObservables {
 
         Observable<Integer> observable = Observable.create(subscriber -> { //code that will execute inside the IO ThreadPool
             log.info("Starting slow network op");
-            Helpers.sleepMillis(2000);
+            Helpers.sleepMillis(200);
 
             log.info("Emitting 1st");
             subscriber.onNext(1);
@@ -62,6 +76,97 @@ public class Part04Schedulers implements BaseTestObservables {
     }
 
 
+    /**
+     * Same slow network call as in testSubscribeOn, but running on a virtual thread. A blocked virtual
+     * thread doesn't hold on to a platform thread, so unlike with Schedulers.io() many concurrent blocking
+     * subscriptions don't mean as many platform threads. Needs Java 21 or newer.
+     */
+    @Test
+    public void testSubscribeOnVirtualThreads() {
+        assumeVirtualThreads();
+        log.info("Starting");
+
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Observable<Integer> observable = Observable.create(subscriber -> { //code that will execute on a virtual thread
+            log.info("Starting slow network op");
+            Helpers.sleepMillis(200);
+
+            log.info("Emitting 1st");
+            subscriber.onNext(1);
+
+            subscriber.onCompleted();
+        });
+        observable = observable.subscribeOn(MoreSchedulers.virtual())
+                .map(val -> {
+                    int newValue = val * 2;
+                    log.info("Mapping new val {}", newValue);
+                    return newValue;
+                });
+
+        subscribeWithLog(observable, latch);
+        Helpers.wait(latch);
+    }
+
+    /**
+     * A Worker of virtual() runs its tasks one at a time, in the order they were scheduled, though each time it
+     * runs out of tasks the next ones start on a new virtual thread - and a task parked on a sleep doesn't let
+     * the following one start.
+     */
+    @Test
+    public void virtualThreadWorkerKeepsOrder() {
+        assumeVirtualThreads();
+
+        Scheduler.Worker worker = MoreSchedulers.virtual().createWorker();
+        List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlapping = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            for(int i=0; i < 1_000; i++) {
+                int id = i;
+                worker.schedule(() -> {
+                    if(running.incrementAndGet() > 1) {
+                        overlapping.incrementAndGet();
+                    }
+                    if(id % 100 == 0) {
+                        Helpers.sleepMillis(5);
+                    }
+                    ran.add(id);
+                    running.decrementAndGet();
+                    if(id == 999) {
+                        latch.countDown();
+                    }
+                });
+                if(id % 250 == 0) {
+                    Helpers.sleepMillis(20); //lets the Worker run out of tasks
+                }
+            }
+            Helpers.wait(latch);
+        } finally {
+            worker.unsubscribe();
+        }
+
+        Assert.assertEquals("tasks running at the same time", 0, overlapping.get());
+        List<Integer> expected = new ArrayList<>();
+        for(int i=0; i < 1_000; i++) {
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, ran);
+    }
+
+    /**
+     * Skips the virtual threads scenarios before Java 21, except with the virtual-threads profile of the build
+     * which requires them to run
+     */
+    private static void assumeVirtualThreads() {
+        if(Boolean.getBoolean("virtualThreads.required")) {
+            Assert.assertTrue("Virtual threads required, running on Java " + System.getProperty("java.version"),
+                    MoreSchedulers.isVirtualThreadsSupported());
+        }
+        Assume.assumeTrue("Virtual threads not supported", MoreSchedulers.isVirtualThreadsSupported());
+    }
+
     /**
      * observeOn switches the thread that is used for the subscribers downstream.
      * If we initially subscribedOn the IoScheduler we and we
@@ -112,4 +217,59 @@ public class Part04Schedulers implements BaseTestObservables {
         Helpers.wait(latch);
     }
 
+    /**
+     * A source which can be read by index, like a range or an array, doesn't need the queue observeOn puts
+     * between the producing thread and the consuming one. Fusion.observeOn lets the worker of the
+     * computation Scheduler read the values directly from the source.
+     */
+    @Test
+    public void fusedObserveOn() {
+        log.info("Starting");
+
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Observable<String> observable = Fusion.range(1, 5)
+                .compose(Fusion.observeOn(Schedulers.computation()))
+                .map(val -> {
+                    int newValue = val * 2;
+                    log.info("Mapping new val {}", newValue);
+                    return newValue;
+                })
+                .filter(val -> val > 2)
+                .map(Object::toString);
+
+        subscribeWithLog(observable, latch);
+        Helpers.wait(latch);
+    }
+
+    /**
+     * observeOn hands the values to the other thread one at a time, through a queue, and schedules the worker
+     * for every burst. observeOnBatched passes them in arrays of 'batchSize', waking up the worker only when an array
+     * fills or after 'maxLatency' - here the few values go in a single wake up after 10ms - and can also emit
+     * the arrays as Lists.
+     */
+    @Test
+    public void testObserveOnBatched() {
+        log.info("Starting");
+
+        CountDownLatch latch = new CountDownLatch(2);
+
+        Observable<Integer> observable = simpleObservable()
+                .subscribeOn(Schedulers.io())
+                .compose(SchedulerTransformers.observeOnBatched(Schedulers.computation(), 100,
+                        10, TimeUnit.MILLISECONDS))
+                .map(val -> {
+                    int newValue = val * 2;
+                    log.info("Mapping new val {}", newValue);
+                    return newValue;
+                });
+        subscribeWithLog(observable, latch);
+
+        Observable<List<Integer>> batches = Observable.range(1, 10)
+                .compose(SchedulerTransformers.observeOnBatchedLists(Schedulers.computation(), 4,
+                        10, TimeUnit.MILLISECONDS));
+        subscribeWithLog(batches, latch);
+
+        Helpers.wait(latch);
+    }
 }
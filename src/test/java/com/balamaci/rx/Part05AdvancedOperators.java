@@ -1,12 +1,27 @@
 package com.balamaci.rx;
 
+import com.balamaci.rx.aggregation.Aggregate;
+import com.balamaci.rx.aggregation.EventTimeWindows;
+import com.balamaci.rx.aggregation.WindowAggregates;
+import com.balamaci.rx.grouping.GroupingTransformers;
+import com.balamaci.rx.metrics.OperatorTracing;
+import com.balamaci.rx.metrics.SimpleMetricsRegistry;
+import com.balamaci.rx.util.Helpers;
+import com.balamaci.rx.util.Isolated;
+import com.balamaci.rx.util.VirtualTimeRule;
 import javafx.util.Pair;
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 import rx.Observable;
-import rx.observables.BlockingObservable;
+import rx.functions.Func0;
 import rx.observables.GroupedObservable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -14,39 +29,91 @@ import java.util.concurrent.TimeUnit;
  */
 public class Part05AdvancedOperators implements BaseTestObservables {
 
+    @Rule
+    public VirtualTimeRule virtualTime = new VirtualTimeRule();
+
     @Test
     public void buffer() {
-        Observable<Long> numbers = Observable.interval(1, TimeUnit.SECONDS);
+        Observable<Long> numbers = Observable.interval(1, TimeUnit.SECONDS)
+                .take(20);
 
-        BlockingObservable<List<Long>> delayedNumbersWindow = numbers
-                .buffer(5).toBlocking();
+        Observable<List<Long>> delayedNumbersWindow = numbers
+                .buffer(5);
 
         subscribeWithLog(delayedNumbersWindow);
+        Helpers.advanceTimeBy(20, TimeUnit.SECONDS);
     }
 
     @Test
     public void simpleWindow() {
-        Observable<Long> numbers = Observable.interval(1, TimeUnit.SECONDS);
+        Observable<Long> numbers = Observable.interval(1, TimeUnit.SECONDS)
+                .take(20);
 
-        BlockingObservable<Long> delayedNumbersWindow = numbers
+        Observable<Long> delayedNumbersWindow = numbers
                 .window(5)
-                .flatMap(window -> window.doOnCompleted(() -> log.info("Window completed")))
-                .toBlocking();
+                .flatMap(window -> window.doOnCompleted(() -> log.info("Window completed")));
 
         subscribeWithLog(delayedNumbersWindow);
+        Helpers.advanceTimeBy(20, TimeUnit.SECONDS);
     }
 
 
     @Test
     public void window() {
-        Observable<Long> numbers = Observable.interval(1, TimeUnit.SECONDS);
+        Observable<Long> numbers = Observable.interval(1, TimeUnit.SECONDS)
+                .take(30);
 
-        BlockingObservable<Long> delayedNumbersWindow = numbers
+        Observable<Long> delayedNumbersWindow = numbers
                 .window(10, 5, TimeUnit.SECONDS)
-                .flatMap(window -> window.doOnCompleted(() -> log.info("Window completed")))
-                .toBlocking();
+                .flatMap(window -> window.doOnCompleted(() -> log.info("Window completed")));
 
         subscribeWithLog(delayedNumbersWindow);
+        Helpers.advanceTimeBy(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Instead of collecting the values of a window in a List to compute something on them when it closes,
+     * WindowAggregates keeps the count, sum, min, max and percentiles up to date as the values come. The sliding
+     * windows of 1 second opening every 500ms share the panes of 500ms they overlap on.
+     */
+    @Test
+    public void windowAggregates() {
+        Observable<Long> numbers = Observable.interval(100, TimeUnit.MILLISECONDS)
+                .take(30);
+
+        Observable<Aggregate> tumbling = numbers
+                .compose(WindowAggregates.tumbling(val -> val, 1, TimeUnit.SECONDS));
+        subscribeWithLog(tumbling);
+        Helpers.advanceTimeBy(3, TimeUnit.SECONDS);
+
+        Observable<Aggregate> sliding = numbers
+                .compose(WindowAggregates.sliding(val -> val, 1000, 500, TimeUnit.MILLISECONDS));
+        subscribeWithLog(sliding);
+        Helpers.advanceTimeBy(3, TimeUnit.SECONDS);
+    }
+
+    /**
+     * The windows above use the time the values arrive at. When the values carry the time at which they happened,
+     * and come out of order, the windows are by their event time and close as the watermark - the highest timestamp
+     * minus the out of orderness allowed - passes their end. Every 4th reading is 300ms behind, the straggler 1 second
+     * behind updates a window already emitted, and the one 2.5 seconds behind comes after its window was discarded.
+     */
+    @Test
+    public void eventTimeWindows() {
+        Observable<Long> readingTimestamps = Observable.interval(50, TimeUnit.MILLISECONDS)
+                .take(60)
+                .map(tick -> tick % 4 == 3 ? 1000 + tick * 50 - 300 : 1000 + tick * 50)
+                .concatWith(Observable.just(2900L, 1400L).delay(300, TimeUnit.MILLISECONDS));
+
+        Observable<Aggregate> windows = readingTimestamps
+                .compose(EventTimeWindows.<Long>of(timestamp -> timestamp, timestamp -> timestamp % 1000)
+                        .window(1, TimeUnit.SECONDS)
+                        .maxOutOfOrderness(200, TimeUnit.MILLISECONDS)
+                        .allowedLateness(1, TimeUnit.SECONDS)
+                        .lateItems(late -> log.info("Late reading {}", late)));
+
+        subscribeWithLog(windows);
+        Helpers.advanceTimeBy(4, TimeUnit.SECONDS);
     }
 
     @Test
@@ -64,4 +131,108 @@ public class Part05AdvancedOperators implements BaseTestObservables {
 
         subscribeWithLog(colorCountStream.toBlocking());
     }
+
+    /**
+     * groupBy creates a GroupedObservable and the count() and map() Subscribers for every color, which is fine for a
+     * handful of colors but not for millions of distinct keys. countByKey / reduceByKey keep only a counter / accumulator
+     * per key and emit the key with its result, here as soon as a color wasn't seen for 500ms.
+     */
+    @Test
+    public void countByKey() {
+        Observable<String> colors = Observable.from(new String[] { "red", "green", "blue",
+                "red", "yellow", "green", "green"});
+
+        Observable<Map.Entry<String, Long>> colorCountStream = colors
+                .concatWith(Observable.just("red").delay(1, TimeUnit.SECONDS))
+                .compose(GroupingTransformers.countByKey(val -> val, 500, TimeUnit.MILLISECONDS));
+
+        subscribeWithLog(colorCountStream);
+        Helpers.advanceTimeBy(2, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Same groupBy as above, with each operator traced to see where the time goes.
+     * The flame graph can be saved in a file and rendered with flamegraph.pl or https://www.speedscope.app
+     */
+    @Test
+    @Category(Isolated.class)
+    public void groupByTraced() {
+        SimpleMetricsRegistry registry = new SimpleMetricsRegistry();
+        OperatorTracing tracing = OperatorTracing.install(registry);
+        try {
+            Observable<String> numbers = Observable.from(new String[] { "red", "green", "blue",
+                    "red", "yellow", "green", "green"});
+
+            Observable<Pair<String, Integer>> colorCountStream = numbers
+                    .groupBy(val -> val)
+                    .flatMap(groupedColor -> groupedColor
+                            .count()
+                            .map(count -> new Pair<>(groupedColor.getKey(), count)));
+
+            subscribeWithLog(colorCountStream.toBlocking());
+        } finally {
+            tracing.uninstall();
+        }
+
+        log.info("Metrics {}", registry.report());
+        log.info("Flame graph \n{}", tracing.flameGraph());
+    }
+
+    /**
+     * Each stage of the flame graph is the path of the operators a value went through. The sources of zip and merge
+     * are values of the Observable they're lifted on, their paths continue from it and end with the zip or merge
+     * consuming them.
+     */
+    @Test
+    @Category(Isolated.class)
+    public void tracedPaths() {
+        Assert.assertEquals(Arrays.asList(
+                "range;map",
+                "range;map;filter",
+                "range;map;filter;SafeSubscriber"),
+                tracedPaths(() -> Observable.range(0, 3)
+                        .map(val -> val * 2)
+                        .filter(val -> val > 0)));
+
+        Assert.assertEquals(Arrays.asList(
+                "ScalarSynchronousObservable;range;filter",
+                "ScalarSynchronousObservable;range;filter;zip",
+                "ScalarSynchronousObservable;range;map",
+                "ScalarSynchronousObservable;range;map;zip",
+                "ScalarSynchronousObservable;zip",
+                "ScalarSynchronousObservable;zip;map",
+                "ScalarSynchronousObservable;zip;map;SafeSubscriber"),
+                tracedPaths(() -> Observable.zip(
+                        Observable.range(0, 3).map(val -> val * 2),
+                        Observable.range(0, 3).filter(val -> val > 0),
+                        (val1, val2) -> val1 + val2)
+                        .map(val -> val + 1)));
+
+        Assert.assertEquals(Arrays.asList(
+                "fromArray;merge",
+                "fromArray;merge;map",
+                "fromArray;merge;map;SafeSubscriber",
+                "fromArray;range;filter",
+                "fromArray;range;filter;merge",
+                "fromArray;range;map",
+                "fromArray;range;map;merge"),
+                tracedPaths(() -> Observable.merge(
+                        Observable.range(0, 3).map(val -> val * 2),
+                        Observable.range(0, 3).filter(val -> val > 0))
+                        .map(val -> val + 1)));
+    }
+
+    private List<String> tracedPaths(Func0<Observable<Integer>> chain) {
+        OperatorTracing tracing = OperatorTracing.install(new SimpleMetricsRegistry());
+        try {
+            chain.call().subscribe();
+        } finally {
+            tracing.uninstall();
+        }
+        List<String> paths = new ArrayList<>();
+        for(String stage : tracing.flameGraph().split("\n")) {
+            paths.add(stage.substring(0, stage.lastIndexOf(' ')));
+        }
+        return paths;
+    }
 }
@@ -1,15 +1,31 @@
 package com.balamaci.rx;
 
+import com.balamaci.rx.backpressure.AdaptiveZip;
+import com.balamaci.rx.backpressure.BackpressureTransformers;
+import com.balamaci.rx.backpressure.BackpressuredPublishProcessor;
+import com.balamaci.rx.backpressure.OverflowCounters;
+import com.balamaci.rx.backpressure.OverflowStrategy;
+import com.balamaci.rx.backpressure.ZipPrefetch;
+import com.balamaci.rx.sources.StatefulSource;
 import com.balamaci.rx.util.Helpers;
+import com.balamaci.rx.util.RealTime;
+import com.balamaci.rx.util.VirtualTimeRule;
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
+import rx.Observer;
+import rx.internal.util.RxRingBuffer;
+import rx.observers.TestSubscriber;
 import rx.schedulers.Schedulers;
 import rx.subjects.PublishSubject;
 
+import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author sbalamaci
@@ -18,6 +34,13 @@ public class Part07BackpressureHandling implements BaseTestObservables {
 
     private static final Logger log = LoggerFactory.getLogger(Part07BackpressureHandling.class);
 
+    /**
+     * On the virtual clock the producer emits all its events before the subscriber on the io() Scheduler gets
+     * the first one, the way it would with a subscriber much slower than the producer.
+     */
+    @Rule
+    public VirtualTimeRule virtualTime = new VirtualTimeRule();
+
     @Test
     public void throwingBackpressureNotSupported() {
         CountDownLatch latch = new CountDownLatch(1);
@@ -73,6 +96,33 @@ public class Part07BackpressureHandling implements BaseTestObservables {
         Helpers.wait(latch);
     }
 
+    /**
+     * Unlike the PublishSubject above, BackpressuredPublishProcessor keeps a bounded queue for each subscriber
+     * and onNext returns false when the slowest subscriber has no more room, instead of overrunning it.
+     * onNextBlocking parks the producing thread until there is room, so all the events are delivered.
+     * The subscribers have to run on other threads than the parked producer, on the real Schedulers.
+     */
+    @Test
+    @RealTime
+    public void backpressuredPublishProcessor() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+
+        BackpressuredPublishProcessor<Integer> processor = BackpressuredPublishProcessor.create(16);
+
+        subscribeWithLog(processor.observeOn(Schedulers.computation()), latch);
+        subscribeWithSlowSubscriber(processor.observeOn(Schedulers.io()), latch, 2);
+
+        for(int i=0; i < 200; i++) {
+            if(! processor.onNext(i)) {
+                log.info("Slowest subscriber is full, waiting to emit {}", i);
+                processor.onNextBlocking(i);
+            }
+        }
+        processor.onCompleted();
+
+        Helpers.wait(latch);
+    }
+
     /**
      * Zipping a slow stream with a faster one also can cause a backpressure problem
      */
@@ -90,6 +140,69 @@ public class Part07BackpressureHandling implements BaseTestObservables {
         Helpers.wait(latch);
     }
 
+    /**
+     * AdaptiveZip doesn't have the fixed limit of 128 buffered events. Since the fast stream doesn't support
+     * backpressure its events have to be buffered, but only those which waited less than a second for a
+     * counterpart from the slow stream are kept, the older ones are dropped.
+     */
+    @Test
+    public void zipWithTimeBoundedBuffer() {
+        CountDownLatch latch = new CountDownLatch(1);
+        OverflowCounters counters = new OverflowCounters();
+
+        Observable<Integer> fast = observableWithoutBackpressureSupport();
+        Observable<Long> slowStream = Observable.interval(100, TimeUnit.MILLISECONDS);
+
+        Observable<String> observable = AdaptiveZip.zip(fast, slowStream,
+                (val1, val2) -> val1 + " " + val2,
+                ZipPrefetch.fixed(128).dropOlderThan(1, TimeUnit.SECONDS), counters);
+
+        subscribeWithLog(observable, latch);
+        Helpers.wait(latch);
+        log.info("Dropped {} stale events", counters.dropped());
+    }
+
+    /**
+     * When both streams support backpressure, the adaptive prefetch requests from the fast stream
+     * batches sized to what the slow stream emits in a window of time, instead of always 128 events.
+     */
+    @Test
+    public void zipWithAdaptivePrefetch() {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger requestedFromFast = new AtomicInteger();
+
+        Observable<Integer> fast = Observable.range(0, 1_000_000)
+                .doOnRequest(n -> {
+                    log.info("Fast stream requested {}", n);
+                    requestedFromFast.addAndGet(n.intValue());
+                });
+        Observable<Long> slowStream = Observable.interval(100, TimeUnit.MILLISECONDS)
+                .take(20);
+
+        Observable<String> observable = AdaptiveZip.zip(fast, slowStream,
+                (val1, val2) -> val1 + " " + val2,
+                ZipPrefetch.adaptive(1, 128, 500, TimeUnit.MILLISECONDS));
+
+        subscribeWithLog(observable, latch);
+        Helpers.wait(latch);
+        log.info("Requested {} events from the fast stream for 20 zipped events", requestedFromFast.get());
+    }
+
+    /**
+     * Without sources there's nothing to zip, the zip completes right away instead of emitting empty tuples.
+     */
+    @Test
+    public void zipWithoutSources() {
+        TestSubscriber<Integer> testSubscriber = TestSubscriber.create(5);
+
+        AdaptiveZip.<Integer>zip(Collections.emptyList(), args -> args.length,
+                ZipPrefetch.fixed(128), new OverflowCounters())
+            .subscribe(testSubscriber);
+
+        testSubscriber.assertNoValues();
+        testSubscriber.assertCompleted();
+    }
+
     @Test
     public void backpressureAwareObservable() {
         CountDownLatch latch = new CountDownLatch(1);
@@ -103,6 +216,48 @@ public class Part07BackpressureHandling implements BaseTestObservables {
         Helpers.wait(latch);
     }
 
+    /**
+     * An Observable generated with StatefulSource produces the next event only when the subscriber requested it,
+     * so the same slow subscriber receives all the 200 events without any buffering or dropping. The generator
+     * never gets further ahead of the slow subscriber than the fixed size queue of observeOn.
+     */
+    @Test
+    public void generatedObservableHonorsBackpressure() {
+        AtomicInteger generated = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+
+        Observable<Integer> observable = observableWithBackpressureSupport()
+                .doOnNext(val -> generated.incrementAndGet())
+                .observeOn(Schedulers.io());
+
+        TestSubscriber<Integer> testSubscriber = TestSubscriber.create(new Observer<Integer>() {
+            private int received;
+
+            @Override public void onNext(Integer val) {
+                received++;
+                maxAhead.set(Math.max(maxAhead.get(), generated.get() - received));
+                log.info("Got {}", val);
+                Helpers.sleepMillis(5);
+            }
+
+            @Override public void onError(Throwable e) {
+                log.error("Subscriber got error", e);
+            }
+
+            @Override public void onCompleted() {
+                log.info("Completed");
+            }
+        });
+        observable.subscribe(testSubscriber);
+
+        Helpers.awaitTerminalEvent(testSubscriber);
+        testSubscriber.assertNoErrors();
+        testSubscriber.assertValueCount(200);
+        testSubscriber.assertReceivedOnNext(Observable.range(0, 200).toList().toBlocking().single());
+        log.info("Generator was at most {} events ahead of the subscriber", maxAhead.get());
+        Assert.assertTrue(maxAhead.get() <= RxRingBuffer.SIZE);
+    }
+
     // Handling
     //========================================================
 
@@ -121,6 +276,73 @@ public class Part07BackpressureHandling implements BaseTestObservables {
     }
 
 
+    /**
+     * onBackpressureDrop has no buffer at all, while onBackpressureBuffer by default buffers without limits.
+     * A bounded buffer keeps a limited number of events for the slow subscriber and applies an overflow strategy
+     * for the ones that don't fit.
+     *
+     * DROP_OLDEST - evicts the oldest buffered event to make room for the new one, the subscriber gets the most
+     * recent events
+     */
+    @Test
+    public void dropOldestOverflowingEvents() {
+        subscribeWithBoundedBuffer(OverflowStrategy.DROP_OLDEST);
+    }
+
+    /**
+     * DROP_LATEST - the new event is dropped while the buffer is full, the subscriber gets the first events
+     * and whatever arrives after it made room in the buffer
+     */
+    @Test
+    public void dropLatestOverflowingEvents() {
+        subscribeWithBoundedBuffer(OverflowStrategy.DROP_LATEST);
+    }
+
+    /**
+     * ERROR - unsubscribes from the source when the buffer overflows, the subscriber receives the buffered events
+     * followed by a MissingBackpressureException
+     */
+    @Test
+    public void errorOnOverflowingEvents() {
+        subscribeWithBoundedBuffer(OverflowStrategy.ERROR);
+    }
+
+    /**
+     * BLOCK_PRODUCER - the emitting thread is blocked until the subscriber makes room in the buffer, so no event is
+     * lost. It only works with the subscriber on a different thread than the producer, here because of observeOn
+     * on the real io() Scheduler
+     */
+    @Test
+    @RealTime
+    public void blockProducerOnOverflowingEvents() {
+        subscribeWithBoundedBuffer(OverflowStrategy.BLOCK_PRODUCER, 2);
+    }
+
+    /**
+     * SAMPLE_LATEST - conflates the overflowing events, keeping only the most recent one which is delivered after
+     * the buffered events. Useful when only the latest value matters, like a price or a position
+     */
+    @Test
+    public void sampleLatestOverflowingEvents() {
+        subscribeWithBoundedBuffer(OverflowStrategy.SAMPLE_LATEST);
+    }
+
+    private void subscribeWithBoundedBuffer(OverflowStrategy strategy) {
+        subscribeWithBoundedBuffer(strategy, 50);
+    }
+
+    private void subscribeWithBoundedBuffer(OverflowStrategy strategy, int subscriberPauseMillis) {
+        CountDownLatch latch = new CountDownLatch(1);
+        OverflowCounters counters = new OverflowCounters();
+
+        Observable<Integer> observable = observableWithoutBackpressureSupport()
+                .compose(BackpressureTransformers.onBackpressureBufferBounded(16, strategy, counters))
+                .observeOn(Schedulers.io(), 1);
+        subscribeWithSlowSubscriber(observable, latch, subscriberPauseMillis);
+
+        Helpers.wait(latch);
+        log.info("{} {}", strategy, counters);
+    }
 
     private Observable<Integer> observableWithoutBackpressureSupport() {
         return Observable.create(subscriber -> {
@@ -135,10 +357,37 @@ public class Part07BackpressureHandling implements BaseTestObservables {
         });
     }
 
+    /**
+     * Same 200 events, but each one generated only when it was requested
+     */
+    private Observable<Integer> observableWithBackpressureSupport() {
+        return StatefulSource.generate(0, (Integer i, Observer<? super Integer> emitter) -> {
+            if(i == 0) {
+                log.info("Started emitting");
+            }
+            if(i == 200) {
+                emitter.onCompleted();
+                return i;
+            }
+
+            log.info("Emitting {}", i);
+            emitter.onNext(i);
+            return i + 1;
+        });
+    }
+
     private void subscribeWithSlowSubscriber(Observable observable, CountDownLatch latch ) {
+        subscribeWithSlowSubscriber(observable, latch, 50);
+    }
+
+    /**
+     * @param pauseMillis the time the subscriber takes for every event, on the real Schedulers a short one keeps
+     *                    the 200 events from taking 10 seconds
+     */
+    private void subscribeWithSlowSubscriber(Observable observable, CountDownLatch latch, int pauseMillis) {
         observable.subscribe(val -> {
                     log.info("Got {}", val);
-                    Helpers.sleepMillis(50);
+                    Helpers.sleepMillis(pauseMillis);
                 },
                 err -> {
                     log.error("Subscriber got error", err);
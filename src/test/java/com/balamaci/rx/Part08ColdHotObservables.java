@@ -1,8 +1,15 @@
 package com.balamaci.rx;
 
+import com.balamaci.rx.multicast.MulticastTransformers;
+import com.balamaci.rx.multicast.RingBufferReplay;
+import com.balamaci.rx.multicast.ShareCounters;
+import com.balamaci.rx.sources.SharedClock;
 import com.balamaci.rx.util.Helpers;
+import com.balamaci.rx.util.VirtualTimeRule;
+import org.junit.Rule;
 import org.junit.Test;
 import rx.Observable;
+import rx.Subscription;
 import rx.observables.ConnectableObservable;
 
 import java.util.List;
@@ -23,6 +30,9 @@ import java.util.concurrent.TimeUnit;
  */
 public class Part08ColdHotObservables implements BaseTestObservables {
 
+    @Rule
+    public VirtualTimeRule virtualTime = new VirtualTimeRule();
+
     /**
      * Hot Observables can be used for different purposes and be created in many ways.
      * Sometimes you may want to convert a cold Observable into a hot one, perhaps because
@@ -47,17 +57,64 @@ public class Part08ColdHotObservables implements BaseTestObservables {
     @Test
     public void hotColdObservables() {
         ConnectableObservable<Long> timer =
-            Observable.interval(1, TimeUnit.SECONDS).publish();
+            SharedClock.computation().interval(1, TimeUnit.SECONDS).publish();
 
         subscribeWithLog(timer);
 
-        timer.connect();
+        Subscription connection = timer.connect();
 
         Helpers.sleepMillis(5000);
 
         subscribeWithLog(timer.map(i -> i * 1000));
 
         Helpers.sleepMillis(5000);
+        connection.unsubscribe();
+    }
+
+    /**
+     * The second subscriber above missed the first 5 values. replay() keeps them for the late subscribers, here
+     * the last 3 values, in a preallocated ring where every subscriber reads from its own position, so the late
+     * subscriber starts with 2, 3 and 4 before the live values.
+     */
+    @Test
+    public void hotObservableReplayingTheLastValues() {
+        ConnectableObservable<Long> timer = RingBufferReplay.create(
+                SharedClock.computation().interval(1, TimeUnit.SECONDS), 3, 10, TimeUnit.SECONDS);
+
+        subscribeWithLog(timer);
+
+        Subscription connection = timer.connect();
+
+        Helpers.sleepMillis(5500);
+
+        subscribeWithLog(timer.map(i -> i * 1000));
+
+        Helpers.sleepMillis(3000);
+        connection.unsubscribe();
+    }
+
+    /**
+     * Instead of calling connect() by hand, share() subscribes to the source with the first subscriber and
+     * unsubscribes when the last one goes away, subscribing again for the next one - the timer would restart from 0.
+     * With a grace period the subscription is kept for a while after the last subscriber left, and the second
+     * subscriber continues with the same timer, starting with the last value it missed.
+     */
+    @Test
+    public void shareWithGracePeriod() {
+        ShareCounters counters = new ShareCounters();
+        Observable<Long> timer = SharedClock.computation().interval(1, TimeUnit.SECONDS)
+                .doOnSubscribe(() -> log.info("Subscribed to the timer"))
+                .doOnUnsubscribe(() -> log.info("Unsubscribed from the timer"))
+                .compose(MulticastTransformers.shareWithGracePeriod(2, TimeUnit.SECONDS, 1, counters));
+
+        subscribeWithLog(timer.take(3));
+
+        Helpers.sleepMillis(4500);
+
+        subscribeWithLog(timer.take(3));
+
+        Helpers.sleepMillis(5000);
+        log.info("{}", counters);
     }
 
     /**
@@ -70,15 +127,16 @@ public class Part08ColdHotObservables implements BaseTestObservables {
         Observable<String> items = Observable.just("Alpha","Beta","Gamma","Delta","Epsilon");
 
         ConnectableObservable<Long> timer =
-            Observable.interval(1,TimeUnit.SECONDS).publish();
+            SharedClock.computation().interval(1,TimeUnit.SECONDS).publish();
 
         Observable<List<Integer>> listObservable =
             timer.flatMap(i -> items.map(s -> s.length()).toList());
 
         subscribeWithLog(listObservable);
 
-        timer.connect();
+        Subscription connection = timer.connect();
 
         Helpers.sleepMillis(5000);
+        connection.unsubscribe();
     }
 }
@@ -1,12 +1,24 @@
 package com.balamaci.rx;
 
+import com.balamaci.rx.logging.AsyncLogAppender;
+import com.balamaci.rx.logging.AsyncLogSubscriber;
+import com.balamaci.rx.metrics.InstrumentedScheduler;
+import com.balamaci.rx.metrics.SimpleMetricsRegistry;
+import com.balamaci.rx.parallel.ParallelObservable;
+import com.balamaci.rx.parallel.ParallelTransformers;
+import com.balamaci.rx.schedulers.MoreSchedulers;
 import com.balamaci.rx.util.Helpers;
+import com.balamaci.rx.util.RealTime;
+import com.balamaci.rx.util.VirtualTimeRule;
+import org.junit.Rule;
 import org.junit.Test;
 import rx.Observable;
 import rx.Scheduler;
+import rx.observers.TestSubscriber;
 import rx.schedulers.Schedulers;
 
-import java.util.Random;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -15,20 +27,31 @@ import java.util.concurrent.Executors;
  */
 public class Part09ParallelOperation implements BaseTestObservables {
 
+    /**
+     * On the virtual clock the calculations take no time and the computation() and io() Workers run one after
+     * the other on the test's thread, showing the order the results come in. The Schedulers built on our own
+     * executors still run the calculations on their threads.
+     */
+    @Rule
+    public VirtualTimeRule virtualTime = new VirtualTimeRule();
+
     @Test
     public void serialOperations() {
+        TestSubscriber<String> testSubscriber = TestSubscriber.create(getLogSubscriber());
+
         Observable<Integer> vals = Observable.range(1,10);
 
         vals.subscribeOn(Schedulers.computation())
             .map(Part09ParallelOperation::intenseCalculation)
             .map(Object::toString)
-            .subscribe(getLogSubscriber());
+            .subscribe(testSubscriber);
 
-        Helpers.sleepMillis(20000);
+        Helpers.awaitTerminalEvent(testSubscriber);
     }
 
     @Test
     public void parallelOperation() {
+        TestSubscriber<String> testSubscriber = TestSubscriber.create(getLogSubscriber());
 
         Observable<Integer> vals = Observable.range(1,10);
 
@@ -38,8 +61,32 @@ public class Part09ParallelOperation implements BaseTestObservables {
                 .map(Part09ParallelOperation::intenseCalculation)
             )
             .map(Object::toString)
-            .subscribe(getLogSubscriber());
-        Helpers.sleepMillis(20000);
+            .subscribe(testSubscriber);
+
+        Helpers.awaitTerminalEvent(testSubscriber);
+    }
+
+    /**
+     * Schedulers.computation() assigns the Workers round-robin to its threads, so with the random durations of
+     * intenseCalculation a thread can end up with several long calculations queued while another is idle.
+     * The work-stealing Scheduler lets any idle thread pick up the waiting calculations.
+     */
+    @Test
+    public void parallelOperationWorkStealing() {
+        TestSubscriber<String> testSubscriber = TestSubscriber.create(getLogSubscriber());
+
+        Observable<Integer> vals = Observable.range(1,10);
+
+        vals
+            .flatMap(val -> Observable.just(val)
+                .subscribeOn(MoreSchedulers.workStealing())
+                .map(Part09ParallelOperation::intenseCalculation)
+            )
+            .map(Object::toString)
+            .subscribe(testSubscriber);
+
+        Helpers.awaitTerminalEvent(testSubscriber);
+        testSubscriber.assertValueCount(10);
     }
 
     @Test
@@ -49,6 +96,8 @@ public class Part09ParallelOperation implements BaseTestObservables {
         ExecutorService executor = Executors.newFixedThreadPool(threadCt);
         Scheduler scheduler = Schedulers.from(executor);
 
+        TestSubscriber<String> testSubscriber = TestSubscriber.create(getLogSubscriber());
+
         Observable<Integer> vals = Observable.range(1,10);
 
         vals
@@ -56,13 +105,72 @@ public class Part09ParallelOperation implements BaseTestObservables {
                 .subscribeOn(scheduler)
                 .map(Part09ParallelOperation::intenseCalculation)
         ).map(Object::toString)
-         .subscribe(getLogSubscriber());
+         .subscribe(testSubscriber);
+
+        Helpers.awaitTerminalEvent(testSubscriber);
+        executor.shutdown();
+    }
+
+    /**
+     * Same custom executor, wrapped to see what's going on inside: how many calculations are waiting for a thread,
+     * how long they waited and ran, and how many of the Workers are busy.
+     */
+    @Test
+    public void parallelOperationUsingInstrumentedExecutor() {
+        SimpleMetricsRegistry registry = new SimpleMetricsRegistry();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Scheduler scheduler = new InstrumentedScheduler("custom", Schedulers.from(executor), registry, 1);
+
+        TestSubscriber<String> testSubscriber = TestSubscriber.create(getLogSubscriber());
+
+        Observable<Integer> vals = Observable.range(1,10);
+
+        vals
+            .flatMap(val -> Observable.just(val)
+                .subscribeOn(scheduler)
+                .map(Part09ParallelOperation::intenseCalculation)
+        ).map(Object::toString)
+         .subscribe(testSubscriber);
+
+        log.info("Metrics while calculating {}", registry.report());
 
-        Helpers.sleepMillis(20000);
+        Helpers.awaitTerminalEvent(testSubscriber);
+        log.info("Metrics at the end {}", registry.report());
+        executor.shutdown();
+    }
+
+    /**
+     * Logging every value with log.info() formats the message and prints it on the emitting thread, the threads
+     * taking turns on the lock of System.err. AsyncLogSubscriber only fills a slot of the AsyncLogAppender's ring,
+     * which a thread of its own formats and prints, here for 1 in 100 of the values. With the emitters faster than
+     * the printing the small ring fills up, and the events are dropped and counted instead of making them wait.
+     * The emitters being threads of our own, it runs in real time.
+     */
+    @Test
+    @RealTime
+    public void asyncSampledLogging() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Scheduler scheduler = Schedulers.from(executor);
+        AsyncLogAppender appender = AsyncLogAppender.create(64);
+
+        TestSubscriber<Integer> testSubscriber = TestSubscriber.create(AsyncLogSubscriber.create(appender, log, 100));
+
+        Observable.range(0, 4)
+            .flatMap(part -> Observable.range(part * 250_000, 250_000)
+                .subscribeOn(scheduler))
+            .subscribe(testSubscriber);
+
+        Helpers.awaitTerminalEvent(testSubscriber);
+        appender.shutdown();
+        log.info("Log events dropped {}", appender.dropped());
+        testSubscriber.assertValueCount(1_000_000);
+        executor.shutdown();
     }
 
     @Test
     public void anotherParallelOperation() {
+        CountDownLatch latch = new CountDownLatch(1);
 
         Observable<Integer> vals = Observable.range(1,10);
 
@@ -70,20 +178,90 @@ public class Part09ParallelOperation implements BaseTestObservables {
             .subscribeOn(Schedulers.computation())
             .map(Part09ParallelOperation::intenseCalculation)
         ).toList()
+            .doOnTerminate(latch::countDown)
             .subscribe(val -> System.out.println("Subscriber received "
             + val + " on "
             + Thread.currentThread().getName()));
 
-        Helpers.sleepMillis(20000);
+        Helpers.wait(latch);
+    }
+
+    /**
+     * Instead of creating an Observable, a Worker and a scheduling hop for every element like the flatMap
+     * fan-out above, the stream is split into a fixed number of 'rails'. Each rail is backed by a bounded queue
+     * and a single Worker which runs the map for all the elements dealt to that rail.
+     * sequential() merges back the rails into an Observable in the order in which the results are available.
+     */
+    @Test
+    public void parallelRails() {
+        int rails = Runtime.getRuntime().availableProcessors();
+        TestSubscriber<String> testSubscriber = TestSubscriber.create(getLogSubscriber());
+
+        Observable<Integer> vals = Observable.range(1,10);
+
+        ParallelObservable.parallel(vals, rails, Schedulers.computation())
+            .map(Part09ParallelOperation::intenseCalculation)
+            .map(Object::toString)
+            .sequential()
+            .subscribe(testSubscriber);
+
+        Helpers.awaitTerminalEvent(testSubscriber);
+        testSubscriber.assertCompleted();
+        testSubscriber.assertValueCount(10);
+    }
+
+    /**
+     * Since the elements are dealt round-robin to the rails, sequential(true) can merge the results
+     * back in the order of the source elements, without having to collect them with toList()
+     */
+    @Test
+    public void parallelRailsPreservingOrder() {
+        TestSubscriber<Integer> testSubscriber = TestSubscriber.create();
+
+        Observable<Integer> vals = Observable.range(1, 100_000);
+
+        ParallelObservable.parallel(vals, 4, Schedulers.computation(), 16)
+            .filter(val -> val % 3 != 0)
+            .map(val -> val * 2)
+            .sequential(true)
+            .subscribe(testSubscriber);
+
+        Helpers.awaitTerminalEvent(testSubscriber);
+        testSubscriber.assertCompleted();
+
+        List<Integer> expected = vals.filter(val -> val % 3 != 0)
+            .map(val -> val * 2)
+            .toList()
+            .toBlocking()
+            .single();
+        testSubscriber.assertReceivedOnNext(expected);
+    }
+
+    /**
+     * Unlike the flatMap in anotherParallelOperation which emits the results in random order and needs toList()
+     * to put them back together, parallelMapOrdered runs up to 'maxInFlight' calculations concurrently while
+     * streaming the results in the order of the source. Results that are ready early wait in a ring buffer
+     * of 'maxInFlight' slots, so the memory stays flat even for an unbounded source.
+     */
+    @Test
+    public void parallelMapOrdered() {
+        TestSubscriber<String> testSubscriber = TestSubscriber.create(getLogSubscriber());
+
+        Observable<Integer> vals = Observable.range(1,10);
+
+        vals.compose(ParallelTransformers.parallelMapOrdered(Part09ParallelOperation::intenseCalculation,
+                                                             Schedulers.io(), 4))
+            .map(Object::toString)
+            .subscribe(testSubscriber);
+
+        Helpers.awaitTerminalEvent(testSubscriber);
+        testSubscriber.assertCompleted();
+        testSubscriber.assertReceivedOnNext(vals.map(Object::toString).toList().toBlocking().single());
     }
 
     private static int intenseCalculation(int i) {
-        try {
-            log.info("Calculating {} on {}", i, Thread.currentThread().getName());
-            Thread.sleep(Helpers.randInt(1000,5000));
-            return i;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        log.info("Calculating {} on {}", i, Thread.currentThread().getName());
+        Helpers.sleepMillis(Helpers.randInt(1000,5000));
+        return i;
     }
 }
@@ -2,19 +2,44 @@ package com.balamaci.rx.util;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.observers.TestSubscriber;
 
-import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Sleeping and waiting in the tests. Under a {@link VirtualTimeRule} they move the virtual clock instead of
+ * blocking the thread.
+ *
  * @author sbalamaci
  */
 public class Helpers {
 
     private static final Logger log = LoggerFactory.getLogger(Helpers.class);
-    private static final Random rand = new Random();
 
+    /** how far wait() and awaitTerminalEvent() move the virtual clock before giving up */
+    private static final long MAX_VIRTUAL_WAIT_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /** how long they wait for threads of their own when nothing is left to run on the virtual clock */
+    private static final long MAX_REAL_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long REAL_WAIT_SLICE_MILLIS = 10;
+
+    /**
+     * On the virtual clock the sleep of the test moves the clock by 'millis'. A sleep in a task running on the
+     * clock, or in one the test scheduled on another thread, returns right away - the work it stands for takes no
+     * virtual time.
+     */
     public static void sleepMillis(int millis) {
+        VirtualTimeRule.VirtualClock clock = VirtualTimeRule.current();
+        if(clock != null) {
+            if(Thread.currentThread() == clock.thread && !clock.advancing) {
+                advanceTimeBy(millis, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
         try {
             Thread.sleep(millis);
         } catch (InterruptedException e) {
@@ -24,6 +49,10 @@ public class Helpers {
     }
 
     public static void wait(CountDownLatch waitOn) {
+        if(VirtualTimeRule.current() != null) {
+            advanceUntil(() -> waitOn.getCount() == 0, millis -> await(waitOn, millis), "the CountDownLatch");
+            return;
+        }
         try {
             waitOn.await();
         } catch (InterruptedException e) {
@@ -32,7 +61,81 @@ public class Helpers {
         }
     }
 
+    public static void awaitTerminalEvent(TestSubscriber<?> testSubscriber) {
+        if(VirtualTimeRule.current() != null) {
+            advanceUntil(() -> testSubscriber.getCompletions() > 0 || !testSubscriber.getOnErrorEvents().isEmpty(),
+                    millis -> testSubscriber.awaitTerminalEvent(millis, TimeUnit.MILLISECONDS), "the terminal event");
+            return;
+        }
+        testSubscriber.awaitTerminalEvent();
+    }
+
+    /**
+     * Moves the virtual clock of the {@link VirtualTimeRule}, running on the test's thread the tasks which became
+     * due meanwhile
+     */
+    public static void advanceTimeBy(long delay, TimeUnit unit) {
+        VirtualTimeRule.VirtualClock clock = VirtualTimeRule.current();
+        if(clock == null || Thread.currentThread() != clock.thread) {
+            throw new IllegalStateException("advanceTimeBy requires a VirtualTimeRule, called from the test's thread");
+        }
+        if(clock.advancing) {
+            throw new IllegalStateException("advanceTimeBy called from a task running on the virtual clock");
+        }
+        clock.advancing = true;
+        try {
+            clock.testScheduler.advanceTimeBy(delay, unit);
+        } finally {
+            clock.advancing = false;
+        }
+    }
+
+    /**
+     * Random from the current thread's generator, so the tests running in parallel don't contend on a shared one
+     */
     public static int randInt(int min, int max) {
-        return rand.nextInt((max - min) + 1) + min;
+        return ThreadLocalRandom.current().nextInt(min, max + 1);
+    }
+
+    /**
+     * Runs the tasks of the virtual clock, jumping from one due time to the next, until 'done'. When none is left
+     * the work is on threads of our own, so it waits on real time with 'awaitMillis', checking the clock again
+     * every few milliseconds for the tasks those threads scheduled on it.
+     */
+    private static void advanceUntil(Func0<Boolean> done, Action1<Long> awaitMillis, String waitingFor) {
+        VirtualTimeRule.VirtualClock clock = VirtualTimeRule.current();
+        long startNanos = System.nanoTime();
+        long virtualStart = clock.testScheduler.now();
+
+        advanceTimeBy(0, TimeUnit.MILLISECONDS);
+        while(!done.call()) {
+            long now = clock.testScheduler.now();
+            long nextDue = clock.scheduler.nextDueMillis();
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            if(nextDue >= 0) {
+                if(now - virtualStart >= MAX_VIRTUAL_WAIT_MILLIS) {
+                    throw new IllegalStateException("Still waiting for " + waitingFor + " after "
+                            + (now - virtualStart) + "ms of virtual time, " + waitedMillis + "ms of real time");
+                }
+                // a task due within the last millisecond may not be run yet
+                advanceTimeBy(Math.max(1, nextDue - now), TimeUnit.MILLISECONDS);
+            } else {
+                if(waitedMillis >= MAX_REAL_WAIT_MILLIS) {
+                    throw new IllegalStateException("Still waiting for " + waitingFor + " after " + waitedMillis
+                            + "ms of real time, with nothing left to run on the virtual clock");
+                }
+                awaitMillis.call(REAL_WAIT_SLICE_MILLIS);
+                advanceTimeBy(0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static void await(CountDownLatch waitOn, long millis) {
+        try {
+            waitOn.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            log.error("Interrupted waiting on CountDownLatch");
+            throw new RuntimeException("Interrupted thread");
+        }
     }
 }
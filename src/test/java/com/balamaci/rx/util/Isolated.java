@@ -0,0 +1,17 @@
+package com.balamaci.rx.util;
+
+/**
+ * JUnit category of the tests installing a global RxJavaHooks hook of their own - like OperatorTracing, which
+ * wraps the Observables assembled on every thread - run by the build after the others, one at a time, so the
+ * tests of the classes running in parallel neither show up in their results nor get caught by their hook.
+ *
+ * <pre>
+ * &#64;Test
+ * &#64;Category(Isolated.class)
+ * public void groupByTraced() {
+ * </pre>
+ *
+ * @author sbalamaci
+ */
+public interface Isolated {
+}
@@ -0,0 +1,17 @@
+package com.balamaci.rx.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a test on the real Schedulers even though its class has a {@link VirtualTimeRule}, for the scenarios which
+ * need more than one thread - like a producer blocked until the subscriber on another thread made room.
+ *
+ * @author sbalamaci
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RealTime {
+}
@@ -0,0 +1,272 @@
+package com.balamaci.rx.util;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.plugins.RxJavaHooks;
+import rx.schedulers.TestScheduler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every test of the class on a virtual clock: for the duration of the test Schedulers.computation(), io()
+ * and newThread() are replaced through RxJavaHooks by a TestScheduler of its own, so the operators using them by
+ * default - interval(), delay(), timeout(), window()... - schedule their tasks on it.
+ *
+ * Nothing runs until the test moves the clock with Helpers.advanceTimeBy(), or waits with Helpers.sleepMillis(),
+ * Helpers.wait() and Helpers.awaitTerminalEvent() which advance it instead of blocking. The tasks then run on the
+ * test's thread one after the other, in the order of their virtual due time, so 10 seconds of ticks take a few
+ * milliseconds and every run produces the same events.
+ *
+ * <pre>
+ * &#64;Rule
+ * public VirtualTimeRule virtualTime = new VirtualTimeRule();
+ * </pre>
+ *
+ * The hooks are installed once and look up the clock of the test running on the current thread, falling back to
+ * the real Schedulers, so tests of different classes can run in parallel each on its own clock. The tasks a test
+ * schedules on a real Scheduler - like one on an executor of its own - carry its clock along through
+ * RxJavaHooks.onScheduleAction, to the thread running them and only while they run: the pools and timers shared
+ * between the tests keep no trace of it.
+ *
+ * A test ending with Workers of its clock still subscribed - an interval() nobody unsubscribed from, a timer
+ * left pending - fails, with the place the first of them was created as the cause.
+ *
+ * Tests annotated with {@link RealTime} run on the real Schedulers.
+ *
+ * @author sbalamaci
+ */
+public class VirtualTimeRule implements TestRule {
+
+    private static final ThreadLocal<VirtualClock> CLOCK = new ThreadLocal<>();
+
+    static {
+        RxJavaHooks.setOnComputationScheduler(VirtualTimeRule::onScheduler);
+        RxJavaHooks.setOnIOScheduler(VirtualTimeRule::onScheduler);
+        RxJavaHooks.setOnNewThreadScheduler(VirtualTimeRule::onScheduler);
+        RxJavaHooks.setOnScheduleAction(VirtualTimeRule::onScheduleAction);
+    }
+
+    @Override
+    public Statement apply(Statement base, Description description) {
+        if(description.getAnnotation(RealTime.class) != null) {
+            return base;
+        }
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                VirtualClock clock = new VirtualClock(Thread.currentThread());
+                CLOCK.set(clock);
+                try {
+                    base.evaluate();
+                } finally {
+                    clock.active = false;
+                    CLOCK.remove();
+                }
+                clock.scheduler.verifyNoLeaks(description);
+            }
+        };
+    }
+
+    /**
+     * The clock of the test running on the current thread, null outside of a test on the virtual clock
+     */
+    static VirtualClock current() {
+        VirtualClock clock = CLOCK.get();
+        return clock != null && clock.active ? clock : null;
+    }
+
+    private static Scheduler onScheduler(Scheduler scheduler) {
+        VirtualClock clock = current();
+        return clock != null ? clock.scheduler : scheduler;
+    }
+
+    private static Action0 onScheduleAction(Action0 action) {
+        VirtualClock clock = current();
+        if(clock == null) {
+            return action;
+        }
+        return () -> {
+            VirtualClock previous = CLOCK.get();
+            CLOCK.set(clock);
+            try {
+                action.call();
+            } finally {
+                CLOCK.set(previous);
+            }
+        };
+    }
+
+    /**
+     * The virtual clock of a test
+     */
+    static final class VirtualClock {
+
+        final TestScheduler testScheduler = new TestScheduler();
+        final TrackingScheduler scheduler = new TrackingScheduler(testScheduler);
+
+        /** the test's thread, the only one moving the clock */
+        final Thread thread;
+
+        /** true while the clock runs its tasks, accessed only by the test's thread */
+        boolean advancing;
+
+        /** carried by the tasks the test scheduled, which can run after it ended */
+        volatile boolean active = true;
+
+        VirtualClock(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * The TestScheduler keeping count of its Workers not yet unsubscribed, and of the delayed tasks not yet run
+     */
+    static final class TrackingScheduler extends Scheduler {
+
+        final TestScheduler actual;
+
+        /** guarded by this */
+        final Set<TrackingWorker> subscribed = new LinkedHashSet<>();
+
+        /** by due time, the tasks run or canceled being removed once they reach the head, guarded by this */
+        final PriorityQueue<DelayedTask> delayed = new PriorityQueue<>(Comparator.comparingLong(task -> task.due));
+
+        TrackingScheduler(TestScheduler actual) {
+            this.actual = actual;
+        }
+
+        @Override
+        public Worker createWorker() {
+            TrackingWorker worker = new TrackingWorker(this, actual.createWorker());
+            synchronized (this) {
+                subscribed.add(worker);
+            }
+            return worker;
+        }
+
+        @Override
+        public long now() {
+            return actual.now();
+        }
+
+        synchronized void remove(TrackingWorker worker) {
+            subscribed.remove(worker);
+        }
+
+        synchronized void addDelayed(DelayedTask task) {
+            delayed.add(task);
+        }
+
+        /**
+         * The virtual time in milliseconds, rounded up, at which the first delayed task not yet run is due, -1 when
+         * there is none
+         */
+        synchronized long nextDueMillis() {
+            DelayedTask task;
+            while((task = delayed.peek()) != null && task.isDone()) {
+                delayed.poll();
+            }
+            return task == null ? -1 : task.due;
+        }
+
+        void verifyNoLeaks(Description description) {
+            List<TrackingWorker> leaked;
+            synchronized (this) {
+                leaked = new ArrayList<>(subscribed);
+                subscribed.clear();
+            }
+            if(leaked.isEmpty()) {
+                return;
+            }
+            for(TrackingWorker worker : leaked) {
+                worker.actual.unsubscribe();
+            }
+            throw new AssertionError(description.getMethodName() + " left " + leaked.size()
+                    + " Worker(s) of the virtual clock subscribed", leaked.get(0).createdAt);
+        }
+    }
+
+    static final class TrackingWorker extends Scheduler.Worker {
+
+        final TrackingScheduler parent;
+        final Scheduler.Worker actual;
+        final Throwable createdAt = new Throwable("Worker created");
+
+        TrackingWorker(TrackingScheduler parent, Scheduler.Worker actual) {
+            this.parent = parent;
+            this.actual = actual;
+        }
+
+        @Override
+        public Subscription schedule(Action0 action) {
+            return actual.schedule(action);
+        }
+
+        @Override
+        public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+            if(delayTime <= 0) {
+                return actual.schedule(action);
+            }
+            long delayMillis = (unit.toNanos(delayTime) + TimeUnit.MILLISECONDS.toNanos(1) - 1)
+                    / TimeUnit.MILLISECONDS.toNanos(1);
+            DelayedTask task = new DelayedTask(this, action, parent.actual.now() + delayMillis);
+            Subscription subscription = actual.schedule(task, delayTime, unit);
+            task.subscription = subscription;
+            parent.addDelayed(task);
+            return subscription;
+        }
+
+        @Override
+        public long now() {
+            return actual.now();
+        }
+
+        @Override
+        public void unsubscribe() {
+            actual.unsubscribe();
+            parent.remove(this);
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return actual.isUnsubscribed();
+        }
+    }
+
+    static final class DelayedTask implements Action0 {
+
+        final TrackingWorker worker;
+        final Action0 action;
+        final long due;
+
+        volatile Subscription subscription;
+        volatile boolean run;
+
+        DelayedTask(TrackingWorker worker, Action0 action, long due) {
+            this.worker = worker;
+            this.action = action;
+            this.due = due;
+        }
+
+        @Override
+        public void call() {
+            run = true;
+            action.call();
+        }
+
+        boolean isDone() {
+            Subscription s = subscription;
+            return run || worker.isUnsubscribed() || (s != null && s.isUnsubscribed());
+        }
+    }
+}